@@ -26,16 +26,29 @@ import java.io.OutputStream;
 
 import android.util.Log;
 
-public class SerialPort {
+import com.tonyx.androidmodbusrtudemo.modbus.transport.SerialChannel;
+
+public class SerialPort implements SerialChannel {
 
 	private static final String TAG = "SerialPort";
 
+	/**
+	 * 以 8N1 打开串口，用于 ModbusBusManager
+	 */
+	public static final SerialChannel.Factory FACTORY = new SerialChannel.Factory() {
+		@Override
+		public SerialChannel open(String path, int baudrate) throws IOException {
+			return new SerialPort(new File(path), baudrate, 0, 8, 1);
+		}
+	};
+
 	/*
 	 * Do not remove or rename the field mFd: it is used by native method close();
 	 */
 	private FileDescriptor mFd;
 	private FileInputStream mFileInputStream;
 	private FileOutputStream mFileOutputStream;
+	private int mBaudrate;
 
 	public SerialPort(File device) throws SecurityException, IOException {
 		this(device, 9600, 0, 8, 1);
@@ -73,22 +86,52 @@ public class SerialPort {
 			Log.e(TAG, "native open returns null");
 			throw new IOException();
 		}
+		mBaudrate = baudrate;
 		mFileInputStream = new FileInputStream(mFd);
 		mFileOutputStream = new FileOutputStream(mFd);
 	}
 
 	// Getters and setters
+	@Override
 	public InputStream getInputStream() {
 		return mFileInputStream;
 	}
 
+	@Override
 	public OutputStream getOutputStream() {
 		return mFileOutputStream;
 	}
 
+	@Override
+	public int getBaudrate() {
+		return mBaudrate;
+	}
+
+	/**
+	 * 限时读取，使用 poll() 等待数据，不需要轮询 available()
+	 *@param buffer 接收缓冲区
+	 *@param off 写入位置
+	 *@param len 最多读取的字节数
+	 *@param timeoutMillis 最长等待时间，0 表示不等待
+	 *@return 读取的字节数，超时返回0
+	 */
+	@Override
+	public int read(byte[] buffer, int off, int len, int timeoutMillis) throws IOException {
+		if (off < 0 || len < 0 || off + len > buffer.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		return nativeRead(buffer, off, len, Math.max(timeoutMillis, 0));
+	}
+
 	// JNI
 	private native static FileDescriptor open(String path, int baudrate, int parity, int dataBits, int stopBit);
 	public native void close();
+	private native int nativeRead(byte[] buffer, int off, int len, int timeoutMillis) throws IOException;
+	/** 丢弃已接收但未读取的数据 */
+	public native void flushInput();
 	static {
 		try {
 			System.loadLibrary("serial_port");
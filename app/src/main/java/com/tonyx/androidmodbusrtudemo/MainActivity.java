@@ -3,7 +3,12 @@ package com.tonyx.androidmodbusrtudemo;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
 import com.tonyx.androidmodbusrtudemo.modbus.ModbusMaster;
+import com.tonyx.androidmodbusrtudemo.modbus.ReadPlanner;
+import com.tonyx.androidmodbusrtudemo.modbus.ScanGroup;
+import com.tonyx.androidmodbusrtudemo.modbus.ScanListener;
+import com.tonyx.androidmodbusrtudemo.modbus.ScanScheduler;
 
 import java.io.File;
 import java.util.Arrays;
@@ -11,6 +16,7 @@ import java.util.Arrays;
 import android_serialport_api.SerialPort;
 
 public class MainActivity extends AppCompatActivity {
+    private ScanScheduler scheduler;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -18,16 +24,43 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         try {
-            int[] result = new int[6];
             SerialPort serialPort = new SerialPort(new File("/dev/ttyS0"));
             ModbusMaster modbusMaster = new ModbusMaster(serialPort);
-            while (true){
-                result = modbusMaster.readHoldingRegisters(1,0,6);
-                System.out.println("result: "+Arrays.toString(result));
-                Thread.sleep(1000L);
+            ReadPlanner planner = new ReadPlanner();
+            for (int address = 0; address < 6; address++) {
+                planner.addTag(1, ModbusFunction.READ_HOLDING_REGISTERS, address);
             }
+            scheduler = new ScanScheduler(modbusMaster);
+            scheduler.addGroup(planner.plan(), 1000, 0, new ScanListener() {
+                @Override
+                public void onScan(ScanGroup group) {
+                    System.out.println("result: " + Arrays.toString(group.getValues()));
+                }
+
+                @Override
+                public void onError(ScanGroup group, Exception error) {
+                    error.printStackTrace();
+                }
+
+                @Override
+                public void onOverrun(ScanGroup group, long lateNanos) {
+                }
+            });
+            scheduler.start();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (scheduler != null) {
+            try {
+                scheduler.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
@@ -1,10 +0,0 @@
-package com.tonyx.androidmodbusrtudemo.modbus;
-
-public class ModbusFunction {
-    public static final int READ_COILS = 1;
-    public static final int READ_DISCRETE_INPUTS = 2;
-    public static final int READ_HOLDING_REGISTERS = 3;
-    public static final int READ_INPUT_REGISTERS = 4;
-    public static final int WRITE_SINGLE_COIL = 5;
-    public static final int WRITE_SINGLE_REGISTER = 6;
-}
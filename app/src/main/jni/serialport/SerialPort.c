@@ -16,6 +16,8 @@
 
 #include <termios.h>
 #include <unistd.h>
+#include <poll.h>
+#include <errno.h>
 #include <sys/types.h>
 #include <sys/stat.h>
 #include <fcntl.h>
@@ -77,6 +79,17 @@ static void throwException(JNIEnv *env, const char *name, const char *msg)
     (*env)->DeleteLocalRef(env, cls);
 }
 
+/* Android 的 FileDescriptor 字段名为 descriptor，开发机 JDK 为 fd（用于在开发机上测试） */
+static jfieldID getDescriptorField(JNIEnv *env, jclass FileDescriptorClass)
+{
+	jfieldID id = (*env)->GetFieldID(env, FileDescriptorClass, "descriptor", "I");
+	if (id == NULL) {
+		(*env)->ExceptionClear(env);
+		id = (*env)->GetFieldID(env, FileDescriptorClass, "fd", "I");
+	}
+	return id;
+}
+
 /*
  * Class:     android_serialport_SerialPort
  * Method:    open
@@ -140,6 +153,10 @@ JNIEXPORT jobject JNICALL Java_android_1serialport_1api_SerialPort_open
 		cfsetispeed(&cfg, speed);
 		cfsetospeed(&cfg, speed);
 
+		/* Blocking reads return as soon as one byte is available, timed reads use poll() */
+		cfg.c_cc[VMIN] = 1;
+		cfg.c_cc[VTIME] = 0;
+
 		/* More attribute set */
 		switch (parity) {
 		    case 0: break;
@@ -172,7 +189,7 @@ JNIEXPORT jobject JNICALL Java_android_1serialport_1api_SerialPort_open
 	{
 		jclass cFileDescriptor = (*env)->FindClass(env, "java/io/FileDescriptor");
 		jmethodID iFileDescriptor = (*env)->GetMethodID(env, cFileDescriptor, "<init>", "()V");
-		jfieldID descriptorID = (*env)->GetFieldID(env, cFileDescriptor, "descriptor", "I");
+		jfieldID descriptorID = getDescriptorField(env, cFileDescriptor);
 		mFileDescriptor = (*env)->NewObject(env, cFileDescriptor, iFileDescriptor);
 		(*env)->SetIntField(env, mFileDescriptor, descriptorID, (jint)fd);
 	}
@@ -192,10 +209,78 @@ JNIEXPORT void JNICALL Java_android_1serialport_1api_SerialPort_close
 	jclass FileDescriptorClass = (*env)->FindClass(env, "java/io/FileDescriptor");
 
 	jfieldID mFdID = (*env)->GetFieldID(env, SerialPortClass, "mFd", "Ljava/io/FileDescriptor;");
-	jfieldID descriptorID = (*env)->GetFieldID(env, FileDescriptorClass, "descriptor", "I");
+	jfieldID descriptorID = getDescriptorField(env, FileDescriptorClass);
 
 	jobject mFd = (*env)->GetObjectField(env, thiz, mFdID);
 	jint descriptor = (*env)->GetIntField(env, mFd, descriptorID);
 
 	close(descriptor);
 }
+
+static jint getDescriptor(JNIEnv *env, jobject thiz)
+{
+	static jfieldID mFdID = NULL;
+	static jfieldID descriptorID = NULL;
+
+	if (mFdID == NULL) {
+		jclass SerialPortClass = (*env)->GetObjectClass(env, thiz);
+		jclass FileDescriptorClass = (*env)->FindClass(env, "java/io/FileDescriptor");
+		mFdID = (*env)->GetFieldID(env, SerialPortClass, "mFd", "Ljava/io/FileDescriptor;");
+		descriptorID = getDescriptorField(env, FileDescriptorClass);
+	}
+
+	jobject mFd = (*env)->GetObjectField(env, thiz, mFdID);
+	return (*env)->GetIntField(env, mFd, descriptorID);
+}
+
+/*
+ * Class:     android_serialport_api_SerialPort
+ * Method:    nativeRead
+ * Signature: ([BIII)I
+ */
+JNIEXPORT jint JNICALL Java_android_1serialport_1api_SerialPort_nativeRead
+  (JNIEnv *env, jobject thiz, jbyteArray buffer, jint off, jint len, jint timeout)
+{
+	jbyte chunk[512];
+	struct pollfd pfd;
+	int fd = getDescriptor(env, thiz);
+	int rc;
+	ssize_t n;
+
+	pfd.fd = fd;
+	pfd.events = POLLIN;
+	pfd.revents = 0;
+	rc = poll(&pfd, 1, timeout);
+	if (rc == 0 || (rc < 0 && errno == EINTR)) {
+		return 0;
+	}
+	if (rc < 0 || (pfd.revents & (POLLERR | POLLNVAL))) {
+		throwException(env, "java/io/IOException", "poll() failed");
+		return -1;
+	}
+
+	if (len > (jint) sizeof(chunk)) {
+		len = sizeof(chunk);
+	}
+	n = read(fd, chunk, len);
+	if (n < 0) {
+		if (errno == EINTR || errno == EAGAIN) {
+			return 0;
+		}
+		throwException(env, "java/io/IOException", "read() failed");
+		return -1;
+	}
+	(*env)->SetByteArrayRegion(env, buffer, off, n, chunk);
+	return n;
+}
+
+/*
+ * Class:     android_serialport_api_SerialPort
+ * Method:    flushInput
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_android_1serialport_1api_SerialPort_flushInput
+  (JNIEnv *env, jobject thiz)
+{
+	tcflush(getDescriptor(env, thiz), TCIFLUSH);
+}
@@ -23,6 +23,22 @@ JNIEXPORT jobject JNICALL Java_android_1serialport_1api_SerialPort_open
 JNIEXPORT void JNICALL Java_android_1serialport_1api_SerialPort_close
   (JNIEnv *, jobject);
 
+/*
+ * Class:     android_serialport_api_SerialPort
+ * Method:    nativeRead
+ * Signature: ([BIII)I
+ */
+JNIEXPORT jint JNICALL Java_android_1serialport_1api_SerialPort_nativeRead
+  (JNIEnv *, jobject, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     android_serialport_api_SerialPort
+ * Method:    flushInput
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_android_1serialport_1api_SerialPort_flushInput
+  (JNIEnv *, jobject);
+
 #ifdef __cplusplus
 }
 #endif
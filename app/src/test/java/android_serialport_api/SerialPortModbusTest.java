@@ -0,0 +1,79 @@
+package android_serialport_api;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusMaster;
+import com.tonyx.androidmodbusrtudemo.modbus.simulator.ModbusSlaveSimulator;
+import com.tonyx.androidmodbusrtudemo.modbus.simulator.PtyLink;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNoException;
+
+/**
+ * 在开发机上通过一对相连的伪终端运行 ModbusMaster：主站经 SerialPort（termios、poll()）访问一端，
+ * ModbusSlaveSimulator 在另一端应答。需要 python3 和为开发机编译的 libserial_port，编译方法见 {@link SerialPortPtyTest}
+ */
+public class SerialPortModbusTest {
+    private PtyLink link;
+    private SerialPort port;
+    private ModbusSlaveSimulator simulator;
+    private int[] registers = new int[256];
+    private boolean[] coils = new boolean[256];
+
+    @Before
+    public void setUp() throws Exception {
+        try {
+            System.loadLibrary("serial_port");
+        } catch (UnsatisfiedLinkError e) {
+            assumeNoException(e);
+        }
+        try {
+            link = PtyLink.open(1);
+        } catch (IOException e) {
+            assumeNoException(e);
+        }
+        simulator = new ModbusSlaveSimulator(1, registers, registers, coils, coils,
+                new FileInputStream(link.getDevicePath(0)), new FileOutputStream(link.getDevicePath(0))).start();
+        port = new SerialPort(new File(link.getPortPath(0)), 115200, 0, 8, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (port != null) {
+            port.close();
+        }
+        if (link != null) {
+            // 先关闭伪终端，仿真器阻塞的读取随之返回
+            link.close();
+        }
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    @Test
+    public void transactions_overPty() throws Exception {
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = i * 7;
+        }
+        ModbusMaster master = new ModbusMaster(port);
+        master.setTimeout(1000);
+        int[] values = master.readHoldingRegisters(1, 10, 100);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals((10 + i) * 7, values[i]);
+        }
+        master.writeMultipleRegisters(1, 200, new int[]{1, 2, 3});
+        assertEquals(3, registers[202]);
+        master.writeSingleCoil(1, 5, true);
+        assertEquals(1, master.readCoils(1, 5, 1)[0]);
+        assertEquals(0, master.getInvalidResponseCount());
+        master.close();
+    }
+}
@@ -0,0 +1,117 @@
+package android_serialport_api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNoException;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 在开发机上通过伪终端测试 SerialPort 的限时读取（poll()），不需要串口设备。
+ * 需要 python3 和为开发机编译的 libserial_port，否则跳过：
+ * <pre>
+ * mkdir -p /tmp/stub/android && touch /tmp/stub/android/log.h
+ * gcc -shared -fPIC -I$JAVA_HOME/include -I$JAVA_HOME/include/linux -I/tmp/stub \
+ *     -o /tmp/lib/libserial_port.so app/src/main/jni/serialport/SerialPort.c
+ * ./gradlew :app:testDebugUnitTest -Djava.library.path=/tmp/lib
+ * </pre>
+ */
+public class SerialPortPtyTest {
+    /**
+     * 打开伪终端，输出从端名称；延迟后发送一个字节，之后把收到的数据原样返回
+     */
+    private static final String PTY_PEER = "import os, pty, sys, time, tty\n"
+            + "master, slave = pty.openpty()\n"
+            + "tty.setraw(master)\n"
+            + "print(os.ttyname(slave), flush=True)\n"
+            + "sys.stdin.readline()\n"
+            + "time.sleep(0.2)\n"
+            + "os.write(master, b'\\x5a')\n"
+            + "while True:\n"
+            + "    data = os.read(master, 256)\n"
+            + "    if not data:\n"
+            + "        break\n"
+            + "    os.write(master, data)\n";
+
+    private Process peer;
+    private OutputStream control;
+    private SerialPort port;
+
+    @Before
+    public void setUp() throws Exception {
+        try {
+            System.loadLibrary("serial_port");
+        } catch (UnsatisfiedLinkError e) {
+            assumeNoException(e);
+        }
+        try {
+            peer = new ProcessBuilder("python3", "-c", PTY_PEER).start();
+        } catch (IOException e) {
+            assumeNoException(e);
+        }
+        control = peer.getOutputStream();
+        String path = new BufferedReader(new InputStreamReader(peer.getInputStream())).readLine();
+        assumeTrue(path != null);
+        port = new SerialPort(new File(path), 9600, 0, 8, 1);
+    }
+
+    @After
+    public void tearDown() {
+        if (port != null) {
+            port.close();
+        }
+        if (peer != null) {
+            peer.destroy();
+        }
+    }
+
+    private void startPeer() throws IOException {
+        control.write('\n');
+        control.flush();
+    }
+
+    @Test
+    public void read_timesOutWithoutData() throws Exception {
+        long start = System.nanoTime();
+        assertEquals(0, port.read(new byte[8], 0, 8, 100));
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        assertTrue("elapsed " + elapsed, elapsed >= 90 && elapsed < 1000);
+    }
+
+    @Test
+    public void read_returnsAsSoonAsDataArrives() throws Exception {
+        startPeer();
+        byte[] buffer = new byte[8];
+        long start = System.nanoTime();
+        assertEquals(1, port.read(buffer, 0, buffer.length, 2000));
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        assertEquals(0x5a, buffer[0]);
+        assertTrue("elapsed " + elapsed, elapsed < 1500);
+    }
+
+    @Test
+    public void writtenBytes_areEchoed() throws Exception {
+        startPeer();
+        byte[] buffer = new byte[8];
+        assertEquals(1, port.read(buffer, 0, buffer.length, 2000));
+        byte[] request = {1, 3, 0, 0, 0, 1, (byte) 0x84, 0x0a};
+        port.getOutputStream().write(request);
+        byte[] echo = new byte[request.length];
+        int received = 0;
+        while (received < echo.length) {
+            int len = port.read(echo, received, echo.length - received, 1000);
+            assertTrue("timeout after " + received + " bytes", len > 0);
+            received += len;
+        }
+        assertTrue(Arrays.equals(request, echo));
+    }
+}
@@ -0,0 +1,50 @@
+package com.tonyx.androidmodbusrtudemo.benchmark;
+
+import com.tonyx.androidmodbusrtudemo.utilities.ByteArrayReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ByteArrayReaderBenchmark {
+    private static final int REGISTERS = 125;
+
+    private byte[] block;
+
+    @Setup
+    public void setup() {
+        block = new byte[REGISTERS * 2];
+        new Random(42).nextBytes(block);
+    }
+
+    @Benchmark
+    public int readInt16Block() throws IOException {
+        ByteArrayReader reader = new ByteArrayReader(block);
+        int sum = 0;
+        for (int i = 0; i < REGISTERS; i++) {
+            sum += reader.readInt16();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int readInt32Block() throws IOException {
+        ByteArrayReader reader = new ByteArrayReader(block);
+        int sum = 0;
+        for (int i = 0; i < REGISTERS / 2; i++) {
+            sum += reader.readInt32();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,83 @@
+package com.tonyx.androidmodbusrtudemo.benchmark;
+
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Decoding a 125 register block (a full FC3 response) with the ByteUtil primitives
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ByteUtilBenchmark {
+    private static final int REGISTERS = 125;
+
+    private byte[] block;
+    private byte[] pair;
+
+    @Setup
+    public void setup() {
+        block = new byte[REGISTERS * 2];
+        new Random(42).nextBytes(block);
+        pair = new byte[]{block[0], block[1]};
+    }
+
+    @Benchmark
+    public int toInt() {
+        return ByteUtil.toInt(pair);
+    }
+
+    /**
+     * 旧的实现：先转换为十六进制字符串再解析，作为对照
+     */
+    @Benchmark
+    public int toIntHexString() {
+        return Integer.parseInt(ByteUtil.toHexString(pair, null), 16);
+    }
+
+    @Benchmark
+    public int getUInt16Block() {
+        int sum = 0;
+        for (int pos = 0; pos < block.length; pos += 2) {
+            sum += ByteUtil.getUInt16(block, pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int getInt16Block() {
+        int sum = 0;
+        for (int pos = 0; pos < block.length; pos += 2) {
+            sum += ByteUtil.getInt16(block, pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int getInt32Block() {
+        int sum = 0;
+        for (int pos = 0; pos + 4 <= block.length; pos += 4) {
+            sum += ByteUtil.getInt32(block, pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int getInt32WordSwapBlock() {
+        int sum = 0;
+        for (int pos = 0; pos + 4 <= block.length; pos += 4) {
+            sum += ByteUtil.getInt32WordSwap(block, pos);
+        }
+        return sum;
+    }
+}
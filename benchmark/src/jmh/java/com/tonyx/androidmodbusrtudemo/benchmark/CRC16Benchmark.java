@@ -0,0 +1,56 @@
+package com.tonyx.androidmodbusrtudemo.benchmark;
+
+import com.tonyx.androidmodbusrtudemo.utilities.CRC16;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    8 字节为一个读请求，256 字节为最大的 RTU 帧
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CRC16Benchmark {
+    @Param({"8", "256"})
+    public int length;
+
+    private byte[] frame;
+
+    @Setup
+    public void setup() {
+        frame = new byte[length];
+        new Random(42).nextBytes(frame);
+    }
+
+    @Benchmark
+    public int compute() {
+        return CRC16.compute(frame, 0, frame.length, 0xffff);
+    }
+
+    @Benchmark
+    public int update() {
+        return CRC16.update(CRC16.INITIAL, frame, 0, frame.length);
+    }
+
+    /**
+     * 模拟接收过程中按 32 字节分段增量计算
+     */
+    @Benchmark
+    public int updateChunked() {
+        int crc = CRC16.INITIAL;
+        for (int off = 0; off < frame.length; off += 32) {
+            crc = CRC16.update(crc, frame, off, Math.min(32, frame.length - off));
+        }
+        return crc;
+    }
+}
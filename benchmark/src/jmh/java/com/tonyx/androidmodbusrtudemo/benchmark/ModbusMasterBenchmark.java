@@ -0,0 +1,85 @@
+package com.tonyx.androidmodbusrtudemo.benchmark;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusMaster;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.simulator.ModbusSlaveSimulator;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusTransport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Read Holding Registers through ModbusMaster: "loopback" answers in the calling thread
+    and measures encode + decode alone, "simulator" runs the full RTU transport against
+    ModbusSlaveSimulator over in-memory streams, without line pacing
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModbusMasterBenchmark {
+    private static final int SLAVE = 1;
+
+    @Param({"10", "125"})
+    public int quantity;
+
+    private ModbusMaster loopback;
+    private ModbusSlaveSimulator simulator;
+    private ModbusMaster master;
+    private int[] registers;
+
+    @Setup
+    public void setup() throws IOException {
+        registers = new int[quantity];
+        loopback = new ModbusMaster(new LoopbackTransport());
+        simulator = new ModbusSlaveSimulator(SLAVE).start();
+        master = new ModbusMaster(simulator.getMasterInput(), simulator.getMasterOutput(), 115200);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        master.close();
+        simulator.close();
+    }
+
+    @Benchmark
+    public int[] loopback() throws IOException, ModbusError {
+        loopback.readHoldingRegisters(SLAVE, 0, quantity, registers, 0);
+        return registers;
+    }
+
+    @Benchmark
+    public int[] simulator() throws IOException, ModbusError {
+        master.readHoldingRegisters(SLAVE, 0, quantity, registers, 0);
+        return registers;
+    }
+
+    /**
+     * 在调用线程上直接构造读保持寄存器的响应
+     */
+    private static final class LoopbackTransport implements ModbusTransport {
+        @Override
+        public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) {
+            int quantity = ((request[PDU_OFFSET + 3] & 0xff) << 8) | (request[PDU_OFFSET + 4] & 0xff);
+            response[PDU_OFFSET] = request[PDU_OFFSET];
+            response[PDU_OFFSET + 1] = (byte) (quantity * 2);
+            for (int i = 0; i < quantity * 2; i++) {
+                response[PDU_OFFSET + 2 + i] = (byte) i;
+            }
+            return 2 + quantity * 2;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
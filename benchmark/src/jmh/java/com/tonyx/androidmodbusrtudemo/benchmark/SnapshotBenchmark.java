@@ -0,0 +1,62 @@
+package com.tonyx.androidmodbusrtudemo.benchmark;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
+import com.tonyx.androidmodbusrtudemo.modbus.store.SnapshotReader;
+import com.tonyx.androidmodbusrtudemo.modbus.store.SnapshotWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnapshotBenchmark {
+    private static final int REGISTERS = 20000;
+
+    private int[] registers;
+    private int[] decoded;
+    private byte[] snapshot;
+    private ByteArrayOutputStream bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        registers = new int[REGISTERS];
+        decoded = new int[REGISTERS];
+        Random random = new Random(42);
+        for (int i = 0; i < REGISTERS; i++) {
+            // 半数为 0，其余为缓慢变化的测量值
+            registers[i] = (i / 64) % 2 == 0 ? 0 : 1000 + i + random.nextInt(16);
+        }
+        bytes = new ByteArrayOutputStream(REGISTERS * 2);
+        snapshot = writeSnapshot();
+    }
+
+    @Benchmark
+    public byte[] writeSnapshot() throws IOException {
+        bytes.reset();
+        SnapshotWriter writer = new SnapshotWriter(bytes, 0);
+        writer.writeRegisters(1, ModbusFunction.READ_HOLDING_REGISTERS, 0, registers, 0, REGISTERS);
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public int[] readSnapshot() throws IOException {
+        SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(snapshot));
+        while (reader.next()) {
+            reader.readRegisters(decoded, 0, decoded.length);
+        }
+        return decoded;
+    }
+}
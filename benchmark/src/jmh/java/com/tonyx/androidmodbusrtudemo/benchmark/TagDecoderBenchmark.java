@@ -0,0 +1,50 @@
+package com.tonyx.androidmodbusrtudemo.benchmark;
+
+import com.tonyx.androidmodbusrtudemo.modbus.TagDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TagDecoderBenchmark {
+    private static final int TAGS = 1000;
+
+    private TagDecoder decoder;
+    private int[] block;
+    private double[] values;
+    private long[] raw;
+
+    @Setup
+    public void setup() {
+        decoder = new TagDecoder();
+        int register = 0;
+        for (int i = 0; i < TAGS; i++) {
+            int type = i % (TagDecoder.FLOAT64 + 1);
+            decoder.addTag(type, register, i & 3, 0.1, 0);
+            register += TagDecoder.registerCount(type);
+        }
+        block = new int[register];
+        Random random = new Random(42);
+        for (int i = 0; i < block.length; i++) {
+            block[i] = random.nextInt(0x10000);
+        }
+        values = new double[TAGS];
+        raw = new long[TAGS];
+    }
+
+    @Benchmark
+    public double[] decode1000Tags() {
+        decoder.decode(block, 0, values, raw);
+        return values;
+    }
+}
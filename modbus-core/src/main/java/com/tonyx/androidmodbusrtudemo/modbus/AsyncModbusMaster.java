@@ -0,0 +1,303 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+
+/*
+    Asynchronous front end of one or more ModbusMasters. Requests go into a bounded queue
+    and are executed by one worker thread per master, so callers never block on the bus.
+    Give it one master for a serial port, or several masters sharing a ModbusTcpTransport
+    to keep that many requests in flight.
+ */
+public class AsyncModbusMaster {
+    /**
+     * 在工作线程上使用 ModbusMaster 执行的操作
+     */
+    public interface Task<T> {
+        T run(ModbusMaster master) throws IOException, ModbusError;
+    }
+
+    private final class Request<T> extends ModbusFuture<T> {
+        final Task<T> task;
+        TimerTask expiry;
+
+        Request(Task<T> task, long deadline) {
+            super(deadline);
+            this.task = task;
+        }
+
+        @Override
+        void onCancel() {
+            // 释放队列空间
+            queue.remove(this);
+            cancelExpiry();
+        }
+
+        synchronized void cancelExpiry() {
+            if (expiry != null) {
+                expiry.cancel();
+                expiry = null;
+            }
+        }
+    }
+
+    private final BlockingQueue<Request<?>> queue;
+    private final ModbusMaster[] masters;
+    private final Thread[] workers;
+    // 到期时使仍在排队的请求失败，不必等工作线程取出
+    private final Timer expiryTimer = new Timer("AsyncModbusMaster-expiry", true);
+    private volatile int requestTimeout = 5000;
+    private volatile boolean closed;
+
+    public AsyncModbusMaster(ModbusMaster master) {
+        this(64, master);
+    }
+
+    /**
+     * @param capacity 队列中等待的最大请求数，队列满时提交请求的线程等待
+     * @param masters  每个 master 使用一个工作线程，由本对象独占
+     */
+    public AsyncModbusMaster(int capacity, ModbusMaster... masters) {
+        if (masters.length == 0) {
+            throw new IllegalArgumentException("No master");
+        }
+        this.queue = new ArrayBlockingQueue<Request<?>>(capacity);
+        this.masters = masters.clone();
+        this.workers = new Thread[masters.length];
+        for (int i = 0; i < masters.length; i++) {
+            final int index = i;
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work(index);
+                }
+            }, "AsyncModbusMaster-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * 设置默认的请求期限，从提交开始计算，包括排队时间
+     *
+     * @param requestTimeout 单位毫秒
+     */
+    public void setRequestTimeout(int requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * 提交一个操作。队列满时等待，直到有空位或到达期限
+     *
+     * @param timeout 请求期限，单位毫秒。期限到时仍在排队的请求立即以 ModbusTimeoutError 失败，不再发送；
+     *                执行中的请求的每个事务的超时时间不超过剩余期限，期限到后不再发送后续事务
+     */
+    public <T> ModbusFuture<T> submit(Task<T> task, int timeout) {
+        final Request<T> request = new Request<T>(task, System.nanoTime() + timeout * 1000000L);
+        if (closed) {
+            request.fail(new IOException("AsyncModbusMaster closed"));
+            return request;
+        }
+        try {
+            if (!queue.offer(request, timeout, TimeUnit.MILLISECONDS)) {
+                request.fail(new ModbusError(ModbusErrorType.ModbusTimeoutError,
+                        String.format("Request queue is full for %d ms.", timeout)));
+            } else if (closed) {
+                // close() 可能已清空队列
+                if (queue.remove(request)) {
+                    request.fail(new IOException("AsyncModbusMaster closed"));
+                }
+            } else {
+                scheduleExpiry(request);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.cancel(false);
+        }
+        return request;
+    }
+
+    public <T> ModbusFuture<T> submit(Task<T> task) {
+        return submit(task, requestTimeout);
+    }
+
+    private void scheduleExpiry(final Request<?> request) {
+        TimerTask expiry = new TimerTask() {
+            @Override
+            public void run() {
+                // 工作线程已取出的请求 start() 返回 false
+                if (request.start()) {
+                    queue.remove(request);
+                    request.fail(new ModbusError(ModbusErrorType.ModbusTimeoutError,
+                            "Deadline expired while the request was queued."));
+                }
+            }
+        };
+        synchronized (request) {
+            if (request.isDone()) {
+                return;
+            }
+            request.expiry = expiry;
+        }
+        try {
+            // 等待队列空位已用去部分期限，按剩余时间计时
+            expiryTimer.schedule(expiry, Math.max(0, (request.getDeadline() - System.nanoTime()) / 1000000L));
+        } catch (IllegalStateException e) {
+            // close() 已停止定时器，队列中的请求由 close() 处理
+        }
+    }
+
+    private void work(int index) {
+        ModbusMaster master = masters[index];
+        while (!closed) {
+            Request<?> request;
+            try {
+                request = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            execute(master, request);
+        }
+    }
+
+    private static <T> void execute(ModbusMaster master, Request<T> request) {
+        if (!request.start()) {
+            return;
+        }
+        request.cancelExpiry();
+        try {
+            // 期限只作用于本次调用，不修改共用 master 的超时设置
+            request.complete(master.call(request.task, request.getDeadline()));
+        } catch (Exception e) {
+            request.fail(e);
+        }
+    }
+
+    /**
+     * 停止工作线程，队列中的请求以 IOException 失败。ModbusMaster 由调用方关闭
+     */
+    public void close() {
+        closed = true;
+        expiryTimer.cancel();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        List<Request<?>> pending = new ArrayList<Request<?>>();
+        queue.drainTo(pending);
+        for (Request<?> request : pending) {
+            request.fail(new IOException("AsyncModbusMaster closed"));
+        }
+    }
+
+    /**
+     * close() 之后等待工作线程结束。执行中的事务在 transport 超时或响应中断后结束
+     *
+     * @return 超时仍有工作线程未结束时返回 false
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            long wait = deadline - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(worker, wait);
+            }
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public ModbusFuture<int[]> readHoldingRegisters(final int slave, final int startAddress, final int numberOfPoints, int timeout) {
+        return submit(new Task<int[]>() {
+            @Override
+            public int[] run(ModbusMaster master) throws IOException, ModbusError {
+                return master.readHoldingRegisters(slave, startAddress, numberOfPoints);
+            }
+        }, timeout);
+    }
+
+    public ModbusFuture<int[]> readInputRegisters(final int slave, final int startAddress, final int numberOfPoints, int timeout) {
+        return submit(new Task<int[]>() {
+            @Override
+            public int[] run(ModbusMaster master) throws IOException, ModbusError {
+                return master.readInputRegisters(slave, startAddress, numberOfPoints);
+            }
+        }, timeout);
+    }
+
+    public ModbusFuture<int[]> readCoils(final int slave, final int startAddress, final int numberOfPoints, int timeout) {
+        return submit(new Task<int[]>() {
+            @Override
+            public int[] run(ModbusMaster master) throws IOException, ModbusError {
+                return master.readCoils(slave, startAddress, numberOfPoints);
+            }
+        }, timeout);
+    }
+
+    public ModbusFuture<int[]> readInputs(final int slave, final int startAddress, final int numberOfPoints, int timeout) {
+        return submit(new Task<int[]>() {
+            @Override
+            public int[] run(ModbusMaster master) throws IOException, ModbusError {
+                return master.readInputs(slave, startAddress, numberOfPoints);
+            }
+        }, timeout);
+    }
+
+    public ModbusFuture<Void> writeSingleCoil(final int slave, final int address, final boolean value, int timeout) {
+        return submit(new Task<Void>() {
+            @Override
+            public Void run(ModbusMaster master) throws IOException, ModbusError {
+                master.writeSingleCoil(slave, address, value);
+                return null;
+            }
+        }, timeout);
+    }
+
+    public ModbusFuture<Void> writeSingleRegister(final int slave, final int address, final int value, int timeout) {
+        return submit(new Task<Void>() {
+            @Override
+            public Void run(ModbusMaster master) throws IOException, ModbusError {
+                master.writeSingleRegister(slave, address, value);
+                return null;
+            }
+        }, timeout);
+    }
+
+    public ModbusFuture<int[]> readHoldingRegisters(int slave, int startAddress, int numberOfPoints) {
+        return readHoldingRegisters(slave, startAddress, numberOfPoints, requestTimeout);
+    }
+
+    public ModbusFuture<int[]> readInputRegisters(int slave, int startAddress, int numberOfPoints) {
+        return readInputRegisters(slave, startAddress, numberOfPoints, requestTimeout);
+    }
+
+    public ModbusFuture<int[]> readCoils(int slave, int startAddress, int numberOfPoints) {
+        return readCoils(slave, startAddress, numberOfPoints, requestTimeout);
+    }
+
+    public ModbusFuture<int[]> readInputs(int slave, int startAddress, int numberOfPoints) {
+        return readInputs(slave, startAddress, numberOfPoints, requestTimeout);
+    }
+
+    public ModbusFuture<Void> writeSingleCoil(int slave, int address, boolean value) {
+        return writeSingleCoil(slave, address, value, requestTimeout);
+    }
+
+    public ModbusFuture<Void> writeSingleRegister(int slave, int address, int value) {
+        return writeSingleRegister(slave, address, value, requestTimeout);
+    }
+}
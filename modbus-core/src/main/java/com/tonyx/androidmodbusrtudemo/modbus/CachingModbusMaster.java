@@ -0,0 +1,424 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusRtuTransport;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusTransport;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.SerialChannel;
+
+/*
+    ModbusMaster with a read-through cache for components that read the same ranges
+    independently. Reads are cached per (slave, function, start address, quantity) for
+    a TTL, the least recently used ranges are evicted beyond maxEntries, and concurrent
+    identical reads share one transaction. Writes through this master invalidate the
+    cached ranges they overlap; writes by other masters are only seen after the TTL.
+    The overrides are deliberately not synchronized: a cache hit must not wait behind a
+    transaction, and a reader waiting for a shared read must not hold the master monitor
+    the loading thread needs. The bus itself is still serialized by the synchronized
+    ModbusMaster methods they call.
+ */
+public class CachingModbusMaster extends ModbusMaster {
+    private static final class CachedRange {
+        final int slave;
+        final int function_code;
+        final int start;
+        final int quantity;
+        boolean loading = true;
+        int[] values;
+        Exception error;
+        long expires;
+
+        CachedRange(int slave, int function_code, int start, int quantity) {
+            this.slave = slave;
+            this.function_code = function_code;
+            this.start = start;
+            this.quantity = quantity;
+        }
+    }
+
+    private static final class TtlRule {
+        final int slave;
+        final int function_code;
+        final int start;
+        final int end;
+        final long ttl;
+
+        TtlRule(int slave, int function_code, int start, int end, long ttl) {
+            this.slave = slave;
+            this.function_code = function_code;
+            this.start = start;
+            this.end = end;
+            this.ttl = ttl;
+        }
+    }
+
+    private final LinkedHashMap<Long, CachedRange> cache;
+    private final List<TtlRule> rules = new ArrayList<TtlRule>();
+    private long defaultTtl = 1000000000L;
+    private int maxEntries = 256;
+
+    private long hitCount;
+    private long missCount;
+    private long sharedCount;
+    private long evictionCount;
+    private long invalidationCount;
+
+    public CachingModbusMaster(SerialChannel port) {
+        this(new ModbusRtuTransport(port));
+    }
+
+    public CachingModbusMaster(InputStream input, OutputStream output, int baudrate) {
+        this(new ModbusRtuTransport(input, output, baudrate));
+    }
+
+    public CachingModbusMaster(ModbusTransport transport) {
+        super(transport);
+        cache = new LinkedHashMap<Long, CachedRange>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedRange> eldest) {
+                if (size() > maxEntries) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param ttl 未匹配任何范围规则的读取的缓存时间，单位毫秒，0 表示不缓存（仍合并并发的相同读取）
+     */
+    public void setDefaultTtl(int ttl) {
+        synchronized (cache) {
+            defaultTtl = Math.max(ttl, 0) * 1000000L;
+        }
+    }
+
+    /**
+     * 为地址范围 [startAddress, endAddress] 内的读取设置缓存时间，先添加的规则优先
+     */
+    public void setTtl(int slave, int function_code, int startAddress, int endAddress, int ttl) {
+        synchronized (cache) {
+            rules.add(new TtlRule(slave, function_code, startAddress, endAddress, Math.max(ttl, 0) * 1000000L));
+        }
+    }
+
+    /**
+     * @param maxEntries 缓存的最大范围数，超出时淘汰最久未使用的
+     */
+    public void setMaxEntries(int maxEntries) {
+        synchronized (cache) {
+            this.maxEntries = Math.max(maxEntries, 1);
+        }
+    }
+
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public long getHitCount() {
+        synchronized (cache) {
+            return hitCount;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (cache) {
+            return missCount;
+        }
+    }
+
+    /**
+     * @return 与正在进行的相同读取合并、未单独发送的读取数
+     */
+    public long getSharedCount() {
+        synchronized (cache) {
+            return sharedCount;
+        }
+    }
+
+    public long getEvictionCount() {
+        synchronized (cache) {
+            return evictionCount;
+        }
+    }
+
+    public long getInvalidationCount() {
+        synchronized (cache) {
+            return invalidationCount;
+        }
+    }
+
+    private long ttl(int slave, int function_code, int start, int quantity) {
+        for (int i = 0; i < rules.size(); i++) {
+            TtlRule rule = rules.get(i);
+            if (rule.slave == slave && rule.function_code == function_code
+                    && start >= rule.start && start + quantity - 1 <= rule.end) {
+                return rule.ttl;
+            }
+        }
+        return defaultTtl;
+    }
+
+    /**
+     * 从缓存取得范围的值，未命中时读取一次；值为无符号16位寄存器或 0/1
+     */
+    private int[] read(int slave, int function_code, int start, int quantity) throws IOException, ModbusError {
+        // 先检查范围，否则越界的字段会覆盖键中其它字段的位
+        checkRange(slave, start, quantity);
+        Long key = ((long) function_code << 48) | ((long) slave << 40) | ((long) start << 24) | quantity;
+        CachedRange entry;
+        boolean load = false;
+        synchronized (cache) {
+            entry = cache.get(key);
+            if (entry != null && !entry.loading && System.nanoTime() - entry.expires < 0) {
+                hitCount++;
+                return entry.values;
+            }
+            if (entry != null && entry.loading) {
+                sharedCount++;
+            } else {
+                entry = new CachedRange(slave, function_code, start, quantity);
+                cache.put(key, entry);
+                missCount++;
+                load = true;
+            }
+        }
+        if (load) {
+            load(key, entry);
+        }
+        synchronized (entry) {
+            while (entry.loading) {
+                try {
+                    entry.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a shared read");
+                }
+            }
+            if (entry.error instanceof IOException) {
+                throw (IOException) entry.error;
+            }
+            if (entry.error instanceof RuntimeException) {
+                throw (RuntimeException) entry.error;
+            }
+            if (entry.error != null) {
+                throw (ModbusError) entry.error;
+            }
+            return entry.values;
+        }
+    }
+
+    private void load(Long key, CachedRange entry) {
+        int[] values = new int[entry.quantity];
+        Exception error = null;
+        try {
+            switch (entry.function_code) {
+                case ModbusFunction.READ_HOLDING_REGISTERS:
+                    super.readHoldingRegisters(entry.slave, entry.start, entry.quantity, values, 0);
+                    break;
+                case ModbusFunction.READ_INPUT_REGISTERS:
+                    super.readInputRegisters(entry.slave, entry.start, entry.quantity, values, 0);
+                    break;
+                case ModbusFunction.READ_COILS:
+                    values = super.readCoils(entry.slave, entry.start, entry.quantity);
+                    break;
+                default:
+                    values = super.readInputs(entry.slave, entry.start, entry.quantity);
+                    break;
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (ModbusError e) {
+            error = e;
+        } catch (RuntimeException e) {
+            // 同样发布给等待者，否则它们会一直等待
+            error = e;
+        }
+        synchronized (cache) {
+            long ttl = ttl(entry.slave, entry.function_code, entry.start, entry.quantity);
+            // 失败或不缓存的读取移出缓存；读取期间被失效或淘汰的范围已不在缓存中
+            if ((error != null || ttl == 0) && cache.get(key) == entry) {
+                cache.remove(key);
+            }
+            // 命中检查持有 cache 锁，等待者持有 entry 锁，结果在两把锁下发布
+            synchronized (entry) {
+                entry.values = values;
+                entry.error = error;
+                entry.expires = System.nanoTime() + ttl;
+                entry.loading = false;
+                entry.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 使与写入范围重叠的缓存失效
+     */
+    private void invalidate(int slave, int function_code, int start, int quantity) {
+        synchronized (cache) {
+            Iterator<CachedRange> it = cache.values().iterator();
+            while (it.hasNext()) {
+                CachedRange entry = it.next();
+                if (entry.slave == slave && entry.function_code == function_code
+                        && entry.start < start + quantity && start < entry.start + entry.quantity) {
+                    it.remove();
+                    invalidationCount++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readHoldingRegisters(int slave, int startAddress, int numberOfPoints, int[] dst, int dstOff) throws IOException, ModbusError {
+        copy(read(slave, ModbusFunction.READ_HOLDING_REGISTERS, startAddress, numberOfPoints), dst, dstOff, numberOfPoints);
+    }
+
+    @Override
+    public void readHoldingRegisters(int slave, int startAddress, int numberOfPoints, short[] dst, int dstOff) throws IOException, ModbusError {
+        copy(read(slave, ModbusFunction.READ_HOLDING_REGISTERS, startAddress, numberOfPoints), dst, dstOff, numberOfPoints);
+    }
+
+    @Override
+    public void readInputRegisters(int slave, int startAddress, int numberOfPoints, int[] dst, int dstOff) throws IOException, ModbusError {
+        copy(read(slave, ModbusFunction.READ_INPUT_REGISTERS, startAddress, numberOfPoints), dst, dstOff, numberOfPoints);
+    }
+
+    @Override
+    public void readInputRegisters(int slave, int startAddress, int numberOfPoints, short[] dst, int dstOff) throws IOException, ModbusError {
+        copy(read(slave, ModbusFunction.READ_INPUT_REGISTERS, startAddress, numberOfPoints), dst, dstOff, numberOfPoints);
+    }
+
+    @Override
+    public void readCoils(int slave, int startAddress, int numberOfPoints, boolean[] dst, int dstOff) throws IOException, ModbusError {
+        copy(read(slave, ModbusFunction.READ_COILS, startAddress, numberOfPoints), dst, dstOff, numberOfPoints);
+    }
+
+    @Override
+    public void readCoils(int slave, int startAddress, int numberOfPoints, long[] dst) throws IOException, ModbusError {
+        copy(read(slave, ModbusFunction.READ_COILS, startAddress, numberOfPoints), dst, numberOfPoints);
+    }
+
+    @Override
+    public void readInputs(int slave, int startAddress, int numberOfPoints, boolean[] dst, int dstOff) throws IOException, ModbusError {
+        copy(read(slave, ModbusFunction.READ_DISCRETE_INPUTS, startAddress, numberOfPoints), dst, dstOff, numberOfPoints);
+    }
+
+    @Override
+    public void readInputs(int slave, int startAddress, int numberOfPoints, long[] dst) throws IOException, ModbusError {
+        copy(read(slave, ModbusFunction.READ_DISCRETE_INPUTS, startAddress, numberOfPoints), dst, numberOfPoints);
+    }
+
+    @Override
+    public int[] readCoils(int slave, int startAddress, int numberOfPoints) throws IOException, ModbusError {
+        return read(slave, ModbusFunction.READ_COILS, startAddress, numberOfPoints).clone();
+    }
+
+    @Override
+    public int[] readInputs(int slave, int startAddress, int numberOfPoints) throws IOException, ModbusError {
+        return read(slave, ModbusFunction.READ_DISCRETE_INPUTS, startAddress, numberOfPoints).clone();
+    }
+
+    private static void copy(int[] values, int[] dst, int dstOff, int quantity) throws ModbusError {
+        checkLength(dst.length, dstOff, quantity);
+        System.arraycopy(values, 0, dst, dstOff, quantity);
+    }
+
+    private static void copy(int[] values, short[] dst, int dstOff, int quantity) throws ModbusError {
+        checkLength(dst.length, dstOff, quantity);
+        for (int i = 0; i < quantity; i++) {
+            dst[dstOff + i] = (short) values[i];
+        }
+    }
+
+    private static void copy(int[] values, boolean[] dst, int dstOff, int quantity) throws ModbusError {
+        checkLength(dst.length, dstOff, quantity);
+        for (int i = 0; i < quantity; i++) {
+            dst[dstOff + i] = values[i] != 0;
+        }
+    }
+
+    private static void copy(int[] values, long[] dst, int quantity) throws ModbusError {
+        checkLength(dst.length * 64, 0, quantity);
+        for (int w = 0, words = (quantity + 63) >> 6; w < words; w++) {
+            dst[w] = 0;
+        }
+        for (int i = 0; i < quantity; i++) {
+            if (values[i] != 0) {
+                dst[i >> 6] |= 1L << (i & 63);
+            }
+        }
+    }
+
+    private static void checkLength(int dstLength, int dstOff, int quantity) throws ModbusError {
+        if (dstOff < 0 || dstOff + quantity > dstLength) {
+            throw new ModbusError(ModbusErrorType.ModbusInvalidArgumentError,
+                    String.format("Destination of length %d cannot hold %d values at offset %d", dstLength, quantity, dstOff));
+        }
+    }
+
+    /*
+        写入后使重叠的缓存失效，写入失败时设备状态未知，同样失效
+     */
+
+    @Override
+    public int[] execute(int slave, int function_code, int starting_address, int quantity_of_x, int output_value) throws IOException, ModbusError {
+        try {
+            return super.execute(slave, function_code, starting_address, quantity_of_x, output_value);
+        } finally {
+            if (function_code == ModbusFunction.WRITE_SINGLE_REGISTER) {
+                invalidate(slave, ModbusFunction.READ_HOLDING_REGISTERS, starting_address, 1);
+            } else if (function_code == ModbusFunction.WRITE_SINGLE_COIL) {
+                invalidate(slave, ModbusFunction.READ_COILS, starting_address, 1);
+            }
+        }
+    }
+
+    @Override
+    public void writeMultipleRegisters(int slave, int startAddress, int[] values, int off, int count) throws IOException, ModbusError {
+        try {
+            super.writeMultipleRegisters(slave, startAddress, values, off, count);
+        } finally {
+            invalidate(slave, ModbusFunction.READ_HOLDING_REGISTERS, startAddress, count);
+        }
+    }
+
+    @Override
+    public void writeMultipleCoils(int slave, int startAddress, boolean[] values, int off, int count) throws IOException, ModbusError {
+        try {
+            super.writeMultipleCoils(slave, startAddress, values, off, count);
+        } finally {
+            invalidate(slave, ModbusFunction.READ_COILS, startAddress, count);
+        }
+    }
+
+    @Override
+    public void maskWriteRegister(int slave, int address, int andMask, int orMask) throws IOException, ModbusError {
+        try {
+            super.maskWriteRegister(slave, address, andMask, orMask);
+        } finally {
+            invalidate(slave, ModbusFunction.READ_HOLDING_REGISTERS, address, 1);
+        }
+    }
+
+    @Override
+    public void readWriteMultipleRegisters(int slave, int readAddress, int readCount, int[] dst, int dstOff,
+                                           int writeAddress, int[] values, int off, int writeCount) throws IOException, ModbusError {
+        try {
+            super.readWriteMultipleRegisters(slave, readAddress, readCount, dst, dstOff, writeAddress, values, off, writeCount);
+        } finally {
+            invalidate(slave, ModbusFunction.READ_HOLDING_REGISTERS, writeAddress, writeCount);
+        }
+    }
+}
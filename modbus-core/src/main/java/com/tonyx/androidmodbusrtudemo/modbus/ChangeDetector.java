@@ -0,0 +1,113 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.util.Arrays;
+
+/*
+    Report-by-exception filter for tag values indexed like ReadPlan / ScanGroup values.
+    Each scan is compared with the last reported value of every tag and only changes are
+    passed on. A tag can have a deadband, a minimum interval between reports (changes in
+    between are held back and reported once the interval has passed) and a maximum
+    interval after which the value is reported again even if unchanged.
+ */
+public class ChangeDetector {
+    /**
+     * 变化回调，在调用 update 的线程中执行
+     */
+    public interface Listener {
+        /**
+         * @param tag      标签序号
+         * @param value    新值
+         * @param previous 上次报告的值，首次报告时等于 value
+         */
+        void onChange(int tag, int value, int previous);
+    }
+
+    private final int[] reported;
+    private final boolean[] hasReported;
+    private final long[] lastReport;
+    private final int[] deadband;
+    private final long[] minInterval;
+    private final long[] maxInterval;
+
+    public ChangeDetector(int tagCount) {
+        reported = new int[tagCount];
+        hasReported = new boolean[tagCount];
+        lastReport = new long[tagCount];
+        deadband = new int[tagCount];
+        minInterval = new long[tagCount];
+        maxInterval = new long[tagCount];
+    }
+
+    public int getTagCount() {
+        return reported.length;
+    }
+
+    /**
+     * 设置死区：与上次报告值之差的绝对值超过 deadband 才算变化，0 表示任何变化都报告
+     */
+    public void setDeadband(int tag, int deadband) {
+        this.deadband[tag] = Math.max(deadband, 0);
+    }
+
+    public void setDeadband(int deadband) {
+        Arrays.fill(this.deadband, Math.max(deadband, 0));
+    }
+
+    /**
+     * @param minInterval 两次报告之间的最短时间，单位毫秒，0 表示不限制
+     * @param maxInterval 值未变化时重复报告的时间，单位毫秒，0 表示不重复
+     */
+    public void setIntervals(int tag, int minInterval, int maxInterval) {
+        this.minInterval[tag] = Math.max(minInterval, 0) * 1000000L;
+        this.maxInterval[tag] = Math.max(maxInterval, 0) * 1000000L;
+    }
+
+    public void setIntervals(int minInterval, int maxInterval) {
+        for (int tag = 0; tag < reported.length; tag++) {
+            setIntervals(tag, minInterval, maxInterval);
+        }
+    }
+
+    /**
+     * 下次 update 时重新报告所有标签，例如下游重新连接后
+     */
+    public void reset() {
+        Arrays.fill(hasReported, false);
+    }
+
+    public int update(int[] values, Listener listener) {
+        return update(values, System.nanoTime(), listener);
+    }
+
+    /**
+     * 比较新的扫描值，对需要报告的标签调用 listener
+     *
+     * @param values 按标签序号索引的值，长度不小于 getTagCount()
+     * @param now    System.nanoTime() 时间
+     * @return 报告的标签数
+     */
+    public int update(int[] values, long now, Listener listener) {
+        int count = 0;
+        for (int tag = 0; tag < reported.length; tag++) {
+            int value = values[tag];
+            if (!hasReported[tag]) {
+                hasReported[tag] = true;
+                reported[tag] = value;
+                lastReport[tag] = now;
+                listener.onChange(tag, value, value);
+                count++;
+                continue;
+            }
+            int previous = reported[tag];
+            long elapsed = now - lastReport[tag];
+            boolean changed = Math.abs((long) value - previous) > deadband[tag];
+            if (changed ? elapsed >= minInterval[tag] : maxInterval[tag] > 0 && elapsed >= maxInterval[tag]) {
+                reported[tag] = value;
+                lastReport[tag] = now;
+                listener.onChange(tag, value, previous);
+                count++;
+            }
+        }
+        return count;
+    }
+}
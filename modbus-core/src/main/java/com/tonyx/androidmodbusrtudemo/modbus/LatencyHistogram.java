@@ -0,0 +1,101 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+/*
+    Log-linear latency histogram in the style of HdrHistogram: values are kept in
+    microseconds, 16 linear sub-buckets per power of two, so every recorded value is
+    within 1/16 of its bucket bound. Recording is a bucket lookup and an increment,
+    without allocation.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 最大 2^32 微秒，约 71 分钟
+    private static final int MAX_OCTAVE = 32;
+    private static final int BUCKETS = (MAX_OCTAVE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sumNanos;
+    private long maxNanos;
+
+    /**
+     * 记录一个值，单位纳秒
+     */
+    public synchronized void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucket(nanos / 1000L)]++;
+        count++;
+        sumNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /*
+        前 16 个桶对应 0..15 微秒，之后每倍频程 16 个桶
+     */
+    private static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = octave - SUB_BUCKET_BITS;
+        int index = (shift + 1) * SUB_BUCKETS + (int) ((micros >> shift) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    /**
+     * 桶的上界，单位纳秒
+     */
+    private static long bucketLimitNanos(int index) {
+        if (index < SUB_BUCKETS) {
+            return (index + 1) * 1000L;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return (lower + (1L << shift)) * 1000L;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMeanNanos() {
+        return count == 0 ? 0 : sumNanos / count;
+    }
+
+    public synchronized long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * 分位数，取所在桶的上界且不超过最大值，单位纳秒
+     *
+     * @param quantile 0 到 1，如 0.99
+     */
+    public synchronized long getPercentileNanos(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(count * quantile), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketLimitNanos(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        sumNanos = 0;
+        maxNanos = 0;
+    }
+}
@@ -0,0 +1,11 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+/*
+    Receives the metrics of a bus at the end of each reporting interval, see ModbusMetrics.export
+ */
+public interface MetricsExporter {
+    /**
+     * @param intervalNanos 距上次导出的时间，metrics.getBusUtilization() 为该周期内的总线占用比例
+     */
+    void export(ModbusMetrics metrics, long intervalNanos);
+}
@@ -0,0 +1,281 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.SerialChannel;
+
+/*
+    One Modbus RTU bus per serial port. Each bus has its own ModbusMaster, request queue
+    and worker thread, so transactions on different ports run in parallel and the total
+    throughput grows with the number of ports. Requests are routed to a bus by slave address.
+    Serial ports are opened through a SerialChannel.Factory, e.g. SerialPort.FACTORY on Android.
+ */
+public class ModbusBusManager {
+    /**
+     * 一个串口（或其它 transport）上的总线
+     */
+    public static final class Bus {
+        private final String name;
+        private final SerialChannel port;
+        private final ModbusMaster master;
+        private final AsyncModbusMaster async;
+
+        Bus(String name, SerialChannel port, ModbusMaster master, int capacity) {
+            this.name = name;
+            this.port = port;
+            this.master = master;
+            this.async = new AsyncModbusMaster(capacity, master);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 由总线的工作线程独占，其它线程请通过 getAsync() 提交请求
+         */
+        public ModbusMaster getMaster() {
+            return master;
+        }
+
+        public AsyncModbusMaster getAsync() {
+            return async;
+        }
+
+        /**
+         * 停止工作线程并等待执行中的事务结束，之后才关闭 master 和串口
+         */
+        void close() throws IOException {
+            async.close();
+            try {
+                // 串口读取不响应中断，最多等待一个事务的超时时间；仍未结束时关闭串口使读取返回
+                async.awaitTermination(master.getTimeout() + 1000L, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                master.close();
+            } finally {
+                if (port != null) {
+                    port.close();
+                }
+            }
+        }
+    }
+
+    private final SerialChannel.Factory factory;
+    private final int capacity;
+    private final List<Bus> buses = new ArrayList<Bus>();
+    // 从站地址 -> buses 中的序号，-1 表示未分配；与 buses 一起由本对象的锁保护
+    private final int[] routes = new int[256];
+
+    /**
+     * 只能通过 addBus() 添加总线
+     */
+    public ModbusBusManager() {
+        this(null, 64);
+    }
+
+    /**
+     * 只能通过 addBus() 添加总线
+     *
+     * @param capacity 每条总线队列中等待的最大请求数
+     */
+    public ModbusBusManager(int capacity) {
+        this(null, capacity);
+    }
+
+    public ModbusBusManager(SerialChannel.Factory factory) {
+        this(factory, 64);
+    }
+
+    /**
+     * @param factory  用于 open() 打开串口，为 null 时只能通过 addBus() 添加总线
+     * @param capacity 每条总线队列中等待的最大请求数
+     */
+    public ModbusBusManager(SerialChannel.Factory factory, int capacity) {
+        this.factory = factory;
+        this.capacity = capacity;
+        Arrays.fill(routes, -1);
+    }
+
+    /**
+     * 打开指定的串口，无法打开的串口被跳过。Android 上可传入 SerialPortFinder.getAllDevicesPath()
+     *
+     * @param errors 返回无法打开的串口路径及原因
+     * @return 成功打开的总线
+     */
+    public List<Bus> openAll(String[] paths, int baudrate, Map<String, Exception> errors) {
+        List<Bus> opened = new ArrayList<Bus>();
+        for (String path : paths) {
+            try {
+                opened.add(open(path, baudrate));
+            } catch (IOException | SecurityException | IllegalArgumentException ex) {
+                errors.put(path, ex);
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * 以 8N1 打开一个串口，总线名称为设备路径。ModbusMaster 使用 SlaveHealth，离线的从站不会拖慢总线上的其它从站；
+     * 事务统计见 getMaster().getMetrics()
+     */
+    public Bus open(String path, int baudrate) throws IOException {
+        if (factory == null) {
+            throw new IllegalStateException("No SerialChannel.Factory to open " + path);
+        }
+        SerialChannel port = factory.open(path, baudrate);
+        ModbusMaster master = new ModbusMaster(port);
+        master.setHealth(new SlaveHealth(baudrate));
+        master.setMetrics(new ModbusMetrics(path));
+        try {
+            return addBus(path, port, master);
+        } catch (IllegalArgumentException ex) {
+            port.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * 添加一条使用已有 ModbusMaster 的总线（如流、TCP），master 由本对象独占并在 close() 时关闭
+     */
+    public Bus addBus(String name, ModbusMaster master) {
+        return addBus(name, null, master);
+    }
+
+    private synchronized Bus addBus(String name, SerialChannel port, ModbusMaster master) {
+        if (findBus(name) >= 0) {
+            throw new IllegalArgumentException("Duplicated bus " + name);
+        }
+        Bus bus = new Bus(name, port, master, capacity);
+        buses.add(bus);
+        return bus;
+    }
+
+    private int findBus(String name) {
+        for (int i = 0; i < buses.size(); i++) {
+            if (buses.get(i).name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized Bus getBus(String name) {
+        int index = findBus(name);
+        return index < 0 ? null : buses.get(index);
+    }
+
+    public synchronized List<Bus> getBuses() {
+        return Collections.unmodifiableList(new ArrayList<Bus>(buses));
+    }
+
+    /**
+     * 将从站分配到总线，覆盖之前的分配
+     */
+    public synchronized void route(int slave, String name) {
+        if (slave < 0 || slave > 255) {
+            throw new IllegalArgumentException("Invalid slave " + slave);
+        }
+        int index = findBus(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("No bus " + name);
+        }
+        routes[slave] = index;
+    }
+
+    /**
+     * @return 从站所在的总线，未分配时返回 null
+     */
+    public synchronized Bus getBus(int slave) {
+        int index = slave < 0 || slave > 255 ? -1 : routes[slave];
+        return index < 0 ? null : buses.get(index);
+    }
+
+    /**
+     * 在从站所在总线的工作线程上执行操作。从站未分配时以 ModbusInvalidArgumentError 失败
+     *
+     * @param timeout 请求期限，单位毫秒，包括排队时间
+     */
+    public <T> ModbusFuture<T> submit(int slave, AsyncModbusMaster.Task<T> task, int timeout) {
+        Bus bus = getBus(slave);
+        return bus == null ? ModbusBusManager.<T>unrouted(slave) : bus.async.submit(task, timeout);
+    }
+
+    private static <T> ModbusFuture<T> unrouted(int slave) {
+        ModbusFuture<T> future = new ModbusFuture<T>(System.nanoTime());
+        future.fail(new ModbusError(ModbusErrorType.ModbusInvalidArgumentError,
+                String.format("Slave %d is not routed to a bus", slave)));
+        return future;
+    }
+
+    /*
+        以下方法转交从站所在总线的 AsyncModbusMaster
+     */
+
+    public ModbusFuture<int[]> readHoldingRegisters(int slave, int startAddress, int numberOfPoints, int timeout) {
+        Bus bus = getBus(slave);
+        return bus == null ? ModbusBusManager.<int[]>unrouted(slave) : bus.async.readHoldingRegisters(slave, startAddress, numberOfPoints, timeout);
+    }
+
+    public ModbusFuture<int[]> readInputRegisters(int slave, int startAddress, int numberOfPoints, int timeout) {
+        Bus bus = getBus(slave);
+        return bus == null ? ModbusBusManager.<int[]>unrouted(slave) : bus.async.readInputRegisters(slave, startAddress, numberOfPoints, timeout);
+    }
+
+    public ModbusFuture<int[]> readCoils(int slave, int startAddress, int numberOfPoints, int timeout) {
+        Bus bus = getBus(slave);
+        return bus == null ? ModbusBusManager.<int[]>unrouted(slave) : bus.async.readCoils(slave, startAddress, numberOfPoints, timeout);
+    }
+
+    public ModbusFuture<int[]> readInputs(int slave, int startAddress, int numberOfPoints, int timeout) {
+        Bus bus = getBus(slave);
+        return bus == null ? ModbusBusManager.<int[]>unrouted(slave) : bus.async.readInputs(slave, startAddress, numberOfPoints, timeout);
+    }
+
+    public ModbusFuture<Void> writeSingleCoil(int slave, int address, boolean value, int timeout) {
+        Bus bus = getBus(slave);
+        return bus == null ? ModbusBusManager.<Void>unrouted(slave) : bus.async.writeSingleCoil(slave, address, value, timeout);
+    }
+
+    public ModbusFuture<Void> writeSingleRegister(int slave, int address, int value, int timeout) {
+        Bus bus = getBus(slave);
+        return bus == null ? ModbusBusManager.<Void>unrouted(slave) : bus.async.writeSingleRegister(slave, address, value, timeout);
+    }
+
+    /**
+     * 停止全部总线，等待工作线程结束后关闭 ModbusMaster 和由本对象打开的串口。
+     * 某条总线关闭失败时仍关闭其余总线，最后抛出第一个错误
+     */
+    public void close() throws IOException {
+        List<Bus> closing;
+        synchronized (this) {
+            closing = new ArrayList<Bus>(buses);
+            buses.clear();
+            Arrays.fill(routes, -1);
+        }
+        // 等待工作线程时不持有锁
+        IOException error = null;
+        for (Bus bus : closing) {
+            try {
+                bus.close();
+            } catch (IOException ex) {
+                if (error == null) {
+                    error = ex;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+/**
+ * {@link ModbusFuture} 完成时的回调，在执行请求的工作线程上调用，界面更新需自行切换到主线程
+ */
+public interface ModbusCallback<T> {
+    void onSuccess(T result);
+
+    /**
+     * @param error ModbusError、IOException，或取消时的 CancellationException
+     */
+    void onFailure(Exception error);
+}
@@ -0,0 +1,56 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+public class ModbusFunction {
+    public static final int READ_COILS = 1;
+    public static final int READ_DISCRETE_INPUTS = 2;
+    public static final int READ_HOLDING_REGISTERS = 3;
+    public static final int READ_INPUT_REGISTERS = 4;
+    public static final int WRITE_SINGLE_COIL = 5;
+    public static final int WRITE_SINGLE_REGISTER = 6;
+    public static final int WRITE_MULTIPLE_COILS = 15;
+    public static final int WRITE_MULTIPLE_REGISTERS = 16;
+    public static final int MASK_WRITE_REGISTER = 22;
+    public static final int READ_WRITE_MULTIPLE_REGISTERS = 23;
+
+    /**
+     * 响应中带有字节数字段的读功能码
+     */
+    public static boolean isReadFunction(int function_code) {
+        return function_code == READ_COILS
+                || function_code == READ_DISCRETE_INPUTS
+                || function_code == READ_HOLDING_REGISTERS
+                || function_code == READ_INPUT_REGISTERS
+                || function_code == READ_WRITE_MULTIPLE_REGISTERS;
+    }
+
+    /**
+     * 读功能码单次请求的最大数量：寄存器 125 个，线圈、离散输入 2000 个，
+     * 即响应的字节数字段不超过 250
+     */
+    public static int maxReadQuantity(int function_code) {
+        if (function_code == READ_HOLDING_REGISTERS || function_code == READ_INPUT_REGISTERS
+                || function_code == READ_WRITE_MULTIPLE_REGISTERS) {
+            return 125;
+        }
+        if (function_code == READ_COILS || function_code == READ_DISCRETE_INPUTS) {
+            return 2000;
+        }
+        throw new IllegalArgumentException("Not a read function " + function_code);
+    }
+
+    /**
+     * 多个写功能码单次请求的最大数量：寄存器 123 个，读写寄存器（FC23）121 个，线圈 1968 个
+     */
+    public static int maxWriteQuantity(int function_code) {
+        if (function_code == WRITE_MULTIPLE_REGISTERS) {
+            return 123;
+        }
+        if (function_code == READ_WRITE_MULTIPLE_REGISTERS) {
+            return 121;
+        }
+        if (function_code == WRITE_MULTIPLE_COILS) {
+            return 1968;
+        }
+        throw new IllegalArgumentException("Not a multiple write function " + function_code);
+    }
+}
@@ -0,0 +1,163 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+    Result of a request submitted to AsyncModbusMaster. A Future with completion callbacks,
+    since CompletableFuture is not available on older Android releases.
+ */
+public class ModbusFuture<T> implements Future<T> {
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private final long deadline;
+    private int state = PENDING;
+    private T result;
+    private Exception error;
+    private List<ModbusCallback<? super T>> callbacks;
+
+    /**
+     * @param deadline System.nanoTime() 时间，超过后不再发送请求
+     */
+    ModbusFuture(long deadline) {
+        this.deadline = deadline;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * 工作线程开始执行前调用，已取消或已完成时返回 false
+     */
+    synchronized boolean start() {
+        if (state != PENDING) {
+            return false;
+        }
+        state = RUNNING;
+        return true;
+    }
+
+    void complete(T value) {
+        finish(DONE, value, null);
+    }
+
+    void fail(Exception e) {
+        finish(DONE, null, e);
+    }
+
+    private void finish(int newState, T value, Exception e) {
+        List<ModbusCallback<? super T>> list;
+        synchronized (this) {
+            if (state >= DONE) {
+                return;
+            }
+            state = newState;
+            result = value;
+            error = e;
+            list = callbacks;
+            callbacks = null;
+            notifyAll();
+        }
+        if (list != null) {
+            for (ModbusCallback<? super T> callback : list) {
+                invoke(callback);
+            }
+        }
+    }
+
+    private void invoke(ModbusCallback<? super T> callback) {
+        if (error == null) {
+            callback.onSuccess(result);
+        } else {
+            callback.onFailure(error);
+        }
+    }
+
+    /**
+     * 添加完成回调，已完成时立即在当前线程调用
+     */
+    public void addCallback(ModbusCallback<? super T> callback) {
+        synchronized (this) {
+            if (state < DONE) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList<ModbusCallback<? super T>>(1);
+                }
+                callbacks.add(callback);
+                return;
+            }
+        }
+        invoke(callback);
+    }
+
+    /**
+     * 取消未完成的请求。尚在队列中的请求不会发送；正在执行的请求不会被中断（中断会破坏线路上的帧），
+     * 但其结果被丢弃。mayInterruptIfRunning 被忽略
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (state >= DONE) {
+                return false;
+            }
+        }
+        finish(CANCELLED, null, new CancellationException());
+        onCancel();
+        return isCancelled();
+    }
+
+    /**
+     * 取消后调用，供子类将请求移出队列
+     */
+    void onCancel() {
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state >= DONE;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (state < DONE) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        while (state < DONE) {
+            long wait = end - System.nanoTime();
+            if (wait <= 0) {
+                throw new TimeoutException();
+            }
+            wait(wait / 1000000L, (int) (wait % 1000000L));
+        }
+        return report();
+    }
+
+    private T report() throws ExecutionException {
+        if (state == CANCELLED) {
+            throw (CancellationException) error;
+        }
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,757 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusRtuTransport;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusTransport;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.SerialChannel;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+/*
+    Modbus master, over RTU by default or any other ModbusTransport
+ */
+public class ModbusMaster {
+    // 读功能码响应中数据的起始位置：功能码、字节数之后
+    private static final int DATA_OFFSET = ModbusTransport.PDU_OFFSET + 2;
+
+    private int timeout = 1000;
+    private int retries = 0;
+    private long crcErrorCount;
+    private long invalidResponseCount;
+    private long retryCount;
+    private SlaveHealth health;
+    private ModbusMetrics metrics;
+    private final ModbusTransport transport;
+    private final byte[] requestFrame = new byte[ModbusTransport.BUFFER_LENGTH];
+    private final byte[] responseFrame = new byte[ModbusTransport.BUFFER_LENGTH];
+    // 当前请求预计的响应 PDU 长度
+    private int expected_length;
+    // 记录 metrics 时当前请求开始构造、transport 返回的时间
+    private long encode_started;
+    private long transport_returned;
+    // RTU transport 返回的请求发送完成、收到第一个字节的时间
+    private final long[] transport_times = new long[2];
+    // 调用线程在 call() 期间的期限，System.nanoTime()
+    private final ThreadLocal<Long> callDeadline = new ThreadLocal<Long>();
+
+    public ModbusMaster(SerialChannel port) {
+        this(new ModbusRtuTransport(port));
+    }
+
+    /**
+     * 使用普通的输入输出流以 RTU 方式通讯，由接收线程负责读取输入流
+     *
+     * @param baudrate 用于计算帧间静默时间
+     */
+    public ModbusMaster(InputStream input, OutputStream output, int baudrate) {
+        this(new ModbusRtuTransport(input, output, baudrate));
+    }
+
+    /**
+     * 多个 ModbusMaster 可以共用一个支持并发的 transport（如 ModbusTcpTransport），每个调用线程使用自己的 ModbusMaster
+     */
+    public ModbusMaster(ModbusTransport transport) {
+        this.transport = transport;
+    }
+
+    public ModbusTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * 关闭 transport。RTU 方式下停止接收线程并关闭输入流，串口和输出流由调用方关闭
+     */
+    public void close() throws IOException {
+        transport.close();
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * 设置响应损坏（CRC错误、帧无效）时的重试次数，超时不重试
+     */
+    public void setRetries(int retries) {
+        this.retries = Math.max(retries, 0);
+    }
+
+    /**
+     * 设置从站健康状态，用于按从站自适应超时和离线退避，null 表示始终使用 timeout。
+     * 同一总线上的多个 ModbusMaster 可以共用一个 SlaveHealth
+     */
+    public void setHealth(SlaveHealth health) {
+        this.health = health;
+    }
+
+    public SlaveHealth getHealth() {
+        return health;
+    }
+
+    /**
+     * 设置事务统计，null 表示不统计。同一总线上的多个 ModbusMaster 可以共用一个 ModbusMetrics
+     */
+    public void setMetrics(ModbusMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ModbusMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getCrcErrorCount() {
+        return crcErrorCount;
+    }
+
+    public long getInvalidResponseCount() {
+        return invalidResponseCount;
+    }
+
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * 在 requestFrame 的 PDU_OFFSET 处构造请求 PDU，并计算预计的响应 PDU 长度
+     *
+     * @return 请求 PDU 长度
+     */
+    int encodeRequest(int slave, int function_code, int starting_address, int quantity_of_x, int output_value) throws ModbusError {
+        markEncode();
+        checkAddress(slave, starting_address);
+        if (ModbusFunction.isReadFunction(function_code)) {
+            checkQuantity(quantity_of_x, ModbusFunction.maxReadQuantity(function_code));
+        } else {
+            // 单个写入
+            checkQuantity(quantity_of_x, 1);
+        }
+
+        // 构造request
+        byte[] request = requestFrame;
+        int length = ModbusTransport.PDU_OFFSET;
+        if (function_code == ModbusFunction.READ_COILS || function_code == ModbusFunction.READ_DISCRETE_INPUTS) {
+            request[length++] = (byte) function_code;
+            length = ByteUtil.putInt16(request, length, starting_address);
+            length = ByteUtil.putInt16(request, length, quantity_of_x);
+
+            // 功能码、字节数，每 8 个线圈一个字节
+            expected_length = (quantity_of_x + 7) / 8 + 2;
+        } else if (function_code == ModbusFunction.READ_INPUT_REGISTERS || function_code == ModbusFunction.READ_HOLDING_REGISTERS) {
+            request[length++] = (byte) function_code;
+            length = ByteUtil.putInt16(request, length, starting_address);
+            length = ByteUtil.putInt16(request, length, quantity_of_x);
+
+            expected_length = 2 * quantity_of_x + 2;
+        } else if (function_code == ModbusFunction.WRITE_SINGLE_COIL || function_code == ModbusFunction.WRITE_SINGLE_REGISTER) {
+            if (function_code == ModbusFunction.WRITE_SINGLE_COIL)
+                if (output_value != 0) output_value = 0xff00;
+            request[length++] = (byte) function_code;
+            length = ByteUtil.putInt16(request, length, starting_address);
+            length = ByteUtil.putInt16(request, length, output_value);
+
+            expected_length = 5;
+        } else if (function_code == ModbusFunction.WRITE_MULTIPLE_COILS || function_code == ModbusFunction.WRITE_MULTIPLE_REGISTERS
+                || function_code == ModbusFunction.MASK_WRITE_REGISTER || function_code == ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS) {
+            throw new ModbusError(ModbusErrorType.ModbusInvalidArgumentError, "Use the dedicated method for function " + function_code);
+        } else {
+            throw new ModbusError(ModbusErrorType.ModbusFunctionNotSupportedError, "Not support function " + function_code);
+        }
+        return length - ModbusTransport.PDU_OFFSET;
+    }
+
+    /**
+     * 构造 FC15/FC16 请求头：功能码、起始地址、数量、字节数，数据由调用方随后写入
+     *
+     * @return 数据在 requestFrame 中的起始位置
+     */
+    private int encodeWriteMultiple(int slave, int function_code, int starting_address, int quantity_of_x, int byte_count) throws ModbusError {
+        markEncode();
+        checkAddress(slave, starting_address);
+        checkQuantity(quantity_of_x, ModbusFunction.maxWriteQuantity(function_code));
+        byte[] request = requestFrame;
+        int length = ModbusTransport.PDU_OFFSET;
+        request[length++] = (byte) function_code;
+        length = ByteUtil.putInt16(request, length, starting_address);
+        length = ByteUtil.putInt16(request, length, quantity_of_x);
+        request[length++] = (byte) byte_count;
+
+        // 响应回显起始地址和数量
+        expected_length = 5;
+        return length;
+    }
+
+    int encodeWriteRegisters(int slave, int starting_address, int[] values, int off, int quantity_of_x) throws ModbusError {
+        int length = encodeWriteMultiple(slave, ModbusFunction.WRITE_MULTIPLE_REGISTERS, starting_address, quantity_of_x, 2 * quantity_of_x);
+        for (int i = 0; i < quantity_of_x; i++) {
+            length = ByteUtil.putInt16(requestFrame, length, values[off + i]);
+        }
+        return length - ModbusTransport.PDU_OFFSET;
+    }
+
+    int encodeWriteCoils(int slave, int starting_address, boolean[] values, int off, int quantity_of_x) throws ModbusError {
+        int byte_count = (quantity_of_x + 7) / 8;
+        int length = encodeWriteMultiple(slave, ModbusFunction.WRITE_MULTIPLE_COILS, starting_address, quantity_of_x, byte_count);
+        for (int k = 0; k < byte_count; k++) {
+            int b = 0;
+            for (int i = k * 8, end = Math.min(i + 8, quantity_of_x); i < end; i++) {
+                if (values[off + i]) {
+                    b |= 1 << (i & 7);
+                }
+            }
+            requestFrame[length++] = (byte) b;
+        }
+        return length - ModbusTransport.PDU_OFFSET;
+    }
+
+    /**
+     * 功能码 22，寄存器新值 = (当前值 & and_mask) | (or_mask & ~and_mask)
+     */
+    int encodeMaskWrite(int slave, int address, int and_mask, int or_mask) throws ModbusError {
+        markEncode();
+        checkAddress(slave, address);
+        byte[] request = requestFrame;
+        int length = ModbusTransport.PDU_OFFSET;
+        request[length++] = (byte) ModbusFunction.MASK_WRITE_REGISTER;
+        length = ByteUtil.putInt16(request, length, address);
+        length = ByteUtil.putInt16(request, length, and_mask);
+        length = ByteUtil.putInt16(request, length, or_mask);
+
+        // 响应回显整个请求
+        expected_length = 7;
+        return length - ModbusTransport.PDU_OFFSET;
+    }
+
+    /**
+     * 功能码 23，先写入 values[off .. off + write_quantity) 再读取，响应与功能码 3 相同
+     */
+    int encodeReadWrite(int slave, int read_address, int read_quantity, int write_address, int[] values, int off, int write_quantity) throws ModbusError {
+        markEncode();
+        checkAddress(slave, read_address);
+        checkAddress(slave, write_address);
+        checkQuantity(read_quantity, ModbusFunction.maxReadQuantity(ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS));
+        checkQuantity(write_quantity, ModbusFunction.maxWriteQuantity(ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS));
+        byte[] request = requestFrame;
+        int length = ModbusTransport.PDU_OFFSET;
+        request[length++] = (byte) ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS;
+        length = ByteUtil.putInt16(request, length, read_address);
+        length = ByteUtil.putInt16(request, length, read_quantity);
+        length = ByteUtil.putInt16(request, length, write_address);
+        length = ByteUtil.putInt16(request, length, write_quantity);
+        request[length++] = (byte) (2 * write_quantity);
+        for (int i = 0; i < write_quantity; i++) {
+            length = ByteUtil.putInt16(request, length, values[off + i]);
+        }
+
+        expected_length = 2 * read_quantity + 2;
+        return length - ModbusTransport.PDU_OFFSET;
+    }
+
+    private void markEncode() {
+        if (metrics != null) {
+            encode_started = System.nanoTime();
+        }
+    }
+
+    private static void checkAddress(int slave, int starting_address) throws ModbusError {
+        if (slave < 0 || slave > 255) {
+            throw new ModbusError(ModbusErrorType.ModbusInvalidArgumentError, "Invalid slave " + slave);
+        }
+        if (starting_address < 0 || starting_address > 0xffff) {
+            throw new ModbusError(ModbusErrorType.ModbusInvalidArgumentError, "Invalid starting_address " + starting_address);
+        }
+    }
+
+    private static void checkQuantity(int quantity_of_x, int max) throws ModbusError {
+        if (quantity_of_x < 1 || quantity_of_x > max) {
+            throw new ModbusError(ModbusErrorType.ModbusInvalidArgumentError, "Invalid quantity_of_x " + quantity_of_x);
+        }
+    }
+
+    byte[] getRequestFrame() {
+        return requestFrame;
+    }
+
+    /**
+     * 发送请求并接收响应，响应损坏（CRC错误或帧无效）时按 retries 重试
+     *
+     * @return 响应中数据的字节数，数据从 responseFrame[DATA_OFFSET] 开始
+     */
+    private int transact(int slave, int function_code, int starting_address, int quantity_of_x, int output_value) throws IOException, ModbusError {
+        int pdu_length = encodeRequest(slave, function_code, starting_address, quantity_of_x, output_value);
+        return transact(slave, function_code, quantity_of_x, pdu_length);
+    }
+
+    /**
+     * 在期限内执行 task。task 中每个事务（包括分块读取的每一块和重试）的超时不超过剩余期限，
+     * 期限已到时不再发送，以 ModbusTimeoutError 失败。期限只作用于当前线程，不影响其他调用方
+     *
+     * @param deadline System.nanoTime() 时间
+     */
+    <T> T call(AsyncModbusMaster.Task<T> task, long deadline) throws IOException, ModbusError {
+        Long previous = callDeadline.get();
+        callDeadline.set(deadline);
+        try {
+            return task.run(this);
+        } finally {
+            callDeadline.set(previous);
+        }
+    }
+
+    /**
+     * @return 本次事务的超时时间，不超过 call() 的剩余期限
+     */
+    private int transactionTimeout() throws ModbusError {
+        Long deadline = callDeadline.get();
+        if (deadline == null) {
+            return timeout;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new ModbusError(ModbusErrorType.ModbusTimeoutError, "Deadline expired before the request was sent.");
+        }
+        return (int) Math.min(timeout, (remaining + 999999L) / 1000000L);
+    }
+
+    /**
+     * 发送 requestFrame 中已构造好的请求，重试时原样重发
+     */
+    private int transact(int slave, int function_code, int quantity_of_x, int pdu_length) throws IOException, ModbusError {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                int timeout = transactionTimeout();
+                if (health == null && metrics == null) {
+                    return transactOnce(slave, function_code, quantity_of_x, pdu_length, timeout);
+                }
+                return transactTracked(slave, function_code, quantity_of_x, pdu_length, timeout);
+            } catch (ModbusError e) {
+                if (e.getType() == ModbusErrorType.ModbusCrcError) {
+                    crcErrorCount++;
+                } else if (e.getType() == ModbusErrorType.ModbusInvalidResponseError) {
+                    invalidResponseCount++;
+                } else {
+                    throw e;
+                }
+                if (attempt >= retries) {
+                    throw e;
+                }
+                retryCount++;
+            }
+        }
+    }
+
+    /**
+     * 使用 health 给出的超时时间执行事务，并记录响应时间或超时、事务统计
+     */
+    private int transactTracked(int slave, int function_code, int quantity_of_x, int pdu_length, int timeout) throws IOException, ModbusError {
+        // RTU 帧：从站地址 + PDU + CRC
+        int request_bytes = pdu_length + 3;
+        int response_bytes = expected_length + 3;
+        int transaction_timeout = health != null ? health.timeout(slave, request_bytes, response_bytes, timeout) : timeout;
+        long started = System.nanoTime();
+        try {
+            int data_length = transactOnce(slave, function_code, quantity_of_x, pdu_length, transaction_timeout);
+            long decoded = System.nanoTime();
+            if (health != null) {
+                health.onResponse(slave, decoded - started, request_bytes, response_bytes);
+            }
+            if (metrics != null) {
+                metrics.onTransaction(slave, function_code, encode_started, started,
+                        transport_times[0], transport_times[1], transport_returned, decoded);
+            }
+            return data_length;
+        } catch (ModbusError e) {
+            long failed = System.nanoTime();
+            if (health != null) {
+                if (e.getType() == ModbusErrorType.ModbusTimeoutError) {
+                    health.onTimeout(slave);
+                } else {
+                    health.onResponse(slave, failed - started, request_bytes, response_bytes);
+                }
+            }
+            if (metrics != null) {
+                metrics.onError(slave, function_code, e, started, failed);
+            }
+            throw e;
+        } catch (IOException e) {
+            // 超时之外的通讯故障，如管道断开
+            if (metrics != null) {
+                metrics.onError(slave, function_code, e, started, System.nanoTime());
+            }
+            throw e;
+        } finally {
+            // 重试时不再计入构造时间
+            encode_started = 0;
+        }
+    }
+
+    private int transactOnce(int slave, int function_code, int quantity_of_x, int pdu_length, int timeout) throws IOException, ModbusError {
+        int response_length;
+        if (metrics != null && transport instanceof ModbusRtuTransport) {
+            // 时间点由 transport 在同一把锁内返回，共用 transport 的其他 ModbusMaster 不会覆盖
+            transport_times[0] = 0;
+            transport_times[1] = 0;
+            response_length = ((ModbusRtuTransport) transport).transact(slave, requestFrame, pdu_length, responseFrame, expected_length, timeout, transport_times);
+        } else {
+            response_length = transport.transact(slave, requestFrame, pdu_length, responseFrame, expected_length, timeout);
+        }
+        if (metrics != null) {
+            transport_returned = System.nanoTime();
+        }
+
+        byte[] response = responseFrame;
+        int return_code = response[ModbusTransport.PDU_OFFSET] & 0xff;
+        if ((return_code & 0x7f) != function_code) {
+            throw new ModbusError(ModbusErrorType.ModbusInvalidResponseError,
+                    String.format("Response function %d is different from request function %d", return_code, function_code));
+        }
+        if ((return_code & 0x80) != 0) {
+            int error_code = response[ModbusTransport.PDU_OFFSET + 1] & 0xff;
+            throw new ModbusError(error_code);
+        }
+
+        int data_length = 0;
+        if (ModbusFunction.isReadFunction(function_code)) {
+            // get the values returned by the reading function
+            data_length = response[ModbusTransport.PDU_OFFSET + 1] & 0xff;
+            int expected_data_length = (function_code == ModbusFunction.READ_COILS || function_code == ModbusFunction.READ_DISCRETE_INPUTS)
+                    ? (quantity_of_x + 7) / 8 : 2 * quantity_of_x;
+            if (data_length != expected_data_length || response_length != data_length + 2) {
+                throw new ModbusError(ModbusErrorType.ModbusInvalidResponseError,
+                        String.format("Byte count is %d while %d bytes are expected. ", data_length, expected_data_length));
+            }
+        } else if (response_length != expected_length) {
+            throw new ModbusError(ModbusErrorType.ModbusInvalidResponseError, "Response length is invalid " + response_length);
+        } else if (function_code == ModbusFunction.WRITE_MULTIPLE_COILS || function_code == ModbusFunction.WRITE_MULTIPLE_REGISTERS
+                || function_code == ModbusFunction.MASK_WRITE_REGISTER) {
+            // 回显的起始地址和数量（FC22 为地址和掩码）须与请求一致
+            for (int i = 1; i < expected_length; i++) {
+                if (response[ModbusTransport.PDU_OFFSET + i] != requestFrame[ModbusTransport.PDU_OFFSET + i]) {
+                    throw new ModbusError(ModbusErrorType.ModbusInvalidResponseError, "Response does not echo the written range");
+                }
+            }
+        }
+        return data_length;
+    }
+
+    /**
+     * 执行单个事务，读取数量不超过 ModbusFunction.maxReadQuantity；更大的块使用各批量读取方法
+     */
+    synchronized public int[] execute(int slave, int function_code, int starting_address, int quantity_of_x, int output_value) throws IOException, ModbusError {
+        transact(slave, function_code, starting_address, quantity_of_x, output_value);
+        // 读取反馈数据
+        int[] result = new int[quantity_of_x];
+        if (function_code == ModbusFunction.READ_COILS || function_code == ModbusFunction.READ_DISCRETE_INPUTS) {
+            decodeBits(quantity_of_x, result, 0);
+        } else if (function_code == ModbusFunction.READ_INPUT_REGISTERS || function_code == ModbusFunction.READ_HOLDING_REGISTERS) {
+            decodeRegisters(quantity_of_x, result, 0);
+        } else if (function_code == ModbusFunction.WRITE_SINGLE_COIL || function_code == ModbusFunction.WRITE_SINGLE_REGISTER) {
+            result[0] = getRegister(ModbusTransport.PDU_OFFSET + 1);
+            //result[1] = getRegister(ModbusTransport.PDU_OFFSET + 3);
+        }
+        return result;
+    }
+
+    /*
+        直接从 responseFrame 解码到调用方提供的数组，不产生中间对象
+     */
+    private int getRegister(int pos) {
+        return ByteUtil.getUInt16(responseFrame, pos);
+    }
+
+    private boolean getBit(int index) {
+        return (responseFrame[DATA_OFFSET + (index >> 3)] & (1 << (index & 7))) != 0;
+    }
+
+    private void decodeRegisters(int quantity, int[] dst, int dstOff) {
+        for (int i = 0, pos = DATA_OFFSET; i < quantity; i++, pos += 2) {
+            dst[dstOff + i] = getRegister(pos);
+        }
+    }
+
+    private void decodeRegisters(int quantity, short[] dst, int dstOff) {
+        for (int i = 0, pos = DATA_OFFSET; i < quantity; i++, pos += 2) {
+            dst[dstOff + i] = (short) getRegister(pos);
+        }
+    }
+
+    private void decodeBits(int quantity, boolean[] dst, int dstOff) {
+        for (int i = 0; i < quantity; i++) {
+            dst[dstOff + i] = getBit(i);
+        }
+    }
+
+    private void decodeBits(int quantity, int[] dst, int dstOff) {
+        for (int i = 0; i < quantity; i++) {
+            dst[dstOff + i] = getBit(i) ? 1 : 0;
+        }
+    }
+
+    /**
+     * 将 quantity 个位按位或到位图 dst 的第 bitOff 位起，目标位须已清零
+     */
+    private void decodeBits(int quantity, long[] dst, int bitOff) {
+        int bytes = (quantity + 7) >> 3;
+        for (int k = 0; k < bytes; k++) {
+            long v = responseFrame[DATA_OFFSET + k] & 0xffL;
+            if (k == bytes - 1 && (quantity & 7) != 0) {
+                v &= (1L << (quantity & 7)) - 1;
+            }
+            int bit = bitOff + (k << 3);
+            int shift = bit & 63;
+            dst[bit >> 6] |= v << shift;
+            if (shift > 56) {
+                dst[(bit >> 6) + 1] |= v >>> (64 - shift);
+            }
+        }
+    }
+
+    private static void checkDestination(int dstLength, int dstOff, int quantity) throws ModbusError {
+        if (dstOff < 0 || quantity < 0 || dstOff + quantity > dstLength) {
+            throw new ModbusError(ModbusErrorType.ModbusInvalidArgumentError,
+                    String.format("Destination of length %d cannot hold %d values at offset %d", dstLength, quantity, dstOff));
+        }
+    }
+
+    /**
+     * 分块读取前检查整个范围，数量为 0 时也抛出异常
+     */
+    static void checkRange(int slave, int startAddress, int numberOfPoints) throws ModbusError {
+        checkAddress(slave, startAddress);
+        if (numberOfPoints < 1 || startAddress > 0x10000 - numberOfPoints) {
+            throw new ModbusError(ModbusErrorType.ModbusInvalidArgumentError,
+                    String.format("Invalid range of %d points at %d", numberOfPoints, startAddress));
+        }
+    }
+
+    /**
+     * 分块读取中的一块：从 startAddress + done 起读取不超过协议上限的数量，范围须已由 checkRange() 检查
+     *
+     * @return 本块读取的数量
+     */
+    private int readChunk(int slave, int function_code, int startAddress, int numberOfPoints, int done) throws IOException, ModbusError {
+        int quantity = Math.min(numberOfPoints - done, ModbusFunction.maxReadQuantity(function_code));
+        transact(slave, function_code, startAddress + done, quantity, 0);
+        return quantity;
+    }
+
+    /*
+        以下批量读取方法不受单帧数量上限的限制，超出时拆分为尽可能少的满帧依次读取
+     */
+
+    /**
+     * 读取保持寄存器到调用方提供的数组，值为无符号16位
+     */
+    synchronized public void readHoldingRegisters(int slave, int startAddress, int numberOfPoints, int[] dst, int dstOff) throws IOException, ModbusError {
+        checkRange(slave, startAddress, numberOfPoints);
+        checkDestination(dst.length, dstOff, numberOfPoints);
+        for (int done = 0, quantity; done < numberOfPoints; done += quantity) {
+            quantity = readChunk(slave, ModbusFunction.READ_HOLDING_REGISTERS, startAddress, numberOfPoints, done);
+            decodeRegisters(quantity, dst, dstOff + done);
+        }
+    }
+
+    /**
+     * 读取保持寄存器到调用方提供的数组，值为有符号16位
+     */
+    synchronized public void readHoldingRegisters(int slave, int startAddress, int numberOfPoints, short[] dst, int dstOff) throws IOException, ModbusError {
+        checkRange(slave, startAddress, numberOfPoints);
+        checkDestination(dst.length, dstOff, numberOfPoints);
+        for (int done = 0, quantity; done < numberOfPoints; done += quantity) {
+            quantity = readChunk(slave, ModbusFunction.READ_HOLDING_REGISTERS, startAddress, numberOfPoints, done);
+            decodeRegisters(quantity, dst, dstOff + done);
+        }
+    }
+
+    synchronized public void readInputRegisters(int slave, int startAddress, int numberOfPoints, int[] dst, int dstOff) throws IOException, ModbusError {
+        checkRange(slave, startAddress, numberOfPoints);
+        checkDestination(dst.length, dstOff, numberOfPoints);
+        for (int done = 0, quantity; done < numberOfPoints; done += quantity) {
+            quantity = readChunk(slave, ModbusFunction.READ_INPUT_REGISTERS, startAddress, numberOfPoints, done);
+            decodeRegisters(quantity, dst, dstOff + done);
+        }
+    }
+
+    synchronized public void readInputRegisters(int slave, int startAddress, int numberOfPoints, short[] dst, int dstOff) throws IOException, ModbusError {
+        checkRange(slave, startAddress, numberOfPoints);
+        checkDestination(dst.length, dstOff, numberOfPoints);
+        for (int done = 0, quantity; done < numberOfPoints; done += quantity) {
+            quantity = readChunk(slave, ModbusFunction.READ_INPUT_REGISTERS, startAddress, numberOfPoints, done);
+            decodeRegisters(quantity, dst, dstOff + done);
+        }
+    }
+
+    synchronized public void readCoils(int slave, int startAddress, int numberOfPoints, boolean[] dst, int dstOff) throws IOException, ModbusError {
+        readBits(slave, ModbusFunction.READ_COILS, startAddress, numberOfPoints, dst, dstOff);
+    }
+
+    /**
+     * 读取线圈到位图，第 i 个线圈对应 dst[i / 64] 的第 i % 64 位，最后一个字中多余的位清零
+     */
+    synchronized public void readCoils(int slave, int startAddress, int numberOfPoints, long[] dst) throws IOException, ModbusError {
+        readBits(slave, ModbusFunction.READ_COILS, startAddress, numberOfPoints, dst);
+    }
+
+    synchronized public void readInputs(int slave, int startAddress, int numberOfPoints, boolean[] dst, int dstOff) throws IOException, ModbusError {
+        readBits(slave, ModbusFunction.READ_DISCRETE_INPUTS, startAddress, numberOfPoints, dst, dstOff);
+    }
+
+    synchronized public void readInputs(int slave, int startAddress, int numberOfPoints, long[] dst) throws IOException, ModbusError {
+        readBits(slave, ModbusFunction.READ_DISCRETE_INPUTS, startAddress, numberOfPoints, dst);
+    }
+
+    private void readBits(int slave, int function_code, int startAddress, int numberOfPoints, boolean[] dst, int dstOff) throws IOException, ModbusError {
+        checkRange(slave, startAddress, numberOfPoints);
+        checkDestination(dst.length, dstOff, numberOfPoints);
+        for (int done = 0, quantity; done < numberOfPoints; done += quantity) {
+            quantity = readChunk(slave, function_code, startAddress, numberOfPoints, done);
+            decodeBits(quantity, dst, dstOff + done);
+        }
+    }
+
+    private void readBits(int slave, int function_code, int startAddress, int numberOfPoints, int[] dst, int dstOff) throws IOException, ModbusError {
+        checkRange(slave, startAddress, numberOfPoints);
+        checkDestination(dst.length, dstOff, numberOfPoints);
+        for (int done = 0, quantity; done < numberOfPoints; done += quantity) {
+            quantity = readChunk(slave, function_code, startAddress, numberOfPoints, done);
+            decodeBits(quantity, dst, dstOff + done);
+        }
+    }
+
+    private void readBits(int slave, int function_code, int startAddress, int numberOfPoints, long[] dst) throws IOException, ModbusError {
+        checkRange(slave, startAddress, numberOfPoints);
+        checkDestination(dst.length * 64, 0, numberOfPoints);
+        for (int w = 0, words = (numberOfPoints + 63) >> 6; w < words; w++) {
+            dst[w] = 0;
+        }
+        for (int done = 0, quantity; done < numberOfPoints; done += quantity) {
+            quantity = readChunk(slave, function_code, startAddress, numberOfPoints, done);
+            decodeBits(quantity, dst, done);
+        }
+    }
+
+    synchronized public int[] readCoils(int slave, int startAddress, int numberOfPoints) throws IOException, ModbusError {
+        int[] result = new int[Math.max(numberOfPoints, 0)];
+        readBits(slave, ModbusFunction.READ_COILS, startAddress, numberOfPoints, result, 0);
+        return result;
+    }
+
+    public int[] readHoldingRegisters(int slave, int startAddress, int numberOfPoints) throws IOException, ModbusError {
+        int[] result = new int[Math.max(numberOfPoints, 0)];
+        readHoldingRegisters(slave, startAddress, numberOfPoints, result, 0);
+        return result;
+    }
+
+    public int[] readInputRegisters(int slave, int startAddress, int numberOfPoints) throws IOException, ModbusError {
+        int[] result = new int[Math.max(numberOfPoints, 0)];
+        readInputRegisters(slave, startAddress, numberOfPoints, result, 0);
+        return result;
+    }
+
+    synchronized public int[] readInputs(int slave, int startAddress, int numberOfPoints) throws IOException, ModbusError {
+        int[] result = new int[Math.max(numberOfPoints, 0)];
+        readBits(slave, ModbusFunction.READ_DISCRETE_INPUTS, startAddress, numberOfPoints, result, 0);
+        return result;
+    }
+
+    public void writeSingleCoil(int slave, int address, boolean value) throws IOException, ModbusError {
+        execute(slave, ModbusFunction.WRITE_SINGLE_COIL, address, 1, value ? 1 : 0);
+    }
+
+    public void writeSingleRegister(int slave, int address, int value) throws IOException, ModbusError {
+        execute(slave, ModbusFunction.WRITE_SINGLE_REGISTER, address, 1, value);
+    }
+
+    /**
+     * 功能码 16，一次写入 values[off .. off + count) 到连续的保持寄存器
+     */
+    synchronized public void writeMultipleRegisters(int slave, int startAddress, int[] values, int off, int count) throws IOException, ModbusError {
+        checkDestination(values.length, off, count);
+        int pdu_length = encodeWriteRegisters(slave, startAddress, values, off, count);
+        transact(slave, ModbusFunction.WRITE_MULTIPLE_REGISTERS, count, pdu_length);
+    }
+
+    /**
+     * 功能码 15，一次写入 values[off .. off + count) 到连续的线圈
+     */
+    synchronized public void writeMultipleCoils(int slave, int startAddress, boolean[] values, int off, int count) throws IOException, ModbusError {
+        checkDestination(values.length, off, count);
+        int pdu_length = encodeWriteCoils(slave, startAddress, values, off, count);
+        transact(slave, ModbusFunction.WRITE_MULTIPLE_COILS, count, pdu_length);
+    }
+
+    /**
+     * 功能码 22，在从站内一次完成寄存器的读-改-写
+     */
+    synchronized public void maskWriteRegister(int slave, int address, int andMask, int orMask) throws IOException, ModbusError {
+        int pdu_length = encodeMaskWrite(slave, address, andMask & 0xffff, orMask & 0xffff);
+        transact(slave, ModbusFunction.MASK_WRITE_REGISTER, 1, pdu_length);
+    }
+
+    /**
+     * 将寄存器中 mask 的各位置 1，其余位不变
+     */
+    public void setBits(int slave, int address, int mask) throws IOException, ModbusError {
+        maskWriteRegister(slave, address, ~mask, mask);
+    }
+
+    /**
+     * 将寄存器中 mask 的各位清 0，其余位不变
+     */
+    public void clearBits(int slave, int address, int mask) throws IOException, ModbusError {
+        maskWriteRegister(slave, address, ~mask, 0);
+    }
+
+    /**
+     * 功能码 23，在一个事务中先写入 values[off .. off + writeCount)，再读取 readCount 个寄存器到 dst
+     */
+    synchronized public void readWriteMultipleRegisters(int slave, int readAddress, int readCount, int[] dst, int dstOff,
+                                                        int writeAddress, int[] values, int off, int writeCount) throws IOException, ModbusError {
+        checkDestination(dst.length, dstOff, readCount);
+        checkDestination(values.length, off, writeCount);
+        int pdu_length = encodeReadWrite(slave, readAddress, readCount, writeAddress, values, off, writeCount);
+        transact(slave, ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS, readCount, pdu_length);
+        decodeRegisters(readCount, dst, dstOff);
+    }
+
+    public int[] readWriteMultipleRegisters(int slave, int readAddress, int readCount, int writeAddress, int[] values) throws IOException, ModbusError {
+        int[] result = new int[readCount];
+        readWriteMultipleRegisters(slave, readAddress, readCount, result, 0, writeAddress, values, 0, values.length);
+        return result;
+    }
+
+    public void writeMultipleRegisters(int slave, int startAddress, int[] values) throws IOException, ModbusError {
+        writeMultipleRegisters(slave, startAddress, values, 0, values.length);
+    }
+
+    public void writeMultipleCoils(int slave, int startAddress, boolean[] values) throws IOException, ModbusError {
+        writeMultipleCoils(slave, startAddress, values, 0, values.length);
+    }
+
+    public boolean readCoil(int slave, int address) throws IOException, ModbusError {
+        int[] values = readCoils(slave, address, 1);
+        return values[0] > 0;
+    }
+
+    public int readHoldingRegister(int slave, int address) throws IOException, ModbusError {
+        int[] values = readHoldingRegisters(slave, address, 1);
+        return values[0];
+    }
+
+    public int readInputRegister(int slave, int address) throws IOException, ModbusError {
+        int[] values = readInputRegisters(slave, address, 1);
+        return values[0];
+    }
+
+    public boolean readInput(int slave, int address) throws IOException, ModbusError {
+        int[] values = readInputs(slave, address, 1);
+        return values[0] > 0;
+    }
+}
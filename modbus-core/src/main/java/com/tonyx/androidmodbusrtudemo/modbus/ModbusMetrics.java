@@ -0,0 +1,303 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+/*
+    Transaction metrics of one bus, recorded by ModbusMaster: latency histograms in total,
+    per phase, per slave and per function code, error counters and bus utilisation.
+    Recording does not allocate once the histogram of a slave or function exists.
+    Share one ModbusMetrics between the masters of a bus, and read it from an exporter.
+ */
+public class ModbusMetrics {
+    /**
+     * 构造请求
+     */
+    public static final int PHASE_ENCODE = 0;
+    /**
+     * 发送请求帧
+     */
+    public static final int PHASE_WRITE = 1;
+    /**
+     * 发送完成到收到第一个字节
+     */
+    public static final int PHASE_WAIT = 2;
+    /**
+     * 第一个字节到整帧接收完成
+     */
+    public static final int PHASE_RECEIVE = 3;
+    /**
+     * 校验、解析响应
+     */
+    public static final int PHASE_DECODE = 4;
+    public static final int PHASES = 5;
+
+    private static final int SLAVES = 256;
+    private static final int FUNCTIONS = 128;
+
+    private final String name;
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram[] phases = new LatencyHistogram[PHASES];
+    // 按需创建
+    private final LatencyHistogram[] slaveLatency = new LatencyHistogram[SLAVES];
+    private final LatencyHistogram[] functionLatency = new LatencyHistogram[FUNCTIONS];
+
+    private long transactionCount;
+    private long timeoutCount;
+    private long crcErrorCount;
+    private long invalidResponseCount;
+    private long ioErrorCount;
+    private final long[] exceptionCount = new long[256];
+    private final long[] slaveTimeoutCount = new long[SLAVES];
+    private final long[] slaveErrorCount = new long[SLAVES];
+    private long busyNanos;
+
+    private long exportedNanos = System.nanoTime();
+    private long exportedBusyNanos;
+    private double busUtilization;
+
+    public ModbusMetrics(String name) {
+        this.name = name;
+        for (int i = 0; i < PHASES; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 记录成功的事务。时间点均为 System.nanoTime()，0 表示未知，对应的阶段不记录
+     *
+     * @param encodeStarted 开始构造请求
+     * @param sent          调用 transport
+     * @param written       请求帧发送完成
+     * @param firstByte     收到响应的第一个字节
+     * @param returned      transport 返回
+     * @param decoded       响应解析完成
+     */
+    void onTransaction(int slave, int function_code, long encodeStarted, long sent, long written, long firstByte, long returned, long decoded) {
+        if (encodeStarted != 0) {
+            phases[PHASE_ENCODE].record(sent - encodeStarted);
+        }
+        if (written != 0) {
+            phases[PHASE_WRITE].record(written - sent);
+            if (firstByte != 0) {
+                phases[PHASE_WAIT].record(firstByte - written);
+                phases[PHASE_RECEIVE].record(returned - firstByte);
+            }
+        }
+        phases[PHASE_DECODE].record(decoded - returned);
+        long elapsed = decoded - (encodeStarted != 0 ? encodeStarted : sent);
+        total.record(elapsed);
+        slaveHistogram(slave).record(elapsed);
+        functionHistogram(function_code).record(elapsed);
+        synchronized (this) {
+            transactionCount++;
+            busyNanos += returned - sent;
+        }
+    }
+
+    /**
+     * 记录失败的事务
+     *
+     * @param sent   调用 transport
+     * @param failed 失败时
+     */
+    void onError(int slave, int function_code, ModbusError error, long sent, long failed) {
+        synchronized (this) {
+            countError(slave, sent, failed);
+            if (error.getType() == ModbusErrorType.ModbusTimeoutError) {
+                countTimeout(slave);
+            } else if (error.getType() == ModbusErrorType.ModbusCrcError) {
+                crcErrorCount++;
+            } else if (error.getType() == ModbusErrorType.ModbusInvalidResponseError) {
+                invalidResponseCount++;
+            } else if (error.getType() == ModbusErrorType.ModbusError) {
+                exceptionCount[error.getCode() & 0xff]++;
+            }
+        }
+    }
+
+    /**
+     * 记录通讯故障导致失败的事务，如连接断开。SocketTimeoutException 计为超时
+     *
+     * @param sent   调用 transport
+     * @param failed 失败时
+     */
+    void onError(int slave, int function_code, IOException error, long sent, long failed) {
+        synchronized (this) {
+            countError(slave, sent, failed);
+            if (error instanceof SocketTimeoutException) {
+                countTimeout(slave);
+            } else {
+                ioErrorCount++;
+            }
+        }
+    }
+
+    private void countError(int slave, long sent, long failed) {
+        transactionCount++;
+        busyNanos += failed - sent;
+        if (slave >= 0 && slave < SLAVES) {
+            slaveErrorCount[slave]++;
+        }
+    }
+
+    private void countTimeout(int slave) {
+        timeoutCount++;
+        if (slave >= 0 && slave < SLAVES) {
+            slaveTimeoutCount[slave]++;
+        }
+    }
+
+    private synchronized LatencyHistogram slaveHistogram(int slave) {
+        LatencyHistogram histogram = slaveLatency[slave & 0xff];
+        if (histogram == null) {
+            histogram = slaveLatency[slave & 0xff] = new LatencyHistogram();
+        }
+        return histogram;
+    }
+
+    private synchronized LatencyHistogram functionHistogram(int function_code) {
+        LatencyHistogram histogram = functionLatency[function_code & 0x7f];
+        if (histogram == null) {
+            histogram = functionLatency[function_code & 0x7f] = new LatencyHistogram();
+        }
+        return histogram;
+    }
+
+    /**
+     * 成功事务从构造请求到解析完成的时间
+     */
+    public LatencyHistogram getLatency() {
+        return total;
+    }
+
+    /**
+     * @param phase PHASE_ENCODE 等。WRITE、WAIT、RECEIVE 只在 transport 提供时间点时（RTU）记录
+     */
+    public LatencyHistogram getPhaseLatency(int phase) {
+        return phases[phase];
+    }
+
+    /**
+     * @return 没有该从站的事务时返回 null
+     */
+    public synchronized LatencyHistogram getSlaveLatency(int slave) {
+        return slaveLatency[slave];
+    }
+
+    /**
+     * @return 没有该功能码的事务时返回 null
+     */
+    public synchronized LatencyHistogram getFunctionLatency(int function_code) {
+        return functionLatency[function_code];
+    }
+
+    /**
+     * 已发送的事务数，包括失败的事务
+     */
+    public synchronized long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public synchronized long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public synchronized long getCrcErrorCount() {
+        return crcErrorCount;
+    }
+
+    public synchronized long getInvalidResponseCount() {
+        return invalidResponseCount;
+    }
+
+    /**
+     * 通讯故障（IOException）导致失败的事务数，不包括超时
+     */
+    public synchronized long getIoErrorCount() {
+        return ioErrorCount;
+    }
+
+    /**
+     * 从站返回的异常响应数
+     *
+     * @param code 异常码，如 2 非法数据地址
+     */
+    public synchronized long getExceptionCount(int code) {
+        return exceptionCount[code];
+    }
+
+    public synchronized long getSlaveTimeoutCount(int slave) {
+        return slaveTimeoutCount[slave];
+    }
+
+    public synchronized long getSlaveErrorCount(int slave) {
+        return slaveErrorCount[slave];
+    }
+
+    /**
+     * 总线被事务占用的累计时间
+     */
+    public synchronized long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * 上次导出的统计周期内总线被占用的比例
+     */
+    public synchronized double getBusUtilization() {
+        return busUtilization;
+    }
+
+    /**
+     * 结束一个统计周期，计算总线占用比例，并在调用线程上交给 exporter
+     */
+    public void export(MetricsExporter exporter) {
+        long interval;
+        synchronized (this) {
+            long now = System.nanoTime();
+            interval = now - exportedNanos;
+            busUtilization = interval > 0 ? Math.min((double) (busyNanos - exportedBusyNanos) / interval, 1.0) : 0;
+            exportedNanos = now;
+            exportedBusyNanos = busyNanos;
+        }
+        exporter.export(this, interval);
+    }
+
+    /**
+     * 清除全部统计
+     */
+    public synchronized void reset() {
+        total.reset();
+        for (LatencyHistogram histogram : phases) {
+            histogram.reset();
+        }
+        for (int i = 0; i < SLAVES; i++) {
+            slaveLatency[i] = null;
+            slaveTimeoutCount[i] = 0;
+            slaveErrorCount[i] = 0;
+        }
+        for (int i = 0; i < FUNCTIONS; i++) {
+            functionLatency[i] = null;
+        }
+        for (int i = 0; i < exceptionCount.length; i++) {
+            exceptionCount[i] = 0;
+        }
+        transactionCount = 0;
+        timeoutCount = 0;
+        crcErrorCount = 0;
+        invalidResponseCount = 0;
+        ioErrorCount = 0;
+        busyNanos = 0;
+        exportedNanos = System.nanoTime();
+        exportedBusyNanos = 0;
+        busUtilization = 0;
+    }
+}
@@ -0,0 +1,60 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.io.PrintStream;
+
+/*
+    Writes a plain-text summary of the metrics: bus totals, phase latencies and one line
+    per slave, so slow or failing devices stand out
+ */
+public class PrintMetricsExporter implements MetricsExporter {
+    private static final String[] PHASE_NAMES = {"encode", "write", "wait", "receive", "decode"};
+
+    private final PrintStream out;
+
+    public PrintMetricsExporter() {
+        this(System.out);
+    }
+
+    public PrintMetricsExporter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void export(ModbusMetrics metrics, long intervalNanos) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%s: %d transactions, bus %.1f%% over %.1f s, %d timeouts, %d CRC errors, %d invalid responses, %d I/O errors\n",
+                metrics.getName(), metrics.getTransactionCount(), metrics.getBusUtilization() * 100, intervalNanos / 1e9,
+                metrics.getTimeoutCount(), metrics.getCrcErrorCount(), metrics.getInvalidResponseCount(),
+                metrics.getIoErrorCount()));
+        text.append("  total: ").append(summary(metrics.getLatency())).append('\n');
+        for (int phase = 0; phase < ModbusMetrics.PHASES; phase++) {
+            LatencyHistogram histogram = metrics.getPhaseLatency(phase);
+            if (histogram.getCount() > 0) {
+                text.append("  ").append(PHASE_NAMES[phase]).append(": ").append(summary(histogram)).append('\n');
+            }
+        }
+        for (int code = 1; code < 256; code++) {
+            long count = metrics.getExceptionCount(code);
+            if (count > 0) {
+                text.append(String.format("  exception %d: %d\n", code, count));
+            }
+        }
+        for (int slave = 0; slave < 256; slave++) {
+            LatencyHistogram histogram = metrics.getSlaveLatency(slave);
+            long errors = metrics.getSlaveErrorCount(slave);
+            if (histogram != null || errors > 0) {
+                text.append("  slave ").append(slave).append(": ")
+                        .append(histogram != null ? summary(histogram) : "no response")
+                        .append(String.format(", %d errors, %d timeouts\n", errors, metrics.getSlaveTimeoutCount(slave)));
+            }
+        }
+        out.print(text);
+        out.flush();
+    }
+
+    private static String summary(LatencyHistogram histogram) {
+        return String.format("n %d, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                histogram.getCount(), histogram.getMeanNanos() / 1e6, histogram.getPercentileNanos(0.5) / 1e6,
+                histogram.getPercentileNanos(0.99) / 1e6, histogram.getMaxNanos() / 1e6);
+    }
+}
@@ -0,0 +1,164 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+
+/*
+    Range reads produced by ReadPlanner. execute runs one transaction per block and
+    fans the decoded values out to the tags, without allocating.
+ */
+public class ReadPlan {
+    private int blockCount;
+    private int[] blockSlave = new int[4];
+    private int[] blockFunction = new int[4];
+    private int[] blockStart = new int[4];
+    private int[] blockQuantity = new int[4];
+    // 第 b 个块的标签为 tagOrder[blockFirstTag[b] .. blockFirstTag[b + 1])
+    private int[] blockFirstTag = new int[5];
+
+    private int tagCount;
+    private final int[] tagOrder;
+    private final int[] tagOffset;
+    // 按标签序号索引：所在块、地址
+    private final int[] tagBlock;
+    private final int[] tagAddress;
+
+    private int[] registers;
+    private boolean[] bits;
+
+    ReadPlan(int tags) {
+        tagOrder = new int[tags];
+        tagOffset = new int[tags];
+        tagBlock = new int[tags];
+        tagAddress = new int[tags];
+    }
+
+    void addBlock(int slave, int function_code, int start, int quantity) {
+        if (blockCount == blockSlave.length) {
+            int capacity = blockCount * 2;
+            blockSlave = Arrays.copyOf(blockSlave, capacity);
+            blockFunction = Arrays.copyOf(blockFunction, capacity);
+            blockStart = Arrays.copyOf(blockStart, capacity);
+            blockQuantity = Arrays.copyOf(blockQuantity, capacity);
+            blockFirstTag = Arrays.copyOf(blockFirstTag, capacity + 1);
+        }
+        blockSlave[blockCount] = slave;
+        blockFunction[blockCount] = function_code;
+        blockStart[blockCount] = start;
+        blockQuantity[blockCount] = quantity;
+        blockFirstTag[blockCount] = tagCount;
+        blockCount++;
+        blockFirstTag[blockCount] = tagCount;
+        if (isBitFunction(function_code)) {
+            if (bits == null || bits.length < quantity) {
+                bits = new boolean[quantity];
+            }
+        } else if (registers == null || registers.length < quantity) {
+            registers = new int[quantity];
+        }
+    }
+
+    void addTag(int tag, int offset) {
+        tagOrder[tagCount] = tag;
+        tagOffset[tagCount] = offset;
+        tagBlock[tag] = blockCount - 1;
+        tagAddress[tag] = blockStart[blockCount - 1] + offset;
+        tagCount++;
+        blockFirstTag[blockCount] = tagCount;
+    }
+
+    private static boolean isBitFunction(int function_code) {
+        return function_code == ModbusFunction.READ_COILS || function_code == ModbusFunction.READ_DISCRETE_INPUTS;
+    }
+
+    /**
+     * @return 每个扫描周期的事务数
+     */
+    public int getTransactionCount() {
+        return blockCount;
+    }
+
+    public int getTagCount() {
+        return tagCount;
+    }
+
+    public int getSlave(int block) {
+        return blockSlave[block];
+    }
+
+    public int getFunction(int block) {
+        return blockFunction[block];
+    }
+
+    public int getStartAddress(int block) {
+        return blockStart[block];
+    }
+
+    public int getQuantity(int block) {
+        return blockQuantity[block];
+    }
+
+    public int getTagSlave(int tag) {
+        return blockSlave[tagBlock[tag]];
+    }
+
+    public int getTagFunction(int tag) {
+        return blockFunction[tagBlock[tag]];
+    }
+
+    public int getTagAddress(int tag) {
+        return tagAddress[tag];
+    }
+
+    /**
+     * 执行所有块的读取，标签 i 的值写入 values[i]：寄存器为无符号16位，线圈、离散输入为 0 或 1
+     */
+    public synchronized void execute(ModbusMaster master, int[] values) throws IOException, ModbusError {
+        for (int b = 0; b < blockCount; b++) {
+            execute(master, b, values);
+        }
+    }
+
+    /**
+     * 只执行第 block 个块的读取，更新其中的标签
+     */
+    public synchronized void execute(ModbusMaster master, int block, int[] values) throws IOException, ModbusError {
+        int slave = blockSlave[block];
+        int start = blockStart[block];
+        int quantity = blockQuantity[block];
+        int from = blockFirstTag[block];
+        int to = blockFirstTag[block + 1];
+        switch (blockFunction[block]) {
+            case ModbusFunction.READ_COILS:
+                master.readCoils(slave, start, quantity, bits, 0);
+                fanOut(from, to, bits, values);
+                break;
+            case ModbusFunction.READ_DISCRETE_INPUTS:
+                master.readInputs(slave, start, quantity, bits, 0);
+                fanOut(from, to, bits, values);
+                break;
+            case ModbusFunction.READ_HOLDING_REGISTERS:
+                master.readHoldingRegisters(slave, start, quantity, registers, 0);
+                fanOut(from, to, registers, values);
+                break;
+            default:
+                master.readInputRegisters(slave, start, quantity, registers, 0);
+                fanOut(from, to, registers, values);
+                break;
+        }
+    }
+
+    private void fanOut(int from, int to, boolean[] source, int[] values) {
+        for (int i = from; i < to; i++) {
+            values[tagOrder[i]] = source[tagOffset[i]] ? 1 : 0;
+        }
+    }
+
+    private void fanOut(int from, int to, int[] source, int[] values) {
+        for (int i = from; i < to; i++) {
+            values[tagOrder[i]] = source[tagOffset[i]];
+        }
+    }
+}
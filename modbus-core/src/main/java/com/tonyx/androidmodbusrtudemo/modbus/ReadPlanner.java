@@ -0,0 +1,90 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.util.Arrays;
+
+/*
+    Collects single-address tag reads and merges them into as few range reads as the
+    protocol limits and the gap tolerance allow. Tags are identified by the index
+    returned from addTag; the resulting ReadPlan writes each tag's value to that index.
+ */
+public class ReadPlanner {
+    // (slave, 功能码, 地址) << 32 | 标签序号，排序后同一从站、功能码的标签按地址相邻
+    private long[] keys = new long[16];
+    private int count;
+    private int registerGap = 8;
+    private int bitGap = 64;
+
+    /**
+     * 设置合并时允许多读的无用地址数，设备读取未定义地址会返回异常时设为 0
+     *
+     * @param registerGap 寄存器读取中两个标签之间允许的空隙
+     * @param bitGap      线圈、离散输入读取中允许的空隙
+     */
+    public void setMaxGap(int registerGap, int bitGap) {
+        this.registerGap = Math.max(registerGap, 0);
+        this.bitGap = Math.max(bitGap, 0);
+    }
+
+    /**
+     * 添加一个标签，同一地址可以重复添加
+     *
+     * @return 标签序号，即 ReadPlan.execute 结果数组中的位置
+     */
+    public int addTag(int slave, int function_code, int address) {
+        if (slave < 0 || slave > 255) {
+            throw new IllegalArgumentException("Invalid slave " + slave);
+        }
+        if (!ModbusFunction.isReadFunction(function_code) || function_code == ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS) {
+            throw new IllegalArgumentException("Not a read function " + function_code);
+        }
+        if (address < 0 || address > 0xffff) {
+            throw new IllegalArgumentException("Invalid address " + address);
+        }
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+        }
+        long key = ((long) slave << 24) | (function_code << 16) | address;
+        keys[count] = (key << 32) | count;
+        return count++;
+    }
+
+    public int getTagCount() {
+        return count;
+    }
+
+    public ReadPlan plan() {
+        long[] sorted = Arrays.copyOf(keys, count);
+        Arrays.sort(sorted);
+        ReadPlan plan = new ReadPlan(count);
+        int first = 0;
+        while (first < count) {
+            int group = (int) (sorted[first] >>> 48);
+            int function_code = group & 0xff;
+            boolean bits = function_code == ModbusFunction.READ_COILS || function_code == ModbusFunction.READ_DISCRETE_INPUTS;
+            int maxGap = bits ? bitGap : registerGap;
+            int maxQuantity = ModbusFunction.maxReadQuantity(function_code);
+            int start = address(sorted[first]);
+            int last = start;
+            int end = first + 1;
+            // 贪心地向后延伸，直到超出数量上限或空隙过大
+            while (end < count && (int) (sorted[end] >>> 48) == group) {
+                int next = address(sorted[end]);
+                if (next - start + 1 > maxQuantity || next - last - 1 > maxGap) {
+                    break;
+                }
+                last = next;
+                end++;
+            }
+            plan.addBlock(group >>> 8, function_code, start, last - start + 1);
+            for (int i = first; i < end; i++) {
+                plan.addTag((int) sorted[i], address(sorted[i]) - start);
+            }
+            first = end;
+        }
+        return plan;
+    }
+
+    private static int address(long key) {
+        return (int) (key >>> 32) & 0xffff;
+    }
+}
@@ -0,0 +1,93 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+/*
+    A set of tags read by ScanScheduler every period. The tag values are in getValues(),
+    indexed by the tag handles returned from ReadPlanner.addTag.
+ */
+public class ScanGroup {
+    final ReadPlan plan;
+    final long period;
+    final int priority;
+    final ScanListener listener;
+    private final int[] values;
+
+    // 调度状态，由 ScanScheduler 在持有自身锁时修改
+    long cycleStart;
+    long nextRelease;
+    int nextBlock = -1;
+    long lateNanos;
+    volatile boolean removed;
+
+    private volatile long scanCount;
+    private volatile long overrunCount;
+    private volatile long errorCount;
+    private volatile long lastCycleNanos;
+    private volatile long maxCycleNanos;
+
+    ScanGroup(ReadPlan plan, int period, int priority, ScanListener listener) {
+        this.plan = plan;
+        this.period = period * 1000000L;
+        this.priority = priority;
+        this.listener = listener;
+        this.values = new int[plan.getTagCount()];
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return 扫描周期，单位毫秒
+     */
+    public int getPeriod() {
+        return (int) (period / 1000000L);
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getScanCount() {
+        return scanCount;
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return 最近一个周期从计划开始到读取完成的时间，包括等待总线的时间，单位纳秒
+     */
+    public long getLastCycleNanos() {
+        return lastCycleNanos;
+    }
+
+    public long getMaxCycleNanos() {
+        return maxCycleNanos;
+    }
+
+    boolean isRunning() {
+        return nextBlock >= 0;
+    }
+
+    void completed(long now) {
+        long cycle = now - cycleStart;
+        lastCycleNanos = cycle;
+        if (cycle > maxCycleNanos) {
+            maxCycleNanos = cycle;
+        }
+        scanCount++;
+    }
+
+    void overrun() {
+        overrunCount++;
+    }
+
+    void failed() {
+        errorCount++;
+    }
+}
@@ -0,0 +1,23 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+/**
+ * {@link ScanScheduler} 的扫描回调，在扫描线程中调用，应尽快返回
+ */
+public interface ScanListener {
+    /**
+     * 一个扫描周期完成，最新值在 group.getValues() 中
+     */
+    void onScan(ScanGroup group);
+
+    /**
+     * 扫描周期中某个块读取失败，该块的标签保留上次的值，其余块继续读取
+     */
+    void onError(ScanGroup group, Exception error);
+
+    /**
+     * 扫描周期未能在下一次开始前完成，跳过的周期不再补读
+     *
+     * @param lateNanos 超出期限的时间
+     */
+    void onOverrun(ScanGroup group, long lateNanos);
+}
@@ -0,0 +1,198 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Polls scan groups with individual periods over one ModbusMaster, i.e. one bus.
+    Releases follow a fixed grid (start + k * period) so periods do not drift. Among the
+    groups with a cycle in progress the scan thread picks the highest priority, then the
+    earliest deadline, and switches groups between transactions, so a 100 ms group waits
+    for at most one transaction of a long 10 s scan. A cycle that is still running when
+    the next one is due is reported as an overrun and the missed cycles are skipped.
+ */
+public class ScanScheduler {
+    private final ModbusMaster master;
+    private final List<ScanGroup> groups = new ArrayList<ScanGroup>();
+    private Thread thread;
+    private boolean running;
+    private long startTime;
+    private long busyNanos;
+
+    public ScanScheduler(ModbusMaster master) {
+        this.master = master;
+    }
+
+    /**
+     * 添加扫描组，扫描线程运行时立即开始扫描
+     *
+     * @param plan     ReadPlanner 生成的读取计划
+     * @param period   扫描周期，单位毫秒
+     * @param priority 优先级，数值大者优先；相同优先级按期限先后（EDF）
+     */
+    public synchronized ScanGroup addGroup(ReadPlan plan, int period, int priority, ScanListener listener) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Invalid period " + period);
+        }
+        ScanGroup group = new ScanGroup(plan, period, priority, listener);
+        group.nextRelease = System.nanoTime();
+        groups.add(group);
+        notifyAll();
+        return group;
+    }
+
+    public synchronized void removeGroup(ScanGroup group) {
+        group.removed = true;
+        groups.remove(group);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startTime = System.nanoTime();
+        busyNanos = 0;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                scan();
+            }
+        }, "ScanScheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 停止扫描，等待正在进行的事务完成
+     */
+    public void stop() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            notifyAll();
+            t = thread;
+            thread = null;
+        }
+        if (t != null) {
+            t.join();
+        }
+    }
+
+    /**
+     * @return 启动以来总线用于扫描的时间比例
+     */
+    public synchronized double getBusUtilization() {
+        long elapsed = System.nanoTime() - startTime;
+        return running && elapsed > 0 ? (double) busyNanos / elapsed : 0;
+    }
+
+    private void scan() {
+        List<ScanGroup> overruns = new ArrayList<ScanGroup>();
+        while (true) {
+            ScanGroup group;
+            int block;
+            synchronized (this) {
+                group = null;
+                while (running) {
+                    long now = System.nanoTime();
+                    group = select(now, overruns);
+                    if (group != null || !overruns.isEmpty()) {
+                        break;
+                    }
+                    waitNanos(untilNextRelease(now));
+                }
+                if (!running) {
+                    return;
+                }
+                block = group != null ? group.nextBlock : -1;
+            }
+            for (int i = 0; i < overruns.size(); i++) {
+                ScanGroup late = overruns.get(i);
+                late.listener.onOverrun(late, late.lateNanos);
+            }
+            overruns.clear();
+            if (group == null) {
+                continue;
+            }
+
+            long started = System.nanoTime();
+            Exception error = null;
+            try {
+                group.plan.execute(master, block, group.getValues());
+            } catch (Exception e) {
+                error = e;
+            }
+            long now = System.nanoTime();
+            boolean completed;
+            synchronized (this) {
+                busyNanos += now - started;
+                completed = ++group.nextBlock >= group.plan.getTransactionCount();
+                if (completed) {
+                    group.nextBlock = -1;
+                    group.completed(now);
+                }
+            }
+            if (error != null) {
+                group.failed();
+                group.listener.onError(group, error);
+            }
+            if (completed && !group.removed) {
+                group.listener.onScan(group);
+            }
+        }
+    }
+
+    /**
+     * 开始到期的周期并检查超限，返回下一个要读取的组：优先级高者优先，其次期限早者优先
+     */
+    private ScanGroup select(long now, List<ScanGroup> overruns) {
+        ScanGroup best = null;
+        for (int i = 0; i < groups.size(); i++) {
+            ScanGroup group = groups.get(i);
+            if (now - group.nextRelease >= 0) {
+                if (group.isRunning()) {
+                    group.lateNanos = now - group.nextRelease;
+                    group.overrun();
+                    overruns.add(group);
+                } else if (group.plan.getTransactionCount() > 0) {
+                    group.cycleStart = group.nextRelease;
+                    group.nextBlock = 0;
+                }
+                // 跳过已错过的周期，保持原有的时间网格
+                group.nextRelease += ((now - group.nextRelease) / group.period + 1) * group.period;
+            }
+            // 运行中的周期以下一次开始时间为期限
+            if (group.isRunning() && (best == null || group.priority > best.priority
+                    || (group.priority == best.priority && group.nextRelease - best.nextRelease < 0))) {
+                best = group;
+            }
+        }
+        return best;
+    }
+
+    private long untilNextRelease(long now) {
+        long wait = Long.MAX_VALUE;
+        for (int i = 0; i < groups.size(); i++) {
+            wait = Math.min(wait, groups.get(i).nextRelease - now);
+        }
+        return wait;
+    }
+
+    private void waitNanos(long wait) {
+        if (wait <= 0) {
+            return;
+        }
+        // 总是限时等待，醒来后由调用方重新计算下次释放时间
+        long ms = wait / 1000000L;
+        try {
+            if (ms >= Integer.MAX_VALUE) {
+                wait(Integer.MAX_VALUE);
+            } else {
+                wait(ms, (int) (wait % 1000000L));
+            }
+        } catch (InterruptedException e) {
+            running = false;
+        }
+    }
+}
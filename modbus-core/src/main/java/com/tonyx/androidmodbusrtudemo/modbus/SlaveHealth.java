@@ -0,0 +1,252 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+
+/*
+    Per-slave response time statistics for ModbusMaster. Learns each slave's turnaround
+    (response time minus the time the frames spend on the wire) as an EWMA with mean
+    deviation and as a decaying histogram for the p99, and derives the timeout of every
+    transaction from it instead of always waiting the master timeout. Slaves that time out
+    repeatedly are put into exponential backoff: their requests fail at once, except for
+    one probe each time the backoff expires.
+ */
+public class SlaveHealth {
+    private static final int SLAVES = 256;
+    // 每倍频程 4 个桶，最大 2^24 微秒
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 24 * SUB_BUCKETS;
+    // 样本数达到后减半直方图，使 p99 跟随近期的响应时间
+    private static final int DECAY_SAMPLES = 512;
+    private static final int MIN_SAMPLES = 8;
+
+    private final long characterNanos;
+    private long slackNanos = 20000000L;
+    private int failureThreshold = 3;
+    private long initialBackoffNanos = 1000000000L;
+    private long maxBackoffNanos = 60000000000L;
+
+    private final long[] meanNanos = new long[SLAVES];
+    private final long[] deviationNanos = new long[SLAVES];
+    private final long[] p99Nanos = new long[SLAVES];
+    private final long[] sampleCount = new long[SLAVES];
+    private final int[][] histogram = new int[SLAVES][];
+    private final int[] histogramCount = new int[SLAVES];
+    private final int[] consecutiveTimeouts = new int[SLAVES];
+    private final long[] timeoutCount = new long[SLAVES];
+    private final long[] backoffNanos = new long[SLAVES];
+    private final long[] nextProbe = new long[SLAVES];
+    private long skippedCount;
+
+    /**
+     * @param baudrate 用于扣除帧在线路上的传输时间，0 表示不扣除（如 TCP）
+     */
+    public SlaveHealth(int baudrate) {
+        // 11 bits per character
+        this.characterNanos = baudrate > 0 ? 11000000000L / baudrate : 0;
+    }
+
+    /**
+     * 设置自适应超时在学习到的响应时间之外增加的余量，用于吸收线程调度等延迟
+     *
+     * @param slack 单位毫秒，默认 20
+     */
+    public synchronized void setSlack(int slack) {
+        this.slackNanos = Math.max(slack, 0) * 1000000L;
+    }
+
+    /**
+     * 设置离线判定和退避
+     *
+     * @param failureThreshold 连续超时多少次后判定离线，默认 3
+     * @param initialBackoff   首次退避时间，单位毫秒，默认 1000；之后每次探测失败加倍
+     * @param maxBackoff       最大退避时间，单位毫秒，默认 60000
+     */
+    public synchronized void setBackoff(int failureThreshold, int initialBackoff, int maxBackoff) {
+        if (failureThreshold < 1 || initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid backoff");
+        }
+        this.failureThreshold = failureThreshold;
+        this.initialBackoffNanos = initialBackoff * 1000000L;
+        this.maxBackoffNanos = maxBackoff * 1000000L;
+    }
+
+    /**
+     * 事务开始前调用，返回本次事务的超时时间
+     *
+     * @param requestBytes  请求帧长度
+     * @param responseBytes 预计的响应帧长度
+     * @param maxTimeout    上限，单位毫秒，即 ModbusMaster 的超时时间
+     * @throws ModbusError 从站处于退避期，ModbusTimeoutError
+     */
+    synchronized int timeout(int slave, int requestBytes, int responseBytes, int maxTimeout) throws ModbusError {
+        if (slave <= 0 || slave >= SLAVES) {
+            return maxTimeout;
+        }
+        if (consecutiveTimeouts[slave] >= failureThreshold) {
+            long now = System.nanoTime();
+            if (now - nextProbe[slave] < 0) {
+                skippedCount++;
+                throw new ModbusError(ModbusErrorType.ModbusTimeoutError,
+                        String.format("Slave %d is offline, next probe in %d ms.", slave, (nextProbe[slave] - now) / 1000000L));
+            }
+            // 本次为探测，其它请求等待探测结果
+            nextProbe[slave] = now + backoffNanos[slave];
+        } else if (consecutiveTimeouts[slave] > 0) {
+            // 超时一次后使用完整超时时间，较慢的响应也能被重新学习
+            return maxTimeout;
+        }
+        if (sampleCount[slave] < MIN_SAMPLES) {
+            return maxTimeout;
+        }
+        long turnaround = Math.max(p99Nanos[slave], meanNanos[slave] + 4 * deviationNanos[slave]);
+        long nanos = turnaround + (requestBytes + responseBytes) * characterNanos + slackNanos;
+        return (int) Math.min(maxTimeout, (nanos + 999999L) / 1000000L);
+    }
+
+    /**
+     * 收到从站的响应（包括异常响应和损坏的帧）后调用
+     *
+     * @param elapsedNanos 发送请求到收到响应的时间
+     */
+    synchronized void onResponse(int slave, long elapsedNanos, int requestBytes, int responseBytes) {
+        if (slave <= 0 || slave >= SLAVES) {
+            return;
+        }
+        consecutiveTimeouts[slave] = 0;
+        backoffNanos[slave] = 0;
+        long sample = Math.max(elapsedNanos - (requestBytes + responseBytes) * characterNanos, 0);
+        if (sampleCount[slave]++ == 0) {
+            meanNanos[slave] = sample;
+            deviationNanos[slave] = sample / 2;
+        } else {
+            // RFC 6298: alpha = 1/8, beta = 1/4
+            long error = sample - meanNanos[slave];
+            meanNanos[slave] += error / 8;
+            deviationNanos[slave] += (Math.abs(error) - deviationNanos[slave]) / 4;
+        }
+        int[] buckets = histogram[slave];
+        if (buckets == null) {
+            buckets = histogram[slave] = new int[BUCKETS];
+        }
+        buckets[bucket(sample / 1000L)]++;
+        if (++histogramCount[slave] >= DECAY_SAMPLES) {
+            int count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] >>= 1;
+                count += buckets[i];
+            }
+            histogramCount[slave] = count;
+        }
+        if ((sampleCount[slave] & 7) == 0 || sampleCount[slave] == MIN_SAMPLES) {
+            p99Nanos[slave] = percentile(buckets, histogramCount[slave], 0.99);
+        }
+    }
+
+    /**
+     * 事务超时后调用
+     */
+    synchronized void onTimeout(int slave) {
+        if (slave <= 0 || slave >= SLAVES) {
+            return;
+        }
+        timeoutCount[slave]++;
+        if (++consecutiveTimeouts[slave] >= failureThreshold) {
+            long backoff = backoffNanos[slave] == 0 ? initialBackoffNanos : Math.min(2 * backoffNanos[slave], maxBackoffNanos);
+            backoffNanos[slave] = backoff;
+            nextProbe[slave] = System.nanoTime() + backoff;
+        }
+    }
+
+    /*
+        微秒值所在的桶：前 4 个桶对应 0..3 微秒，之后每倍频程 4 个桶
+     */
+    private static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(micros);
+        int index = (octave - 1) * SUB_BUCKETS + (int) ((micros >> (octave - 2)) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    /**
+     * 桶的上界，单位纳秒
+     */
+    private static long bucketLimitNanos(int index) {
+        if (index < SUB_BUCKETS) {
+            return (index + 1) * 1000L;
+        }
+        int octave = index / SUB_BUCKETS + 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (octave - 2);
+        return (lower + (1L << (octave - 2))) * 1000L;
+    }
+
+    private static long percentile(int[] buckets, int count, double quantile) {
+        long rank = (long) Math.ceil(count * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return bucketLimitNanos(i);
+            }
+        }
+        return bucketLimitNanos(BUCKETS - 1);
+    }
+
+    /**
+     * 从站未处于退避期
+     */
+    public synchronized boolean isOnline(int slave) {
+        return consecutiveTimeouts[slave] < failureThreshold;
+    }
+
+    /**
+     * 响应时间（已扣除传输时间）的 EWMA，单位纳秒
+     */
+    public synchronized long getMeanNanos(int slave) {
+        return meanNanos[slave];
+    }
+
+    public synchronized long getDeviationNanos(int slave) {
+        return deviationNanos[slave];
+    }
+
+    /**
+     * 响应时间的 p99 估计，取所在直方图桶的上界，单位纳秒
+     */
+    public synchronized long getP99Nanos(int slave) {
+        return p99Nanos[slave];
+    }
+
+    public synchronized long getSampleCount(int slave) {
+        return sampleCount[slave];
+    }
+
+    public synchronized long getTimeoutCount(int slave) {
+        return timeoutCount[slave];
+    }
+
+    /**
+     * 因从站处于退避期而未发送的请求数
+     */
+    public synchronized long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * 清除从站的统计和退避状态，如更换设备后
+     */
+    public synchronized void reset(int slave) {
+        meanNanos[slave] = 0;
+        deviationNanos[slave] = 0;
+        p99Nanos[slave] = 0;
+        sampleCount[slave] = 0;
+        histogram[slave] = null;
+        histogramCount[slave] = 0;
+        consecutiveTimeouts[slave] = 0;
+        timeoutCount[slave] = 0;
+        backoffNanos[slave] = 0;
+        nextProbe[slave] = 0;
+    }
+}
@@ -0,0 +1,246 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.util.Arrays;
+
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+/*
+    Typed tags over a block of registers: data type, byte order, scale and offset per tag,
+    kept in parallel arrays. decode converts the whole block into a double[] column of
+    engineering values and a long[] column of raw values in one pass, without allocating.
+    Tags are identified by the index returned from addTag.
+ */
+public class TagDecoder {
+    public static final int INT16 = 0;
+    public static final int UINT16 = 1;
+    public static final int INT32 = 2;
+    public static final int UINT32 = 3;
+    public static final int INT64 = 4;
+    public static final int FLOAT32 = 5;
+    public static final int FLOAT64 = 6;
+    /**
+     * 每个寄存器两个 ASCII 字符，遇到 0 结束
+     */
+    public static final int STRING = 7;
+
+    private int count;
+    private int[] types = new int[16];
+    private int[] registers = new int[16];
+    private int[] lengths = new int[16];
+    private int[] orders = new int[16];
+    private double[] scales = new double[16];
+    private double[] offsets = new double[16];
+    // 解码需要的寄存器数
+    private int blockLength;
+
+    /**
+     * 添加数值标签，值为 raw * scale + offset
+     *
+     * @param type     INT16 等，不能为 STRING
+     * @param register 在寄存器块中的位置
+     * @param order    ByteUtil.ORDER_ABCD 等，单寄存器类型只区分是否字节交换
+     * @return 标签序号，即 decode 结果数组中的位置
+     */
+    public int addTag(int type, int register, int order, double scale, double offset) {
+        if (type < INT16 || type > FLOAT64) {
+            throw new IllegalArgumentException("Invalid type " + type);
+        }
+        return add(type, register, registerCount(type), order, scale, offset);
+    }
+
+    public int addTag(int type, int register, int order) {
+        return addTag(type, register, order, 1, 0);
+    }
+
+    /**
+     * 添加字符串标签，decode 时对应的值为 NaN，内容通过 decodeString 读取
+     *
+     * @param length 寄存器数
+     * @param order  ORDER_BADC、ORDER_DCBA 时每个寄存器中低字节在前
+     */
+    public int addString(int register, int length, int order) {
+        if (length < 1) {
+            throw new IllegalArgumentException("Invalid length " + length);
+        }
+        return add(STRING, register, length, order, 1, 0);
+    }
+
+    private int add(int type, int register, int length, int order, double scale, double offset) {
+        if (register < 0 || register + length > 0x10000) {
+            throw new IllegalArgumentException("Invalid register " + register);
+        }
+        if (order < ByteUtil.ORDER_ABCD || order > ByteUtil.ORDER_DCBA) {
+            throw new IllegalArgumentException("Invalid order " + order);
+        }
+        if (count == types.length) {
+            int capacity = count * 2;
+            types = Arrays.copyOf(types, capacity);
+            registers = Arrays.copyOf(registers, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            orders = Arrays.copyOf(orders, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+        }
+        types[count] = type;
+        registers[count] = register;
+        lengths[count] = length;
+        orders[count] = order;
+        scales[count] = scale;
+        offsets[count] = offset;
+        blockLength = Math.max(blockLength, register + length);
+        return count++;
+    }
+
+    /**
+     * 数值类型占用的寄存器数
+     */
+    public static int registerCount(int type) {
+        switch (type) {
+            case INT32:
+            case UINT32:
+            case FLOAT32:
+                return 2;
+            case INT64:
+            case FLOAT64:
+                return 4;
+            default:
+                return 1;
+        }
+    }
+
+    public int getTagCount() {
+        return count;
+    }
+
+    /**
+     * 寄存器块的最小长度
+     */
+    public int getBlockLength() {
+        return blockLength;
+    }
+
+    public int getType(int tag) {
+        return types[tag];
+    }
+
+    public int getRegister(int tag) {
+        return registers[tag];
+    }
+
+    /**
+     * 标签占用的寄存器数
+     */
+    public int getLength(int tag) {
+        return lengths[tag];
+    }
+
+    public int getOrder(int tag) {
+        return orders[tag];
+    }
+
+    public double getScale(int tag) {
+        return scales[tag];
+    }
+
+    public double getOffset(int tag) {
+        return offsets[tag];
+    }
+
+    /**
+     * 解码全部标签
+     *
+     * @param block  寄存器值，如 ModbusMaster.readHoldingRegisters 的结果
+     * @param off    寄存器块在 block 中的起始位置
+     * @param values 标签 i 的工程值写入 values[i]，为 null 时不输出
+     * @param raw    标签 i 的原始值写入 raw[i]：整数类型为整数值，浮点类型为 IEEE 754 位模式；为 null 时不输出
+     */
+    public void decode(int[] block, int off, double[] values, long[] raw) {
+        if (off < 0 || block.length - off < blockLength) {
+            throw new IllegalArgumentException(String.format("Block of %d registers is shorter than %d",
+                    block.length - off, blockLength));
+        }
+        for (int i = 0; i < count; i++) {
+            int pos = off + registers[i];
+            long value;
+            double number;
+            switch (types[i]) {
+                case INT16:
+                    value = (short) register(block[pos], orders[i]);
+                    number = value;
+                    break;
+                case UINT16:
+                    value = register(block[pos], orders[i]);
+                    number = value;
+                    break;
+                case INT32:
+                    value = ByteUtil.getInt32(block, pos, orders[i]);
+                    number = value;
+                    break;
+                case UINT32:
+                    value = ByteUtil.getInt32(block, pos, orders[i]) & 0xFFFFFFFFL;
+                    number = value;
+                    break;
+                case INT64:
+                    value = ByteUtil.getInt64(block, pos, orders[i]);
+                    number = value;
+                    break;
+                case FLOAT32:
+                    value = ByteUtil.getInt32(block, pos, orders[i]) & 0xFFFFFFFFL;
+                    number = Float.intBitsToFloat((int) value);
+                    break;
+                case FLOAT64:
+                    value = ByteUtil.getInt64(block, pos, orders[i]);
+                    number = Double.longBitsToDouble(value);
+                    break;
+                default:
+                    value = 0;
+                    number = Double.NaN;
+                    break;
+            }
+            if (values != null) {
+                values[i] = number * scales[i] + offsets[i];
+            }
+            if (raw != null) {
+                raw[i] = value;
+            }
+        }
+    }
+
+    /**
+     * 按字节顺序取无符号16位寄存器值
+     */
+    private static int register(int value, int order) {
+        if (order >= ByteUtil.ORDER_BADC) {
+            return ((value >> 8) & 0xFF) | ((value & 0xFF) << 8);
+        }
+        return value & 0xFFFF;
+    }
+
+    /**
+     * 读取字符串标签，不分配新对象
+     *
+     * @param dst 长度至少为 getLength(tag) * 2
+     * @return 字符数
+     */
+    public int decodeString(int tag, int[] block, int off, char[] dst, int dstOff) {
+        if (types[tag] != STRING) {
+            throw new IllegalArgumentException("Tag " + tag + " is not a string");
+        }
+        int pos = off + registers[tag];
+        int length = 0;
+        for (int i = 0; i < lengths[tag] * 2; i++) {
+            int value = register(block[pos + i / 2], orders[tag]);
+            int c = (i & 1) == 0 ? value >> 8 : value & 0xFF;
+            if (c == 0) {
+                break;
+            }
+            dst[dstOff + length++] = (char) c;
+        }
+        return length;
+    }
+
+    public String decodeString(int tag, int[] block, int off) {
+        char[] chars = new char[lengths[tag] * 2];
+        return new String(chars, 0, decodeString(tag, block, off, chars, 0));
+    }
+}
@@ -0,0 +1,351 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+
+/*
+    Gathers single register and coil writes and sends them as FC16/FC15 frames covering
+    contiguous addresses of one slave. A batch is flushed when it reaches the size limit,
+    when the oldest pending write is older than the delay limit (after start()), or on flush().
+    Within a batch the last write to an address wins and writes go out in address order,
+    so call flush() between writes whose order matters to the device.
+    The pending batch is swapped out under the lock and sent outside it, so writers are
+    not blocked by bus I/O. Every failed run is reported to the Listener.
+ */
+public class WriteBatcher {
+    /**
+     * 写入失败回调，在发送的线程中执行（写入线程、后台线程或调用 flush() 的线程）
+     */
+    public interface Listener {
+        /**
+         * 一段连续地址的写入失败，可以据此重新写入
+         *
+         * @param coils  true 表示线圈，values 为 0 或 1
+         * @param start  起始地址
+         * @param values 该段的写入值
+         */
+        void onWriteFailed(int slave, boolean coils, int start, int[] values, Exception error);
+    }
+
+    private static final int COIL = 1;
+    private static final int REGISTER = 2;
+
+    private final ModbusMaster master;
+    private int maxBatch = 256;
+    private int maxDelay = 50;
+    private ModbusCallback<Void> callback;
+    private Listener listener;
+    private Thread thread;
+    private boolean closed;
+    // 后台发送失败且没有 callback 时保存，由下一次 flush() 或 close() 抛出
+    private Exception backgroundError;
+
+    // (slave, 类型, 地址) << 32 | 写入序号，写入值为 values[序号]
+    private long[] keys = new long[64];
+    private int[] values = new int[64];
+    private int count;
+    private long firstPending;
+
+    // 以下由 sendLock 保护：正在发送的批次和连续地址的缓冲区
+    private final Object sendLock = new Object();
+    private long[] sendingKeys = new long[64];
+    private int[] sendingValues = new int[64];
+    private final int[] registerRun = new int[ModbusFunction.maxWriteQuantity(ModbusFunction.WRITE_MULTIPLE_REGISTERS)];
+    private final boolean[] coilRun = new boolean[ModbusFunction.maxWriteQuantity(ModbusFunction.WRITE_MULTIPLE_COILS)];
+
+    private long transactionCount;
+    private long writeCount;
+
+    /**
+     * 按 maxDelay 发送需要调用 start()
+     */
+    public WriteBatcher(ModbusMaster master) {
+        this.master = master;
+    }
+
+    /**
+     * 启动后台线程，待写入等待超过 maxDelay 时由其发送
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("WriteBatcher already started");
+        }
+        if (closed) {
+            throw new IllegalStateException("WriteBatcher closed");
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "WriteBatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param maxBatch 待写入数达到此值时在写入线程中立即发送
+     * @param maxDelay 待写入最多等待的时间，单位毫秒，到时由后台线程发送
+     */
+    public synchronized void setLimits(int maxBatch, int maxDelay) {
+        this.maxBatch = Math.max(maxBatch, 1);
+        this.maxDelay = Math.max(maxDelay, 0);
+        notifyAll();
+    }
+
+    /**
+     * 后台线程发送失败或成功时回调，在后台线程中调用
+     */
+    public synchronized void setCallback(ModbusCallback<Void> callback) {
+        this.callback = callback;
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void writeRegister(int slave, int address, int value) throws IOException, ModbusError {
+        add(slave, REGISTER, address, value & 0xffff);
+    }
+
+    public void writeCoil(int slave, int address, boolean value) throws IOException, ModbusError {
+        add(slave, COIL, address, value ? 1 : 0);
+    }
+
+    private void add(int slave, int type, int address, int value) throws IOException, ModbusError {
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("WriteBatcher closed");
+            }
+            if (slave < 0 || slave > 255 || address < 0 || address > 0xffff) {
+                throw new IllegalArgumentException(String.format("Invalid slave %d or address %d", slave, address));
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            if (count == 0) {
+                firstPending = System.nanoTime();
+                notifyAll();
+            }
+            long key = ((long) slave << 24) | (type << 16) | address;
+            keys[count] = (key << 32) | count;
+            values[count] = value;
+            count++;
+            if (count < maxBatch) {
+                return;
+            }
+        }
+        sendPending();
+    }
+
+    public synchronized int getPendingCount() {
+        return count;
+    }
+
+    /**
+     * @return 已发送的事务数
+     */
+    public synchronized long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * @return 已发送的写入数，同一批次中被覆盖的写入不计
+     */
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * 立即发送所有待写入。某一段写入失败时继续发送其余各段，最后抛出第一个错误；
+     * 之后抛出后台线程发送失败且未设置 callback 时保存的错误
+     */
+    public void flush() throws IOException, ModbusError {
+        sendPending();
+        Exception error;
+        synchronized (this) {
+            error = backgroundError;
+            backgroundError = null;
+        }
+        rethrow(error);
+    }
+
+    private static void rethrow(Exception error) throws IOException, ModbusError {
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error != null) {
+            throw (ModbusError) error;
+        }
+    }
+
+    private void sendPending() throws IOException, ModbusError {
+        // sendLock 使各批次按取出的顺序发送，后写入的值不会被先取出的批次覆盖
+        synchronized (sendLock) {
+            int n;
+            Listener listener;
+            synchronized (this) {
+                n = count;
+                if (n == 0) {
+                    return;
+                }
+                long[] k = sendingKeys;
+                int[] v = sendingValues;
+                sendingKeys = keys;
+                sendingValues = values;
+                keys = k;
+                values = v;
+                count = 0;
+                listener = this.listener;
+            }
+            send(sendingKeys, sendingValues, n, listener);
+        }
+    }
+
+    private void send(long[] keys, int[] values, int n, Listener listener) throws IOException, ModbusError {
+        Arrays.sort(keys, 0, n);
+        Exception error = null;
+        long transactions = 0;
+        long writes = 0;
+        int i = 0;
+        while (i < n) {
+            // 同一地址只保留最后一次写入
+            int last = i;
+            while (last + 1 < n && (keys[last + 1] >>> 32) == (keys[i] >>> 32)) {
+                last++;
+            }
+            long key = keys[i] >>> 32;
+            int slave = (int) (key >>> 24);
+            int type = (int) (key >>> 16) & 0xff;
+            int start = (int) key & 0xffff;
+            int max = type == REGISTER ? registerRun.length : coilRun.length;
+            int quantity = 0;
+            // 收集连续地址
+            while (true) {
+                int value = values[(int) keys[last]];
+                if (type == REGISTER) {
+                    registerRun[quantity++] = value;
+                } else {
+                    coilRun[quantity++] = value != 0;
+                }
+                i = last + 1;
+                if (i >= n || quantity == max || start + quantity > 0xffff || (keys[i] >>> 32) != key + quantity) {
+                    break;
+                }
+                last = i;
+                while (last + 1 < n && (keys[last + 1] >>> 32) == (keys[i] >>> 32)) {
+                    last++;
+                }
+            }
+            try {
+                sendRun(slave, type, start, quantity);
+            } catch (IOException | ModbusError e) {
+                if (error == null) {
+                    error = e;
+                }
+                if (listener != null) {
+                    listener.onWriteFailed(slave, type == COIL, start, runValues(type, quantity), e);
+                }
+            }
+            transactions++;
+            writes += quantity;
+        }
+        synchronized (this) {
+            transactionCount += transactions;
+            writeCount += writes;
+        }
+        rethrow(error);
+    }
+
+    private int[] runValues(int type, int quantity) {
+        int[] run = new int[quantity];
+        for (int i = 0; i < quantity; i++) {
+            run[i] = type == REGISTER ? registerRun[i] : coilRun[i] ? 1 : 0;
+        }
+        return run;
+    }
+
+    private void sendRun(int slave, int type, int start, int quantity) throws IOException, ModbusError {
+        if (type == REGISTER) {
+            if (quantity == 1) {
+                master.writeSingleRegister(slave, start, registerRun[0]);
+            } else {
+                master.writeMultipleRegisters(slave, start, registerRun, 0, quantity);
+            }
+        } else if (quantity == 1) {
+            master.writeSingleCoil(slave, start, coilRun[0]);
+        } else {
+            master.writeMultipleCoils(slave, start, coilRun, 0, quantity);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!closed) {
+                        if (count == 0) {
+                            wait();
+                            continue;
+                        }
+                        long wait = firstPending + maxDelay * 1000000L - System.nanoTime();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        wait(wait / 1000000L, (int) (wait % 1000000L));
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            // 发送时不持有锁，写入线程可以继续添加
+            Exception error = null;
+            try {
+                sendPending();
+            } catch (IOException | ModbusError e) {
+                error = e;
+            }
+            ModbusCallback<Void> callback;
+            synchronized (this) {
+                callback = this.callback;
+                if (error != null && callback == null && backgroundError == null) {
+                    backgroundError = error;
+                }
+            }
+            if (callback != null) {
+                if (error == null) {
+                    callback.onSuccess(null);
+                } else {
+                    callback.onFailure(error);
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止后台线程并发送剩余的待写入
+     */
+    public void close() throws IOException, ModbusError {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            thread = this.thread;
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                // 等待后台线程正在进行的发送结束
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+}
@@ -1,12 +1,11 @@
 package com.tonyx.androidmodbusrtudemo.modbus.exception;
 
-import android.text.TextUtils;
-
 public class ModbusError extends Exception {
     private int code;
+    private ModbusErrorType type = ModbusErrorType.ModbusError;
 
     public ModbusError(int code, String message) {
-        super(!TextUtils.isEmpty(message) ? message : "Modbus Error: Exception code = " + code);
+        super(message != null && message.length() > 0 ? message : "Modbus Error: Exception code = " + code);
         this.code = code;
     }
 
@@ -16,9 +15,14 @@ public class ModbusError extends Exception {
 
     public ModbusError(ModbusErrorType type, String message) {
         super(type.name() + ": " + message);
+        this.type = type;
     }
 
     public int getCode() {
         return this.code;
     }
+
+    public ModbusErrorType getType() {
+        return this.type;
+    }
 }
@@ -11,6 +11,7 @@ public enum ModbusErrorType {
     ModbusOutOfBlockError,
     ModbusInvalidResponseError,
     ModbusInvalidRequestError,
+    ModbusCrcError,
 
     ModbusTimeoutError
 }
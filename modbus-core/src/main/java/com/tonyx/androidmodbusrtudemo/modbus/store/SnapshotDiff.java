@@ -0,0 +1,77 @@
+package com.tonyx.androidmodbusrtudemo.modbus.store;
+
+import java.io.IOException;
+
+/*
+    Compares two snapshots of the same register map as streams, a chunk at a time, and
+    reports every register or bit that differs. Both snapshots must contain the same
+    blocks in the same order, as written by the same dump routine.
+ */
+public class SnapshotDiff {
+    private static final int CHUNK = 1024;
+
+    public interface Listener {
+        /**
+         * 一个地址的值不同，线圈、离散输入的值为 0 或 1
+         */
+        void onChange(int slave, int function_code, int address, int before, int after);
+    }
+
+    private final int[] beforeRegisters = new int[CHUNK];
+    private final int[] afterRegisters = new int[CHUNK];
+    private final boolean[] beforeBits = new boolean[CHUNK];
+    private final boolean[] afterBits = new boolean[CHUNK];
+
+    /**
+     * 逐块比较两个快照，读到两者的结尾
+     *
+     * @return 不同的地址数
+     * @throws IOException 快照损坏或块的布局不同
+     */
+    public long diff(SnapshotReader before, SnapshotReader after, Listener listener) throws IOException {
+        long changes = 0;
+        while (true) {
+            boolean hasBefore = before.next();
+            boolean hasAfter = after.next();
+            if (!hasBefore || !hasAfter) {
+                if (hasBefore || hasAfter) {
+                    throw new IOException("Snapshots have a different number of blocks");
+                }
+                return changes;
+            }
+            if (before.getSlave() != after.getSlave() || before.getFunction() != after.getFunction()
+                    || before.getStartAddress() != after.getStartAddress() || before.getQuantity() != after.getQuantity()) {
+                throw new IOException(String.format("Block of slave %d function %d at %d differs in layout",
+                        before.getSlave(), before.getFunction(), before.getStartAddress()));
+            }
+            int slave = before.getSlave();
+            int function_code = before.getFunction();
+            int address = before.getStartAddress();
+            if (before.isBits()) {
+                int n;
+                while ((n = before.readBits(beforeBits, 0, CHUNK)) > 0) {
+                    after.readBits(afterBits, 0, n);
+                    for (int i = 0; i < n; i++) {
+                        if (beforeBits[i] != afterBits[i]) {
+                            changes++;
+                            listener.onChange(slave, function_code, address + i, beforeBits[i] ? 1 : 0, afterBits[i] ? 1 : 0);
+                        }
+                    }
+                    address += n;
+                }
+            } else {
+                int n;
+                while ((n = before.readRegisters(beforeRegisters, 0, CHUNK)) > 0) {
+                    after.readRegisters(afterRegisters, 0, n);
+                    for (int i = 0; i < n; i++) {
+                        if (beforeRegisters[i] != afterRegisters[i]) {
+                            changes++;
+                            listener.onChange(slave, function_code, address + i, beforeRegisters[i], afterRegisters[i]);
+                        }
+                    }
+                    address += n;
+                }
+            }
+        }
+    }
+}
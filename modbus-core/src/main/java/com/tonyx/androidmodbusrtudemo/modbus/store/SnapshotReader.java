@@ -0,0 +1,257 @@
+package com.tonyx.androidmodbusrtudemo.modbus.store;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+/*
+    Reads a snapshot written by SnapshotWriter block by block. Values are decoded a frame at
+    a time as readRegisters/readBits ask for them, so a block never has to fit in memory.
+    The CRC32 is checked when next() reaches the end of the snapshot.
+ */
+public class SnapshotReader implements Closeable {
+    private final CheckedInputStream in;
+    private final long timestamp;
+    private final byte[] packed = new byte[(SnapshotWriter.FRAME * SnapshotWriter.MAX_WIDTH + 7) / 8];
+    private final int[] frame = new int[SnapshotWriter.FRAME];
+    private boolean ended;
+
+    // 当前块
+    private int function_code;
+    private int slave;
+    private int start;
+    private int quantity;
+    private int remaining;
+    // 寄存器块：已解码的帧；位块：当前字节
+    private int frameLength;
+    private int frameIndex;
+    private int previous;
+    private int bits;
+
+    /**
+     * 读取文件头
+     */
+    public SnapshotReader(InputStream in) throws IOException {
+        this.in = new CheckedInputStream(new BufferedInputStream(in), new CRC32());
+        readFully(packed, 5);
+        if (ByteUtil.getInt32(packed, 0) != SnapshotWriter.MAGIC) {
+            throw new IOException("Not a snapshot");
+        }
+        if (packed[4] != SnapshotWriter.VERSION) {
+            throw new IOException("Unsupported snapshot version " + packed[4]);
+        }
+        timestamp = readVarLong();
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Snapshot is truncated");
+        }
+        return b;
+    }
+
+    private void readFully(byte[] dst, int length) throws IOException {
+        int n = 0;
+        while (n < length) {
+            int len = in.read(dst, n, length - n);
+            if (len < 0) {
+                throw new EOFException("Snapshot is truncated");
+            }
+            n += len;
+        }
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * 跳过当前块的剩余部分，读取下一个块的块头
+     *
+     * @return 快照结束时返回 false，此时已校验 CRC32
+     */
+    public boolean next() throws IOException {
+        if (ended) {
+            return false;
+        }
+        skip();
+        int code = readByte();
+        if (code == 0) {
+            ended = true;
+            int expected = (int) in.getChecksum().getValue();
+            readFully(packed, 4);
+            if (ByteUtil.getInt32(packed, 0) != expected) {
+                throw new IOException("Snapshot CRC mismatch");
+            }
+            return false;
+        }
+        if (code < ModbusFunction.READ_COILS || code > ModbusFunction.READ_INPUT_REGISTERS) {
+            throw new IOException("Invalid block function " + code);
+        }
+        function_code = code;
+        slave = readByte();
+        // 先按 long 检查，转为 int 时截断的值不会通过
+        long blockStart = readVarLong();
+        long blockQuantity = readVarLong();
+        if (blockStart < 0 || blockQuantity < 1 || blockStart > 0x10000 - blockQuantity) {
+            throw new IOException(String.format("Invalid block range %d + %d", blockStart, blockQuantity));
+        }
+        start = (int) blockStart;
+        quantity = (int) blockQuantity;
+        remaining = quantity;
+        frameLength = 0;
+        frameIndex = 0;
+        previous = 0;
+        return true;
+    }
+
+    private void skip() throws IOException {
+        if (isBits()) {
+            while (remaining > 0) {
+                readBit();
+            }
+        } else {
+            while (remaining > 0) {
+                if (frameIndex == frameLength) {
+                    readFrame();
+                }
+                int n = Math.min(frameLength - frameIndex, remaining);
+                frameIndex += n;
+                remaining -= n;
+            }
+        }
+    }
+
+    public int getFunction() {
+        return function_code;
+    }
+
+    public int getSlave() {
+        return slave;
+    }
+
+    public int getStartAddress() {
+        return start;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * 当前块中尚未读取的数量
+     */
+    public int getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * 当前块为线圈或离散输入
+     */
+    public boolean isBits() {
+        return function_code == ModbusFunction.READ_COILS || function_code == ModbusFunction.READ_DISCRETE_INPUTS;
+    }
+
+    /**
+     * 读取当前寄存器块中接下来的值
+     *
+     * @return 读取的数量，块已读完时返回 0
+     */
+    public int readRegisters(int[] dst, int off, int len) throws IOException {
+        if (isBits()) {
+            throw new IllegalStateException("Block is not registers");
+        }
+        int n = 0;
+        while (n < len && remaining > 0) {
+            if (frameIndex == frameLength) {
+                readFrame();
+            }
+            int count = Math.min(Math.min(frameLength - frameIndex, len - n), remaining);
+            System.arraycopy(frame, frameIndex, dst, off + n, count);
+            frameIndex += count;
+            remaining -= count;
+            n += count;
+        }
+        return n;
+    }
+
+    private void readFrame() throws IOException {
+        int count = Math.min(SnapshotWriter.FRAME, remaining);
+        int mode = readByte();
+        int width = mode & 0x1F;
+        boolean xor = (mode & SnapshotWriter.XOR) != 0;
+        if (width > SnapshotWriter.MAX_WIDTH) {
+            throw new IOException("Invalid frame width " + width);
+        }
+        readFully(packed, (count * width + 7) / 8);
+        int mask = (1 << width) - 1;
+        long buffer = 0;
+        int bitCount = 0;
+        int pos = 0;
+        int p = previous;
+        for (int i = 0; i < count; i++) {
+            while (bitCount < width) {
+                buffer |= (long) (packed[pos++] & 0xFF) << bitCount;
+                bitCount += 8;
+            }
+            int code = (int) buffer & mask;
+            buffer >>>= width;
+            bitCount -= width;
+            p = (xor ? p ^ code : p + ((code >>> 1) ^ -(code & 1))) & 0xFFFF;
+            frame[i] = p;
+        }
+        previous = p;
+        frameLength = count;
+        frameIndex = 0;
+    }
+
+    /**
+     * 读取当前线圈、离散输入块中接下来的值
+     *
+     * @return 读取的数量，块已读完时返回 0
+     */
+    public int readBits(boolean[] dst, int off, int len) throws IOException {
+        if (!isBits()) {
+            throw new IllegalStateException("Block is not bits");
+        }
+        int n = 0;
+        while (n < len && remaining > 0) {
+            dst[off + n++] = readBit();
+        }
+        return n;
+    }
+
+    private boolean readBit() throws IOException {
+        int index = quantity - remaining;
+        if ((index & 7) == 0) {
+            bits = readByte();
+        }
+        remaining--;
+        return ((bits >> (index & 7)) & 1) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,177 @@
+package com.tonyx.androidmodbusrtudemo.modbus.store;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+/*
+    Writes a register map snapshot as a stream of per-slave columnar blocks. Registers are
+    encoded in frames of 32: each frame stores either zigzag deltas or XORs against the
+    previous register, whichever needs fewer bits, bit-packed at that width. Coils and
+    discrete inputs are stored as packed bits. The stream ends with a CRC32.
+    Memory use does not depend on the snapshot size; read it back with SnapshotReader.
+
+    snapshot: "MSNP" version timestamp block* 0 crc32
+    block:    function slave start quantity (frame* | bits)
+    frame:    mode (bit 7 XOR, bits 0-4 width) packed values
+ */
+public class SnapshotWriter implements Closeable {
+    static final int MAGIC = 0x4D534E50;    // "MSNP"
+    static final int VERSION = 1;
+    static final int FRAME = 32;
+    static final int XOR = 0x80;
+    static final int MAX_WIDTH = 17;
+
+    private final OutputStream target;
+    private final CheckedOutputStream out;
+    private final byte[] scratch = new byte[1 + (FRAME * MAX_WIDTH + 7) / 8];
+    private int previous;
+    private boolean finished;
+
+    /**
+     * 写入文件头
+     *
+     * @param timestamp 快照时间，如 System.currentTimeMillis()
+     */
+    public SnapshotWriter(OutputStream out, long timestamp) throws IOException {
+        this.target = out;
+        this.out = new CheckedOutputStream(new BufferedOutputStream(out), new CRC32());
+        int pos = ByteUtil.putInt32(scratch, 0, MAGIC);
+        scratch[pos++] = VERSION;
+        pos = ByteUtil.putVarLong(scratch, pos, timestamp);
+        this.out.write(scratch, 0, pos);
+    }
+
+    private void writeBlockHeader(int slave, int function_code, int start, int quantity) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Snapshot is finished");
+        }
+        if (slave < 0 || slave > 255) {
+            throw new IllegalArgumentException("Invalid slave " + slave);
+        }
+        if (start < 0 || quantity < 1 || start > 0x10000 - quantity) {
+            throw new IllegalArgumentException(String.format("Invalid range %d + %d", start, quantity));
+        }
+        scratch[0] = (byte) function_code;
+        scratch[1] = (byte) slave;
+        int pos = ByteUtil.putVarLong(scratch, 2, start);
+        pos = ByteUtil.putVarLong(scratch, pos, quantity);
+        out.write(scratch, 0, pos);
+    }
+
+    /**
+     * 写入一个寄存器块
+     *
+     * @param function_code ModbusFunction.READ_HOLDING_REGISTERS 或 READ_INPUT_REGISTERS
+     * @param values        寄存器值，只取低16位
+     */
+    public void writeRegisters(int slave, int function_code, int start, int[] values, int off, int quantity) throws IOException {
+        if (function_code != ModbusFunction.READ_HOLDING_REGISTERS && function_code != ModbusFunction.READ_INPUT_REGISTERS) {
+            throw new IllegalArgumentException("Not a register function " + function_code);
+        }
+        writeBlockHeader(slave, function_code, start, quantity);
+        previous = 0;
+        for (int i = 0; i < quantity; i += FRAME) {
+            writeFrame(values, off + i, Math.min(FRAME, quantity - i));
+        }
+    }
+
+    /**
+     * 选择位数较少的编码方式，按该位宽打包一帧
+     */
+    private void writeFrame(int[] values, int off, int count) throws IOException {
+        int deltaBits = 0;
+        int xorBits = 0;
+        int p = previous;
+        for (int i = 0; i < count; i++) {
+            int v = values[off + i] & 0xFFFF;
+            int delta = v - p;
+            deltaBits |= (delta << 1) ^ (delta >> 31);
+            xorBits |= v ^ p;
+            p = v;
+        }
+        int deltaWidth = 32 - Integer.numberOfLeadingZeros(deltaBits);
+        int xorWidth = 32 - Integer.numberOfLeadingZeros(xorBits);
+        boolean xor = xorWidth < deltaWidth;
+        int width = xor ? xorWidth : deltaWidth;
+        scratch[0] = (byte) ((xor ? XOR : 0) | width);
+        int pos = 1;
+        long bits = 0;
+        int bitCount = 0;
+        p = previous;
+        for (int i = 0; i < count; i++) {
+            int v = values[off + i] & 0xFFFF;
+            int delta = v - p;
+            int code = xor ? v ^ p : (delta << 1) ^ (delta >> 31);
+            p = v;
+            bits |= (long) code << bitCount;
+            bitCount += width;
+            while (bitCount >= 8) {
+                scratch[pos++] = (byte) bits;
+                bits >>>= 8;
+                bitCount -= 8;
+            }
+        }
+        if (bitCount > 0) {
+            scratch[pos++] = (byte) bits;
+        }
+        out.write(scratch, 0, pos);
+        previous = p;
+    }
+
+    /**
+     * 写入一个线圈或离散输入块，按位打包，低位在前
+     *
+     * @param function_code ModbusFunction.READ_COILS 或 READ_DISCRETE_INPUTS
+     */
+    public void writeBits(int slave, int function_code, int start, boolean[] values, int off, int quantity) throws IOException {
+        if (function_code != ModbusFunction.READ_COILS && function_code != ModbusFunction.READ_DISCRETE_INPUTS) {
+            throw new IllegalArgumentException("Not a bit function " + function_code);
+        }
+        writeBlockHeader(slave, function_code, start, quantity);
+        int pos = 0;
+        for (int i = 0; i < quantity; i += 8) {
+            int b = 0;
+            for (int bit = 0; bit < 8 && i + bit < quantity; bit++) {
+                if (values[off + i + bit]) {
+                    b |= 1 << bit;
+                }
+            }
+            scratch[pos++] = (byte) b;
+            if (pos == scratch.length) {
+                out.write(scratch, 0, pos);
+                pos = 0;
+            }
+        }
+        out.write(scratch, 0, pos);
+    }
+
+    /**
+     * 写入结束标记和 CRC32，不关闭输出流
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            out.write(0);
+            out.flush();
+            ByteUtil.putInt32(scratch, 0, (int) out.getChecksum().getValue());
+            target.write(scratch, 0, 4);
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            target.close();
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.tonyx.androidmodbusrtudemo.modbus.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import com.tonyx.androidmodbusrtudemo.utilities.ByteArrayReader;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+/*
+    Store-and-forward buffer for polled values: a fixed-size ring in a memory-mapped file.
+    Each append is one record of (timestamp, values), e.g. the raw column of TagDecoder.
+    Records are varint encoded as deltas against the previous record, with a full keyframe
+    every keyframeInterval records. When the ring is full the oldest records are dropped.
+    One Cursor reads the records in order for upload; commit() persists its position.
+
+    Every record carries a CRC32 over its logical position and payload. On open the ring is
+    scanned from the oldest record and ends at the first record that does not verify, so a
+    torn write or a stale record from the previous lap is never returned. A killed process
+    loses nothing; after a power loss, records written since the last flush() may be lost.
+ */
+public class TimeSeriesBuffer implements Closeable {
+    private static final int MAGIC = 0x4D545342;    // "MTSB"
+    private static final int VERSION = 1;
+    // 文件头
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_OLDEST = 16;
+    private static final int HEADER_COMMITTED = 24;
+    private static final int HEADER_LENGTH = 64;
+    // 记录：长度、CRC32、负载。负载：到关键帧的距离（4 字节）、时间戳、数量、各个值
+    private static final int RECORD_HEADER = 8;
+    private static final int MIN_PAYLOAD = 6;
+    // 文件尾部放不下记录时写入的标记，读取时跳到下一圈的开头
+    private static final int WRAP = -1;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer mapped;
+    private final int capacity;
+    private final CRC32 crc = new CRC32();
+    private boolean closed;
+
+    // 逻辑位置单调递增，物理位置为 position % capacity
+    private long oldest;
+    private long head;
+    private long committed;
+    private long lostCount;
+
+    // 写入状态
+    private int keyframeInterval = 64;
+    private byte[] scratch = new byte[256];
+    private long[] previous = new long[16];
+    private int previousCount = -1;
+    private long previousTimestamp;
+    private long keyframePosition = -1;
+    private int sinceKeyframe;
+
+    private final Cursor cursor = new Cursor();
+
+    /**
+     * 打开或创建缓冲文件，已有文件时恢复其中的记录和读取位置
+     *
+     * @param capacity 环形区的字节数，文件已存在时必须相同
+     */
+    public TimeSeriesBuffer(File file, int capacity) throws IOException {
+        if (capacity < 1024) {
+            throw new IllegalArgumentException("Capacity too small " + capacity);
+        }
+        this.file = file;
+        this.capacity = capacity;
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            boolean created = raf.length() == 0;
+            if (raf.length() < HEADER_LENGTH + (long) capacity) {
+                raf.setLength(HEADER_LENGTH + (long) capacity);
+            }
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_LENGTH + (long) capacity);
+            if (created || mapped.getInt(HEADER_MAGIC) == 0) {
+                mapped.putInt(HEADER_MAGIC, MAGIC);
+                mapped.putInt(HEADER_VERSION, VERSION);
+                mapped.putInt(HEADER_CAPACITY, capacity);
+                writeHeader();
+                mapped.force();
+            } else {
+                if (mapped.getInt(HEADER_MAGIC) != MAGIC || mapped.getInt(HEADER_VERSION) != VERSION) {
+                    throw new IOException("Not a time series buffer " + file);
+                }
+                if (mapped.getInt(HEADER_CAPACITY) != capacity) {
+                    throw new IOException(String.format("Capacity of %s is %d, not %d", file, mapped.getInt(HEADER_CAPACITY), capacity));
+                }
+                recover();
+            }
+        } catch (IOException ex) {
+            raf.close();
+            throw ex;
+        }
+        cursor.rewind();
+    }
+
+    /**
+     * 从最旧的记录开始校验，第一条校验失败的记录处即为写入位置
+     */
+    private void recover() {
+        oldest = Math.max(mapped.getLong(HEADER_OLDEST), 0);
+        committed = mapped.getLong(HEADER_COMMITTED);
+        long position = oldest;
+        while (true) {
+            long start = recordStart(position);
+            int length = verify(start);
+            if (length < 0) {
+                break;
+            }
+            position = start + RECORD_HEADER + length;
+            if (position - oldest > capacity) {
+                break;
+            }
+        }
+        head = position;
+        committed = Math.min(Math.max(committed, oldest), head);
+        writeHeader();
+    }
+
+    /**
+     * @return 负载长度，记录无效时返回 -1
+     */
+    private int verify(long start) {
+        int physical = physical(start);
+        int length = mapped.getInt(HEADER_LENGTH + physical);
+        if (length < MIN_PAYLOAD || length > capacity - physical - RECORD_HEADER) {
+            return -1;
+        }
+        ensureScratch(length);
+        read(start, scratch, length);
+        return checksum(start, scratch, length) == mapped.getInt(HEADER_LENGTH + physical + 4) ? length : -1;
+    }
+
+    private int checksum(long position, byte[] payload, int length) {
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (position >>> shift));
+        }
+        crc.update(payload, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private int physical(long position) {
+        return (int) (position % capacity);
+    }
+
+    /**
+     * 跳过圈尾的空闲部分，返回记录真正的起始位置
+     */
+    private long recordStart(long position) {
+        int physical = physical(position);
+        if (capacity - physical < RECORD_HEADER || mapped.getInt(HEADER_LENGTH + physical) == WRAP) {
+            return position + capacity - physical;
+        }
+        return position;
+    }
+
+    private void read(long start, byte[] dst, int length) {
+        mapped.position(HEADER_LENGTH + physical(start) + RECORD_HEADER);
+        mapped.get(dst, 0, length);
+    }
+
+    private void ensureScratch(int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+    }
+
+    private void writeHeader() {
+        mapped.putLong(HEADER_OLDEST, oldest);
+        mapped.putLong(HEADER_COMMITTED, committed);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Buffer is closed " + file);
+        }
+    }
+
+    /**
+     * 设置关键帧间隔：间隔越大压缩越好，但环形区覆盖时丢弃的不完整记录越多
+     */
+    public synchronized void setKeyframeInterval(int records) {
+        this.keyframeInterval = Math.max(records, 1);
+    }
+
+    /**
+     * 追加一条记录，空间不足时丢弃最旧的记录。不分配新对象（值的数量增加时除外）
+     *
+     * @param timestamp 时间戳，如 System.currentTimeMillis()
+     * @param values    前 count 个值，浮点数请先用 Double.doubleToLongBits 转换
+     */
+    public synchronized void append(long timestamp, long[] values, int count) {
+        ensureOpen();
+        boolean keyframe = count != previousCount || sinceKeyframe + 1 >= keyframeInterval || keyframePosition < oldest;
+        int length = encode(keyframe, timestamp, values, count);
+        if (RECORD_HEADER + length > capacity / 2) {
+            throw new IllegalArgumentException("Record of " + length + " bytes is too large");
+        }
+        long position = reserve(RECORD_HEADER + length);
+        if (!keyframe && keyframePosition < oldest) {
+            // 关键帧刚被覆盖
+            keyframe = true;
+            length = encode(true, timestamp, values, count);
+            position = reserve(RECORD_HEADER + length);
+        }
+        ByteUtil.putInt32(scratch, 0, keyframe ? 0 : (int) (position - keyframePosition));
+        int physical = HEADER_LENGTH + physical(position);
+        mapped.putInt(physical, length);
+        mapped.putInt(physical + 4, checksum(position, scratch, length));
+        mapped.position(physical + RECORD_HEADER);
+        mapped.put(scratch, 0, length);
+        head = position + RECORD_HEADER + length;
+
+        if (previous.length < count) {
+            previous = new long[Math.max(count, previous.length * 2)];
+        }
+        System.arraycopy(values, 0, previous, 0, count);
+        previousCount = count;
+        previousTimestamp = timestamp;
+        if (keyframe) {
+            keyframePosition = position;
+            sinceKeyframe = 0;
+        } else {
+            sinceKeyframe++;
+        }
+    }
+
+    private int encode(boolean keyframe, long timestamp, long[] values, int count) {
+        ensureScratch(4 + 10 + 5 + count * 10);
+        int pos = 4;
+        pos = ByteUtil.putVarLong(scratch, pos, zigzag(keyframe ? timestamp : timestamp - previousTimestamp));
+        pos = ByteUtil.putVarLong(scratch, pos, count);
+        for (int i = 0; i < count; i++) {
+            pos = ByteUtil.putVarLong(scratch, pos, zigzag(keyframe ? values[i] : values[i] - previous[i]));
+        }
+        return pos;
+    }
+
+    /**
+     * 为 size 字节的记录腾出空间
+     *
+     * @return 记录的逻辑位置
+     */
+    private long reserve(int size) {
+        int physical = physical(head);
+        long position = head;
+        if (capacity - physical < size) {
+            position += capacity - physical;
+        }
+        while (position + size - oldest > capacity) {
+            if (oldest >= head) {
+                oldest = position;
+                break;
+            }
+            evictOldest();
+        }
+        if (position != head && capacity - physical >= RECORD_HEADER) {
+            mapped.putInt(HEADER_LENGTH + physical, WRAP);
+        }
+        if (committed < oldest) {
+            committed = oldest;
+        }
+        writeHeader();
+        return position;
+    }
+
+    private void evictOldest() {
+        long start = recordStart(oldest);
+        if (start >= head) {
+            oldest = head;
+            return;
+        }
+        if (start >= committed) {
+            lostCount++;
+        }
+        oldest = start + RECORD_HEADER + mapped.getInt(HEADER_LENGTH + physical(start));
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 将已写入的数据同步到存储设备
+     */
+    public synchronized void flush() {
+        ensureOpen();
+        mapped.force();
+    }
+
+    /**
+     * 上传用的读取游标，每个缓冲区只有一个
+     */
+    public Cursor getCursor() {
+        return cursor;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 环形区中记录占用的字节数
+     */
+    public synchronized long getSize() {
+        return head - oldest;
+    }
+
+    /**
+     * 尚未 commit 的字节数
+     */
+    public synchronized long getPendingBytes() {
+        return head - committed;
+    }
+
+    /**
+     * 未被读取就被覆盖或无法解码的记录数
+     */
+    public synchronized long getLostCount() {
+        return lostCount;
+    }
+
+    /**
+     * 同步到存储设备并关闭文件，内存映射在回收时释放
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            mapped.force();
+            raf.close();
+        }
+    }
+
+    /*
+        Reads records in order, starting at the committed position. Delta records are
+        decoded against the previous record; when reading starts inside a delta chain, the
+        chain is replayed from its keyframe.
+     */
+    public class Cursor {
+        private long position;
+        private long timestamp;
+        private int count;
+        private long[] values = new long[16];
+        private boolean decoded;
+        private byte[] payload = new byte[256];
+        private final ByteArrayReader reader = new ByteArrayReader(payload);
+
+        /**
+         * 读取下一条记录
+         *
+         * @return 没有更多记录时返回 false
+         */
+        public boolean next() {
+            synchronized (TimeSeriesBuffer.this) {
+                ensureOpen();
+                if (position < oldest) {
+                    position = oldest;
+                    decoded = false;
+                }
+                while (position < head) {
+                    long start = recordStart(position);
+                    if (start >= head) {
+                        position = head;
+                        break;
+                    }
+                    long next = start + RECORD_HEADER + readPayload(start);
+                    int distance = ByteUtil.getInt32(payload, 0);
+                    if (distance != 0 && !decoded && !replay(start - distance, start)) {
+                        // 关键帧已被覆盖，无法解码
+                        lostCount++;
+                        position = next;
+                        continue;
+                    }
+                    readPayload(start);
+                    decode(distance == 0);
+                    position = next;
+                    return true;
+                }
+                return false;
+            }
+        }
+
+        /**
+         * 从关键帧开始解码到 end 之前的记录
+         */
+        private boolean replay(long keyframe, long end) {
+            if (keyframe < oldest) {
+                return false;
+            }
+            long p = keyframe;
+            while (p < end) {
+                long start = recordStart(p);
+                p = start + RECORD_HEADER + readPayload(start);
+                decode(ByteUtil.getInt32(payload, 0) == 0);
+            }
+            return true;
+        }
+
+        /**
+         * 读取记录的负载，reader 位于时间戳处
+         *
+         * @return 负载长度
+         */
+        private int readPayload(long start) {
+            int length = mapped.getInt(HEADER_LENGTH + physical(start));
+            if (payload.length < length) {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            read(start, payload, length);
+            reader.setBuffer(payload, 4, length - 4);
+            return length;
+        }
+
+        private void decode(boolean keyframe) {
+            try {
+                long t = unzigzag(reader.readVarLong());
+                timestamp = keyframe ? t : timestamp + t;
+                count = (int) reader.readVarLong();
+                if (values.length < count) {
+                    values = Arrays.copyOf(values, Math.max(count, values.length * 2));
+                }
+                for (int i = 0; i < count; i++) {
+                    long v = unzigzag(reader.readVarLong());
+                    values[i] = keyframe ? v : values[i] + v;
+                }
+                decoded = true;
+            } catch (IOException ex) {
+                // 记录在写入时已校验，不会发生
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getValue(int index) {
+            return values[index];
+        }
+
+        /**
+         * 复制当前记录的全部值
+         */
+        public void getValues(long[] dst, int off) {
+            System.arraycopy(values, 0, dst, off, count);
+        }
+
+        /**
+         * 确认已读取（上传）到当前记录为止的数据，重启后从这里继续
+         */
+        public void commit() {
+            synchronized (TimeSeriesBuffer.this) {
+                ensureOpen();
+                committed = Math.max(position, oldest);
+                writeHeader();
+            }
+        }
+
+        /**
+         * 回到上次 commit 的位置，如上传失败后重发
+         */
+        public void rewind() {
+            synchronized (TimeSeriesBuffer.this) {
+                position = committed;
+                decoded = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.tonyx.androidmodbusrtudemo.modbus.transport;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
+
+/*
+    Detects the end of a Modbus RTU response frame while its bytes are still arriving.
+    The length of a frame is known from the function code up front, refined by the
+    byte count field of read responses and shortened to 5 bytes for exception responses.
+ */
+public class ModbusFrameReader {
+    public static final int MAX_FRAME_LENGTH = 256;
+    // 字节数字段最大 255，加上从站地址、功能码、字节数和CRC
+    public static final int MAX_RESPONSE_LENGTH = 0xff + 5;
+
+    private int function_code;
+    private int expected_length;
+
+    public ModbusFrameReader() {
+    }
+
+    /**
+     * 开始接收一个新的响应帧
+     *
+     * @param function_code   请求的功能码
+     * @param expected_length 根据请求计算的响应帧长度（含从站地址和CRC）
+     */
+    public void reset(int function_code, int expected_length) {
+        this.function_code = function_code;
+        this.expected_length = expected_length;
+    }
+
+    /**
+     * 根据已接收的字节计算整帧长度
+     *
+     * @param frame    接收缓冲区
+     * @param offset   帧在缓冲区中的起始位置
+     * @param received 已接收的字节数
+     * @return 当前已知的整帧长度
+     */
+    public int frameLength(byte[] frame, int offset, int received) {
+        if (received >= 2 && (frame[offset + 1] & 0x80) != 0) {
+            // exception response: slave, function | 0x80, exception code, crc
+            return 5;
+        }
+        if (received >= 3 && ModbusFunction.isReadFunction(function_code)) {
+            // slave, function, byte count, data, crc
+            return (frame[offset + 2] & 0xff) + 5;
+        }
+        return expected_length;
+    }
+
+    /**
+     * 整帧长度是否已由帧头确定：读功能码需收到字节数字段，其他功能码需收到功能码以区分异常响应
+     */
+    public boolean isLengthKnown(byte[] frame, int offset, int received) {
+        if (received >= 2 && ((frame[offset + 1] & 0x80) != 0 || !ModbusFunction.isReadFunction(function_code))) {
+            return true;
+        }
+        return received >= 3;
+    }
+
+    /**
+     * @return 还需接收的字节数，0 表示整帧已接收完成
+     */
+    public int remaining(byte[] frame, int offset, int received) {
+        return Math.max(frameLength(frame, offset, received) - received, 0);
+    }
+
+    public boolean isComplete(byte[] frame, int offset, int received) {
+        return remaining(frame, offset, received) == 0;
+    }
+
+    /**
+     * RTU 帧间 3.5 个字符的静默时间。按每字符 11 位计算，波特率高于 19200 时使用规范规定的固定值 1750us
+     *
+     * @param baudrate 波特率
+     * @return 静默时间，单位纳秒
+     */
+    public static long silentIntervalNanos(int baudrate) {
+        if (baudrate <= 0 || baudrate > 19200) {
+            return 1750000L;
+        }
+        // 3.5 chars * 11 bits * 1e9 ns
+        return 38500000000L / baudrate;
+    }
+}
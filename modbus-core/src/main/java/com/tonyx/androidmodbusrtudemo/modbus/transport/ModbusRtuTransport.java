@@ -0,0 +1,202 @@
+package com.tonyx.androidmodbusrtudemo.modbus.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+import com.tonyx.androidmodbusrtudemo.utilities.CRC16;
+import com.tonyx.androidmodbusrtudemo.utilities.StreamReceiver;
+
+/*
+    Modbus RTU over a serial port or a pair of streams: slave address + PDU + CRC,
+    frames delimited by the 3.5 character silent interval. One transaction at a time.
+ */
+public class ModbusRtuTransport implements ModbusTransport {
+    private static final int FRAME_OFFSET = PDU_OFFSET - 1;
+
+    private int silentInterval = 0;
+    private int baudrate;
+    private SerialChannel port;
+    private OutputStream output;
+    private StreamReceiver receiver;
+    private final ModbusFrameReader frameReader = new ModbusFrameReader();
+
+    public ModbusRtuTransport(SerialChannel port) {
+        this.port = port;
+        this.output = port.getOutputStream();
+        this.baudrate = port.getBaudrate();
+    }
+
+    /**
+     * 使用普通的输入输出流通讯，由接收线程负责读取输入流
+     *
+     * @param baudrate 用于计算帧间静默时间
+     */
+    public ModbusRtuTransport(InputStream input, OutputStream output, int baudrate) {
+        this.output = output;
+        this.baudrate = baudrate;
+        this.receiver = new StreamReceiver(input, 4096, "ModbusRtuTransport-rx");
+    }
+
+    /**
+     * 使用输入输出流时停止接收线程并关闭输入流；串口和输出流由调用方关闭
+     */
+    @Override
+    public void close() {
+        if (receiver != null) {
+            receiver.close();
+        }
+    }
+
+    /**
+     * 设置帧间静默时间，用于判断从站已结束发送
+     *
+     * @param silentInterval 单位微秒，0 表示按串口波特率计算 3.5 个字符的时间
+     */
+    public void setSilentInterval(int silentInterval) {
+        this.silentInterval = Math.max(silentInterval, 0);
+    }
+
+    public int getBaudrate() {
+        return baudrate;
+    }
+
+    private long getSilentIntervalNanos() {
+        if (silentInterval > 0) {
+            return silentInterval * 1000L;
+        }
+        return ModbusFrameReader.silentIntervalNanos(baudrate);
+    }
+
+    private void discardInput() throws IOException {
+        if (port != null) {
+            port.flushInput();
+        } else {
+            receiver.clear();
+        }
+    }
+
+    private int receive(byte[] buffer, int off, int len, long timeoutNanos) throws IOException {
+        if (port != null) {
+            // poll() 以毫秒计时，向上取整
+            return port.read(buffer, off, len, (int) ((timeoutNanos + 999999L) / 1000000L));
+        }
+        return receiver.read(buffer, off, len, timeoutNanos);
+    }
+
+    /**
+     * 发送请求帧并接收响应帧。CRC 随数据到达增量计算，
+     * 帧头（从站地址、功能码）一旦不符立即放弃，等待线路静默后再返回错误。
+     * 帧长度已知后一直接收到整帧或超时，USB 转串口适配器分批送达的字节之间可能有远超
+     * 3.5 个字符的间隔；只有帧长度未知时才以线路静默判断帧结束
+     */
+    @Override
+    public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) throws IOException, ModbusError {
+        return transact(slave, request, pdu_length, response, expected_length, timeout, null);
+    }
+
+    /**
+     * 同 transact，并在 times 中返回本次事务的时间点，System.nanoTime()：
+     * times[0] 请求帧发送完成，times[1] 收到第一个响应字节，未收到时为 0。
+     * 失败时也会写入已经过的时间点
+     *
+     * @param times 长度至少为 2，null 表示不需要
+     */
+    synchronized public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout, long[] times) throws IOException, ModbusError {
+        request[FRAME_OFFSET] = (byte) slave;
+        int length = PDU_OFFSET + pdu_length;
+        int crc = CRC16.update(CRC16.INITIAL, request, FRAME_OFFSET, length - FRAME_OFFSET);
+        length = ByteUtil.putInt16Reversal(request, length, crc);
+        // 发送到设备
+        discardInput();
+        output.write(request, FRAME_OFFSET, length - FRAME_OFFSET);
+        output.flush();
+        if (times != null) {
+            times[0] = System.nanoTime();
+            times[1] = 0;
+        }
+        // 从设备接收反馈
+        int function_code = request[PDU_OFFSET] & 0xff;
+        int capacity = response.length - FRAME_OFFSET;
+        int received = 0;
+        crc = CRC16.INITIAL;
+        long silentInterval = getSilentIntervalNanos();
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        frameReader.reset(function_code, expected_length + 3);
+        while (!frameReader.isComplete(response, FRAME_OFFSET, received) && received < capacity) {
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0) {
+                throw new ModbusError(ModbusErrorType.ModbusTimeoutError, String.format("Timeout of %d ms.", timeout));
+            }
+            boolean waitForSilence = received > 0 && silentInterval < wait
+                    && !frameReader.isLengthKnown(response, FRAME_OFFSET, received);
+            if (waitForSilence) {
+                wait = silentInterval;
+            }
+            int len = receive(response, FRAME_OFFSET + received, capacity - received, wait);
+            if (len > 0) {
+                if (received == 0 && times != null) {
+                    times[1] = System.nanoTime();
+                }
+                crc = CRC16.update(crc, response, FRAME_OFFSET + received, len);
+                received += len;
+                ModbusError error = checkHeader(slave, function_code, response, received);
+                if (error != null) {
+                    resync(deadline, response);
+                    throw error;
+                }
+            } else if (waitForSilence) {
+                // 帧长度未知时，3.5 个字符的静默时间表示从站已结束发送
+                break;
+            }
+        }
+
+        if (received != frameReader.frameLength(response, FRAME_OFFSET, received)) {
+            resync(deadline, response);
+            throw new ModbusError(ModbusErrorType.ModbusInvalidResponseError, "Response length is invalid " + received);
+        }
+        // 包含CRC在内的整帧校验结果为0
+        if (crc != 0) {
+            resync(deadline, response);
+            throw new ModbusError(ModbusErrorType.ModbusCrcError,
+                    String.format("CRC mismatch in response from slave %d", slave));
+        }
+        return received - 3;
+    }
+
+    /**
+     * 检查已接收的帧头，不符时返回错误
+     */
+    private static ModbusError checkHeader(int slave, int function_code, byte[] response, int received) {
+        int responseSlave = response[FRAME_OFFSET] & 0xff;
+        if (responseSlave != slave) {
+            return new ModbusError(ModbusErrorType.ModbusInvalidResponseError,
+                    String.format("Response slave %d is different from request slave %d", responseSlave, slave));
+        }
+        if (received >= 2) {
+            int return_code = response[PDU_OFFSET] & 0xff;
+            if ((return_code & 0x7f) != function_code) {
+                return new ModbusError(ModbusErrorType.ModbusInvalidResponseError,
+                        String.format("Response function %d is different from request function %d", return_code, function_code));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 丢弃损坏帧的剩余部分，直到线路静默 3.5 个字符时间，使下一个请求从帧边界开始
+     */
+    private void resync(long deadline, byte[] scratch) throws IOException {
+        long silentInterval = getSilentIntervalNanos();
+        while (true) {
+            long wait = Math.min(silentInterval, deadline - System.nanoTime());
+            if (wait <= 0 || receive(scratch, FRAME_OFFSET, scratch.length - FRAME_OFFSET, wait) <= 0) {
+                break;
+            }
+        }
+        discardInput();
+    }
+}
@@ -0,0 +1,220 @@
+package com.tonyx.androidmodbusrtudemo.modbus.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+/*
+    Modbus TCP (MBAP header + PDU) over a SocketChannel. Requests from different threads
+    are pipelined: each one gets its own transaction identifier and a receiver thread
+    hands every response to the request with the matching identifier, so a gateway can
+    work on several requests at once. Use one ModbusMaster per concurrent caller on a
+    shared transport. For RTU-over-TCP gateways, which have no transaction identifier,
+    use ModbusRtuTransport on the socket streams instead.
+ */
+public class ModbusTcpTransport implements ModbusTransport {
+    private static final int MBAP_LENGTH = 7;
+
+    private final SocketChannel channel;
+    private final Pending[] slots;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_LENGTH);
+    private final Thread thread;
+    private int sequence;
+    private IOException lastError;
+    private volatile boolean closed;
+
+    private static final class Pending {
+        boolean active;
+        boolean done;
+        int transactionId;
+        int slave;
+        byte[] response;
+        int length;
+        ModbusError error;
+    }
+
+    public ModbusTcpTransport(String host, int port) throws IOException {
+        this(SocketChannel.open(new InetSocketAddress(host, port)), 32);
+    }
+
+    /**
+     * @param channel     已连接的通道
+     * @param maxInFlight 同时等待响应的最大请求数，2 的幂，不超过 256
+     */
+    public ModbusTcpTransport(SocketChannel channel, int maxInFlight) throws IOException {
+        if (maxInFlight < 1 || maxInFlight > 256 || (maxInFlight & (maxInFlight - 1)) != 0) {
+            throw new IllegalArgumentException("Invalid maxInFlight " + maxInFlight);
+        }
+        this.channel = channel;
+        channel.configureBlocking(true);
+        channel.socket().setTcpNoDelay(true);
+        this.slots = new Pending[maxInFlight];
+        for (int i = 0; i < maxInFlight; i++) {
+            slots[i] = new Pending();
+        }
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive();
+            }
+        }, "ModbusTcpTransport-rx");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) throws IOException, ModbusError {
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        Pending pending = acquire(slave, response, deadline, timeout);
+        try {
+            int transactionId = pending.transactionId;
+            ByteUtil.putInt16(request, 0, transactionId);
+            ByteUtil.putInt16(request, 2, 0);
+            ByteUtil.putInt16(request, 4, pdu_length + 1);
+            request[6] = (byte) slave;
+            synchronized (writeBuffer) {
+                writeBuffer.clear();
+                writeBuffer.put(request, 0, MBAP_LENGTH + pdu_length);
+                writeBuffer.flip();
+                while (writeBuffer.hasRemaining()) {
+                    channel.write(writeBuffer);
+                }
+            }
+            synchronized (this) {
+                while (!pending.done) {
+                    if (lastError != null) {
+                        throw lastError;
+                    }
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0) {
+                        throw new ModbusError(ModbusErrorType.ModbusTimeoutError, String.format("Timeout of %d ms.", timeout));
+                    }
+                    waitNanos(wait);
+                }
+                if (pending.error != null) {
+                    throw pending.error;
+                }
+                return pending.length;
+            }
+        } finally {
+            release(pending);
+        }
+    }
+
+    private synchronized Pending acquire(int slave, byte[] response, long deadline, int timeout) throws IOException, ModbusError {
+        while (true) {
+            if (lastError != null) {
+                throw lastError;
+            }
+            if (closed) {
+                throw new IOException("Transport closed");
+            }
+            for (int i = 0; i < slots.length; i++) {
+                int index = (sequence + i) & (slots.length - 1);
+                Pending pending = slots[index];
+                if (!pending.active) {
+                    // 低位为槽位序号，收到响应时据此直接找到请求
+                    sequence = (sequence + i + 1) & 0xffff;
+                    pending.transactionId = (sequence - 1) & 0xffff;
+                    pending.active = true;
+                    pending.done = false;
+                    pending.slave = slave;
+                    pending.response = response;
+                    pending.length = 0;
+                    pending.error = null;
+                    return pending;
+                }
+            }
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0) {
+                throw new ModbusError(ModbusErrorType.ModbusTimeoutError, String.format("Timeout of %d ms.", timeout));
+            }
+            waitNanos(wait);
+        }
+    }
+
+    private synchronized void release(Pending pending) {
+        pending.active = false;
+        pending.response = null;
+        notifyAll();
+    }
+
+    /**
+     * 被中断时放弃等待，否则中断标志会使之后的 wait() 立即返回，线程空转到超时
+     */
+    private void waitNanos(long wait) throws InterruptedIOException {
+        try {
+            wait(wait / 1000000L, (int) (wait % 1000000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a response");
+        }
+    }
+
+    private void receive() {
+        ByteBuffer header = ByteBuffer.allocateDirect(MBAP_LENGTH);
+        ByteBuffer body = ByteBuffer.allocateDirect(BUFFER_LENGTH);
+        try {
+            while (!closed) {
+                header.clear();
+                readFully(header);
+                int transactionId = header.getShort(0) & 0xffff;
+                int protocol = header.getShort(2) & 0xffff;
+                int length = header.getShort(4) & 0xffff;
+                int unit = header.get(6) & 0xff;
+                if (length < 2 || length - 1 > BUFFER_LENGTH - PDU_OFFSET) {
+                    throw new IOException("Invalid MBAP length " + length);
+                }
+                body.clear();
+                body.limit(length - 1);
+                readFully(body);
+                body.flip();
+                synchronized (this) {
+                    Pending pending = slots[transactionId & (slots.length - 1)];
+                    if (pending.active && !pending.done && pending.transactionId == transactionId) {
+                        if (protocol != 0) {
+                            // 长度有效时仍读完整帧，后续帧保持同步
+                            pending.error = new ModbusError(ModbusErrorType.ModbusInvalidResponseError,
+                                    String.format("Response protocol identifier %d is not Modbus", protocol));
+                        } else if (unit != pending.slave) {
+                            pending.error = new ModbusError(ModbusErrorType.ModbusInvalidResponseError,
+                                    String.format("Response unit %d is different from request unit %d", unit, pending.slave));
+                        } else {
+                            body.get(pending.response, PDU_OFFSET, length - 1);
+                            pending.length = length - 1;
+                        }
+                        pending.done = true;
+                        notifyAll();
+                    }
+                    // 其它情况为已超时请求的迟到响应，丢弃
+                }
+            }
+        } catch (IOException ex) {
+            synchronized (this) {
+                lastError = closed ? new IOException("Transport closed") : ex;
+                notifyAll();
+            }
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed by peer");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+}
@@ -0,0 +1,37 @@
+package com.tonyx.androidmodbusrtudemo.modbus.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+
+/*
+    Carries Modbus PDUs (function code + data) between a master and its slaves.
+    Request and response buffers reserve PDU_OFFSET bytes in front of the PDU, so each
+    transport can put its own header there (RTU slave address, TCP MBAP header) and
+    append its trailer (RTU CRC) without copying the PDU.
+ */
+public interface ModbusTransport extends Closeable {
+    /**
+     * PDU 在请求、响应缓冲区中的起始位置，前面预留给 MBAP 报文头
+     */
+    int PDU_OFFSET = 7;
+
+    /**
+     * 请求、响应缓冲区的最小长度
+     */
+    int BUFFER_LENGTH = PDU_OFFSET + ModbusFrameReader.MAX_RESPONSE_LENGTH;
+
+    /**
+     * 发送请求 PDU 并等待响应 PDU
+     *
+     * @param slave           从站地址，TCP 中为 unit identifier
+     * @param request         请求缓冲区，PDU 从 PDU_OFFSET 开始，长度至少为 BUFFER_LENGTH
+     * @param pdu_length      请求 PDU 的长度
+     * @param response        响应缓冲区，响应 PDU 写入 PDU_OFFSET 开始的位置，长度至少为 BUFFER_LENGTH
+     * @param expected_length 预计的响应 PDU 长度，读功能码以响应中的字节数为准
+     * @param timeout         超时时间，单位毫秒
+     * @return 响应 PDU 的长度
+     */
+    int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) throws IOException, ModbusError;
+}
@@ -0,0 +1,45 @@
+package com.tonyx.androidmodbusrtudemo.modbus.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/*
+    An open serial port as seen by ModbusRtuTransport. The protocol core only depends on
+    this interface; the JNI android_serialport_api.SerialPort implements it in the app,
+    and other platforms can plug in their own serial library.
+ */
+public interface SerialChannel {
+    /**
+     * 打开串口
+     */
+    interface Factory {
+        /**
+         * 以 8N1 打开串口
+         *
+         * @param path 串口设备路径，如 /dev/ttyS0
+         */
+        SerialChannel open(String path, int baudrate) throws IOException;
+    }
+
+    InputStream getInputStream();
+
+    OutputStream getOutputStream();
+
+    int getBaudrate();
+
+    /**
+     * 限时读取
+     *
+     * @param timeoutMillis 最长等待时间，0 表示不等待
+     * @return 读取的字节数，超时返回0
+     */
+    int read(byte[] buffer, int off, int len, int timeoutMillis) throws IOException;
+
+    /**
+     * 丢弃已接收但未读取的数据
+     */
+    void flushInput();
+
+    void close();
+}
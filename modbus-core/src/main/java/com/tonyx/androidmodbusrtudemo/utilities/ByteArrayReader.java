@@ -0,0 +1,94 @@
+package com.tonyx.androidmodbusrtudemo.utilities;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/*
+    Reads big-endian values from a byte array without allocating. One reader can be reused
+    for every response through setBuffer.
+ */
+public class ByteArrayReader extends ByteArrayInputStream {
+    public ByteArrayReader(byte[] buf) {
+        super(buf);
+    }
+
+    public ByteArrayReader(byte[] buf, int offset, int length) {
+        super(buf, offset, length);
+    }
+
+    /**
+     * 改为读取另一段数据，不分配新对象
+     */
+    public synchronized void setBuffer(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        this.pos = offset;
+        this.count = Math.min(offset + length, buf.length);
+        this.mark = offset;
+    }
+
+    public int readInt8() {
+        return super.read();
+    }
+
+    private void require(int length) throws IOException {
+        if (count - pos < length) {
+            throw new IOException();
+        }
+    }
+
+    public synchronized int readInt16() throws IOException {
+        require(2);
+        int result = ByteUtil.getUInt16(buf, pos);
+        pos += 2;
+        return result;
+    }
+
+    public synchronized int readInt32() throws IOException {
+        require(4);
+        int result = ByteUtil.getInt32(buf, pos);
+        pos += 4;
+        return result;
+    }
+
+    public synchronized long readInt64() throws IOException {
+        require(8);
+        long result = ByteUtil.getInt64(buf, pos);
+        pos += 8;
+        return result;
+    }
+
+    /**
+     * 读取 ByteUtil.putVarLong 写入的变长整数
+     */
+    public synchronized long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            int b = buf[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public float readFloat32() throws IOException {
+        return Float.intBitsToFloat(readInt32());
+    }
+
+    public double readFloat64() throws IOException {
+        return Double.longBitsToDouble(readInt64());
+    }
+
+    /**
+     * 读取 count 个寄存器（无符号16位）
+     */
+    public synchronized void readRegisters(int[] dst, int dstOff, int count) throws IOException {
+        require(count * 2);
+        for (int i = 0; i < count; i++) {
+            dst[dstOff + i] = ByteUtil.getUInt16(buf, pos);
+            pos += 2;
+        }
+    }
+}
@@ -18,18 +18,23 @@ public class ByteArrayWriter extends ByteArrayOutputStream {
     }
 
     public void writeInt16(int n) {
-        byte[] bytes = ByteUtil.fromInt16(n);
-        this.write(bytes, 0, bytes.length);
+        this.write(n >> 8);
+        this.write(n);
     }
 
     public void writeInt16Reversal(int n){
-        byte[] bytes=ByteUtil.fromInt16Reversal(n);
-        this.write(bytes,0,bytes.length);
+        this.write(n);
+        this.write(n >> 8);
     }
 
+    /**
+     * 与 ByteUtil.fromInt32 相同，低位字节在前
+     */
     public void writeInt32(int n) {
-        byte[] bytes = ByteUtil.fromInt32(n);
-        this.write(bytes, 0, bytes.length);
+        this.write(n);
+        this.write(n >> 8);
+        this.write(n >> 16);
+        this.write(n >> 24);
     }
 
     public void writeBytes(byte[] bs,int len){
@@ -0,0 +1,258 @@
+package com.tonyx.androidmodbusrtudemo.utilities;
+
+public class ByteUtil {
+    /**
+     * 多寄存器数值的字节顺序：大端序，高位寄存器在前
+     */
+    public static final int ORDER_ABCD = 0;
+    /**
+     * 字交换，低位寄存器在前
+     */
+    public static final int ORDER_CDAB = 1;
+    /**
+     * 寄存器内字节交换
+     */
+    public static final int ORDER_BADC = 2;
+    /**
+     * 小端序，字交换且字节交换
+     */
+    public static final int ORDER_DCBA = 3;
+
+    private static final int WORD_SWAP = 1;
+    private static final int BYTE_SWAP = 2;
+
+    public static byte[] toBytes(String str){
+        return str!=null ? str.getBytes() : null;
+    }
+
+    public static byte[] subBytes(byte[] input, int start, int length) {
+        if ((length > 0) && (input.length >= start + length)) {
+            byte[] result = new byte[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = input[i + start];
+            }
+            return result;
+        }
+        return new byte[0];
+    }
+
+    public static void fillBytes(byte[] dest, int pos, byte[] source, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[i + pos] = source[i + start];
+        }
+    }
+
+    public static String toHexString(byte[] input, String separator) {
+        if (input==null) return null;
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < input.length; i++) {
+            if (separator != null && sb.length() > 0) {
+                sb.append(separator);
+            }
+            String str = Integer.toHexString(input[i] & 0xff);
+            if (str.length() == 1) str = "0" + str;
+            sb.append(str);
+        }
+        return sb.toString();
+    }
+
+    public static String toHexString(byte[] input) {
+        return toHexString(input, " ");
+    }
+
+    /**
+     * 按大端序把字节数组转换为整数，超过4个字节时保留低32位
+     */
+    public static int toInt(byte[] input) {
+        int result = 0;
+        for (int i = 0; i < input.length; i++) {
+            result = (result << 8) | (input[i] & 0xFF);
+        }
+        return result;
+    }
+
+    public static byte[] fromInt32(int input){
+        byte[] result=new byte[4];
+        result[3]=(byte)(input >> 24 & 0xFF);
+        result[2]=(byte)(input >> 16 & 0xFF);
+        result[1]=(byte)(input >> 8 & 0xFF);
+        result[0]=(byte)(input & 0xFF);
+        return result;
+    }
+
+    public static byte[] fromInt16(int input){
+        byte[] result=new byte[2];
+        result[0]=(byte)(input >> 8 & 0xFF);
+        result[1]=(byte)(input & 0xFF);
+        return result;
+    }
+
+    public static byte[] fromInt16Reversal(int input){
+        byte[] result=new byte[2];
+        result[1]=(byte)(input>>8&0xFF);
+        result[0]=(byte)(input&0xFF);
+        return result;
+    }
+
+    /**
+     * 按大端序写入16位整数，不分配新数组
+     *
+     * @return 写入后的位置
+     */
+    public static int putInt16(byte[] dest, int pos, int input){
+        dest[pos]=(byte)(input >> 8 & 0xFF);
+        dest[pos+1]=(byte)(input & 0xFF);
+        return pos+2;
+    }
+
+    /**
+     * 按小端序写入16位整数（CRC），不分配新数组
+     *
+     * @return 写入后的位置
+     */
+    public static int putInt16Reversal(byte[] dest, int pos, int input){
+        dest[pos]=(byte)(input & 0xFF);
+        dest[pos+1]=(byte)(input >> 8 & 0xFF);
+        return pos+2;
+    }
+
+    /**
+     * 按大端序写入32位整数，不分配新数组
+     *
+     * @return 写入后的位置
+     */
+    public static int putInt32(byte[] dest, int pos, int input){
+        dest[pos]=(byte)(input >> 24 & 0xFF);
+        dest[pos+1]=(byte)(input >> 16 & 0xFF);
+        dest[pos+2]=(byte)(input >> 8 & 0xFF);
+        dest[pos+3]=(byte)(input & 0xFF);
+        return pos+4;
+    }
+
+    /**
+     * 写入变长整数，每字节7位，低位在前，最多10个字节
+     *
+     * @param input 按无符号处理，负数请先做 zigzag 编码
+     * @return 写入后的位置
+     */
+    public static int putVarLong(byte[] dest, int pos, long input){
+        while ((input & ~0x7FL) != 0) {
+            dest[pos++]=(byte)((input & 0x7F) | 0x80);
+            input >>>= 7;
+        }
+        dest[pos++]=(byte)input;
+        return pos;
+    }
+
+    /**
+     * 大端序无符号16位整数
+     */
+    public static int getUInt16(byte[] input, int pos){
+        return ((input[pos] & 0xFF) << 8) | (input[pos+1] & 0xFF);
+    }
+
+    /**
+     * 大端序有符号16位整数
+     */
+    public static short getInt16(byte[] input, int pos){
+        return (short)((input[pos] << 8) | (input[pos+1] & 0xFF));
+    }
+
+    /**
+     * 小端序无符号16位整数
+     */
+    public static int getUInt16Reversal(byte[] input, int pos){
+        return (input[pos] & 0xFF) | ((input[pos+1] & 0xFF) << 8);
+    }
+
+    /**
+     * 大端序32位整数，字节顺序 ABCD
+     */
+    public static int getInt32(byte[] input, int pos){
+        return (input[pos] << 24) | ((input[pos+1] & 0xFF) << 16) | ((input[pos+2] & 0xFF) << 8) | (input[pos+3] & 0xFF);
+    }
+
+    /**
+     * 小端序32位整数，字节顺序 DCBA
+     */
+    public static int getInt32Reversal(byte[] input, int pos){
+        return (input[pos] & 0xFF) | ((input[pos+1] & 0xFF) << 8) | ((input[pos+2] & 0xFF) << 16) | (input[pos+3] << 24);
+    }
+
+    /**
+     * 字交换的32位整数，字节顺序 CDAB，即低位寄存器在前
+     */
+    public static int getInt32WordSwap(byte[] input, int pos){
+        return (input[pos+2] << 24) | ((input[pos+3] & 0xFF) << 16) | ((input[pos] & 0xFF) << 8) | (input[pos+1] & 0xFF);
+    }
+
+    /**
+     * 大端序无符号32位整数
+     */
+    public static long getUInt32(byte[] input, int pos){
+        return getInt32(input, pos) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * 大端序64位整数
+     */
+    public static long getInt64(byte[] input, int pos){
+        return ((long) getInt32(input, pos) << 32) | (getInt32(input, pos+4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 两个寄存器组成的32位整数
+     *
+     * @param registers 寄存器值，每个元素为16位
+     * @param order     ORDER_ABCD 等
+     */
+    public static int getInt32(int[] registers, int pos, int order){
+        int value;
+        if ((order & WORD_SWAP) == 0) {
+            value = (registers[pos] << 16) | (registers[pos+1] & 0xFFFF);
+        } else {
+            value = (registers[pos+1] << 16) | (registers[pos] & 0xFFFF);
+        }
+        if ((order & BYTE_SWAP) != 0) {
+            value = ((value >>> 8) & 0x00FF00FF) | ((value & 0x00FF00FF) << 8);
+        }
+        return value;
+    }
+
+    /**
+     * 四个寄存器组成的64位整数，ORDER_CDAB 时四个寄存器的顺序整体颠倒
+     */
+    public static long getInt64(int[] registers, int pos, int order){
+        long value;
+        if ((order & WORD_SWAP) == 0) {
+            value = ((long) registers[pos] << 48) | ((long) (registers[pos+1] & 0xFFFF) << 32)
+                    | ((long) (registers[pos+2] & 0xFFFF) << 16) | (registers[pos+3] & 0xFFFF);
+        } else {
+            value = ((long) registers[pos+3] << 48) | ((long) (registers[pos+2] & 0xFFFF) << 32)
+                    | ((long) (registers[pos+1] & 0xFFFF) << 16) | (registers[pos] & 0xFFFF);
+        }
+        if ((order & BYTE_SWAP) != 0) {
+            value = ((value >>> 8) & 0x00FF00FF00FF00FFL) | ((value & 0x00FF00FF00FF00FFL) << 8);
+        }
+        return value;
+    }
+
+    /**
+     * 两个寄存器组成的 IEEE 754 单精度浮点数
+     */
+    public static float getFloat32(int[] registers, int pos, int order){
+        return Float.intBitsToFloat(getInt32(registers, pos, order));
+    }
+
+    /**
+     * 四个寄存器组成的 IEEE 754 双精度浮点数
+     */
+    public static double getFloat64(int[] registers, int pos, int order){
+        return Double.longBitsToDouble(getInt64(registers, pos, order));
+    }
+
+    public static boolean getBit(byte input, int pos){
+        return ((input >> (7-pos)) & 0x1)>1;
+    }
+}
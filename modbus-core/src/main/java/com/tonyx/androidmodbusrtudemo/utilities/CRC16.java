@@ -2,6 +2,30 @@ package com.tonyx.androidmodbusrtudemo.utilities;
 
 
 public class CRC16 {
+    /**
+     * 增量计算的初始值
+     */
+    public static final int INITIAL = 0xffff;
+
+    // slicing-by-8 查找表，crc_tab_slice[0] 即按字节计算的反射多项式 0xA001 表
+    private static final int[][] crc_tab_slice = new int[8][256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xA001 : crc >>> 1;
+            }
+            crc_tab_slice[0][i] = crc;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int i = 0; i < 256; i++) {
+                int prev = crc_tab_slice[k - 1][i];
+                crc_tab_slice[k][i] = (prev >>> 8) ^ crc_tab_slice[0][prev & 0xff];
+            }
+        }
+    }
+
     private static final byte[] crc16_tab_h = { (byte) 0x00, (byte) 0xC1, (byte) 0x81, (byte) 0x40,
             (byte) 0x01, (byte) 0xC0, (byte) 0x80, (byte) 0x41, (byte) 0x01, (byte) 0xC0, (byte) 0x80,
             (byte) 0x41, (byte) 0x00, (byte) 0xC1, (byte) 0x81, (byte) 0x40, (byte) 0x01, (byte) 0xC0,
@@ -129,4 +153,45 @@ public class CRC16 {
         int result=((ucCRCHi & 0x00ff) << 8) | (ucCRCLo & 0x00ff) & 0xffff;
         return result;
     }
+
+    /**
+     * 增量计算CRC16校验，每次处理8个字节（slicing-by-8），可在数据到达时逐段调用
+     *
+     * @param crc
+     *            之前的校验值，首次调用使用 {@link #INITIAL}
+     * @param data
+     *            需要计算的数组
+     * @param offset
+     *            起始位置
+     * @param len
+     *            长度
+     * @return CRC16校验值，与 compute 的结果一致
+     */
+    public static int update(int crc, byte[] data, int offset, int len) {
+        final int[] t0 = crc_tab_slice[0], t1 = crc_tab_slice[1], t2 = crc_tab_slice[2], t3 = crc_tab_slice[3];
+        final int[] t4 = crc_tab_slice[4], t5 = crc_tab_slice[5], t6 = crc_tab_slice[6], t7 = crc_tab_slice[7];
+        crc &= 0xffff;
+        int i = offset;
+        int end = offset + len;
+        while (end - i >= 8) {
+            int x0 = (crc ^ data[i]) & 0xff;
+            int x1 = ((crc >>> 8) ^ data[i + 1]) & 0xff;
+            crc = t7[x0] ^ t6[x1]
+                    ^ t5[data[i + 2] & 0xff] ^ t4[data[i + 3] & 0xff]
+                    ^ t3[data[i + 4] & 0xff] ^ t2[data[i + 5] & 0xff]
+                    ^ t1[data[i + 6] & 0xff] ^ t0[data[i + 7] & 0xff];
+            i += 8;
+        }
+        while (i < end) {
+            crc = (crc >>> 8) ^ t0[(crc ^ data[i++]) & 0xff];
+        }
+        return crc;
+    }
+
+    /**
+     * 增量计算一个字节的CRC16校验
+     */
+    public static int update(int crc, int b) {
+        return ((crc & 0xffff) >>> 8) ^ crc_tab_slice[0][(crc ^ b) & 0xff];
+    }
 }
@@ -0,0 +1,147 @@
+package com.tonyx.androidmodbusrtudemo.utilities;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/*
+    长期运行的接收线程：独占一个输入流，把收到的数据放入环形缓冲区，调用方按截止时间等待数据。
+    每个端口只需要一个线程，不再为每次通讯创建线程池。
+    接收线程的异常保存下来，之后的每次读取都会抛出；close() 关闭输入流使阻塞的 read() 返回。
+ */
+public class StreamReceiver implements Closeable {
+    private final InputStream input;
+    private final byte[] ring;
+    private int head;
+    private int count;
+    private IOException lastError;
+    private volatile boolean closed;
+    private final Thread thread;
+
+    public StreamReceiver(InputStream input) {
+        this(input, 4096, "StreamReceiver");
+    }
+
+    /**
+     * @param input    输入流，之后只应由本对象读取，close() 时关闭
+     * @param capacity 缓冲区大小，溢出时丢弃最早的数据
+     * @param name     线程名称
+     */
+    public StreamReceiver(InputStream input, int capacity, String name) {
+        this.input = input;
+        this.ring = new byte[capacity];
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive();
+            }
+        }, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void receive() {
+        byte[] chunk = new byte[256];
+        try {
+            while (!closed) {
+                int len = input.read(chunk, 0, chunk.length);
+                if (len < 0) {
+                    throw new IOException("End of stream");
+                }
+                if (len > 0) {
+                    put(chunk, len);
+                }
+            }
+        } catch (IOException ex) {
+            fail(ex);
+        } catch (RuntimeException ex) {
+            fail(new IOException("Receiver failed", ex));
+        }
+    }
+
+    private synchronized void fail(IOException ex) {
+        if (!closed) {
+            lastError = ex;
+        }
+        closed = true;
+        notifyAll();
+    }
+
+    private synchronized void put(byte[] chunk, int len) {
+        for (int i = 0; i < len; i++) {
+            ring[(head + count) % ring.length] = chunk[i];
+            if (count < ring.length) {
+                count++;
+            } else {
+                head = (head + 1) % ring.length;
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * 读取已接收的数据，缓冲区为空时最多等待 timeoutNanos
+     *
+     * @return 读取的字节数，超时返回0
+     * @throws InterruptedIOException 等待时被中断，中断标志保持不变
+     */
+    public synchronized int read(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (count == 0) {
+            if (lastError != null) {
+                throw lastError;
+            }
+            if (closed) {
+                throw new IOException("Receiver closed");
+            }
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0) {
+                return 0;
+            }
+            try {
+                wait(wait / 1000000L, (int) (wait % 1000000L));
+            } catch (InterruptedException e) {
+                // 恢复中断标志，由调用方结束事务
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for data");
+            }
+        }
+        int n = Math.min(len, count);
+        for (int i = 0; i < n; i++) {
+            b[off + i] = ring[head];
+            head = (head + 1) % ring.length;
+        }
+        count -= n;
+        return n;
+    }
+
+    public synchronized int available() {
+        return count;
+    }
+
+    /**
+     * 丢弃已接收但未读取的数据
+     */
+    public synchronized void clear() {
+        head = 0;
+        count = 0;
+    }
+
+    /**
+     * 停止接收线程并关闭输入流。中断不能使阻塞在 FileInputStream.read() 的线程返回，关闭流可以
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            input.close();
+        } catch (IOException ex) {
+            // 已关闭
+        }
+        thread.interrupt();
+    }
+}
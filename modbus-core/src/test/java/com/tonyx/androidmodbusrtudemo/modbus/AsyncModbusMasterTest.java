@@ -0,0 +1,227 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusTransport;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link AsyncModbusMaster}.
+ */
+public class AsyncModbusMasterTest {
+    /**
+     * 每个事务等待测试放行，回复 FC3 寄存器值 0
+     */
+    private static class GatedTransport implements ModbusTransport {
+        final Semaphore gate = new Semaphore(0);
+        final AtomicInteger transactions = new AtomicInteger();
+
+        @Override
+        public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) throws ModbusError {
+            transactions.incrementAndGet();
+            try {
+                if (!gate.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new ModbusError(ModbusErrorType.ModbusTimeoutError, "gate");
+                }
+            } catch (InterruptedException e) {
+                throw new ModbusError(ModbusErrorType.ModbusTimeoutError, "interrupted");
+            }
+            Arrays.fill(response, PDU_OFFSET, PDU_OFFSET + expected_length, (byte) 0);
+            response[PDU_OFFSET] = request[PDU_OFFSET];
+            response[PDU_OFFSET + 1] = (byte) (expected_length - 2);
+            return expected_length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static ModbusError cause(ModbusFuture<?> future) throws InterruptedException {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("failure expected");
+            return null;
+        } catch (ExecutionException e) {
+            return (ModbusError) e.getCause();
+        } catch (java.util.concurrent.TimeoutException e) {
+            throw new AssertionError("not completed");
+        }
+    }
+
+    private static void awaitTransactions(GatedTransport transport, int count) throws InterruptedException {
+        while (transport.transactions.get() < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void manySubmitters_allComplete() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        for (int i = 0; i < 100; i++) {
+            slave.registers[i] = i * 3;
+        }
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        final AsyncModbusMaster async = new AsyncModbusMaster(32, master);
+        final int submitters = 16;
+        final int perSubmitter = 100;
+        final int total = submitters * perSubmitter;
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(total);
+        for (int s = 0; s < submitters; s++) {
+            final int submitter = s;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < perSubmitter; n++) {
+                        final int address = (submitter * perSubmitter + n) % 90;
+                        async.readHoldingRegisters(1, address, 10).addCallback(new ModbusCallback<int[]>() {
+                            @Override
+                            public void onSuccess(int[] result) {
+                                if (result[0] != address * 3 || result[9] != (address + 9) * 3) {
+                                    failures.incrementAndGet();
+                                }
+                                done.countDown();
+                            }
+
+                            @Override
+                            public void onFailure(Exception error) {
+                                failures.incrementAndGet();
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        async.close();
+        master.close();
+        assertEquals(0, failures.get());
+        assertEquals(total, slave.getRequestCount());
+    }
+
+    @Test
+    public void queuedRequest_expiresWithoutBeingSent() throws Exception {
+        GatedTransport transport = new GatedTransport();
+        AsyncModbusMaster async = new AsyncModbusMaster(4, new ModbusMaster(transport));
+        ModbusFuture<int[]> first = async.readHoldingRegisters(1, 0, 2, 2000);
+        ModbusFuture<int[]> second = async.readHoldingRegisters(1, 0, 2, 50);
+        // 工作线程仍被第一个请求占用时，排队的请求即到期失败
+        assertEquals(ModbusErrorType.ModbusTimeoutError, cause(second).getType());
+        assertFalse(first.isDone());
+        assertEquals(0, async.getQueueSize());
+        transport.gate.release(2);
+
+        assertArrayEquals(new int[]{0, 0}, first.get(1, TimeUnit.SECONDS));
+        assertEquals(1, transport.transactions.get());
+        async.close();
+    }
+
+    @Test
+    public void chunkedRead_stopsAtDeadline() throws Exception {
+        GatedTransport transport = new GatedTransport();
+        ModbusMaster master = new ModbusMaster(transport);
+        master.setTimeout(5000);
+        AsyncModbusMaster async = new AsyncModbusMaster(4, master);
+        // 250 个寄存器分两个事务读取，只放行第一个
+        transport.gate.release(1);
+        ModbusFuture<int[]> read = async.readHoldingRegisters(1, 0, 250, 200);
+        assertEquals(ModbusErrorType.ModbusTimeoutError, cause(read).getType());
+        assertEquals(2, transport.transactions.get());
+        // 共用 master 的超时设置不变
+        assertEquals(5000, master.getTimeout());
+        async.close();
+    }
+
+    @Test
+    public void cancelledRequest_isNotSent() throws Exception {
+        GatedTransport transport = new GatedTransport();
+        AsyncModbusMaster async = new AsyncModbusMaster(4, new ModbusMaster(transport));
+        ModbusFuture<int[]> first = async.readHoldingRegisters(1, 0, 2, 2000);
+        awaitTransactions(transport, 1);
+        ModbusFuture<int[]> second = async.readHoldingRegisters(1, 0, 2, 2000);
+        assertTrue(second.cancel(false));
+        assertTrue(second.isCancelled());
+        assertEquals(0, async.getQueueSize());
+        transport.gate.release(2);
+
+        first.get(1, TimeUnit.SECONDS);
+        try {
+            second.get();
+            fail("cancellation expected");
+        } catch (CancellationException expected) {
+        }
+        Thread.sleep(50);
+        assertEquals(1, transport.transactions.get());
+        async.close();
+    }
+
+    @Test
+    public void fullQueue_appliesBackpressure() throws Exception {
+        GatedTransport transport = new GatedTransport();
+        AsyncModbusMaster async = new AsyncModbusMaster(1, new ModbusMaster(transport));
+        ModbusFuture<int[]> running = async.readHoldingRegisters(1, 0, 1, 2000);
+        awaitTransactions(transport, 1);
+        ModbusFuture<int[]> queued = async.readHoldingRegisters(1, 0, 1, 2000);
+        long start = System.nanoTime();
+        ModbusFuture<int[]> rejected = async.readHoldingRegisters(1, 0, 1, 50);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(45));
+        assertEquals(ModbusErrorType.ModbusTimeoutError, cause(rejected).getType());
+
+        transport.gate.release(2);
+        running.get(1, TimeUnit.SECONDS);
+        queued.get(1, TimeUnit.SECONDS);
+        async.close();
+    }
+
+    @Test
+    public void requestQueuedLate_expiresAtItsDeadline() throws Exception {
+        GatedTransport transport = new GatedTransport();
+        final AsyncModbusMaster async = new AsyncModbusMaster(1, new ModbusMaster(transport));
+        ModbusFuture<int[]> running = async.readHoldingRegisters(1, 0, 1, 5000);
+        awaitTransactions(transport, 1);
+        ModbusFuture<int[]> queued = async.readHoldingRegisters(1, 0, 1, 5000);
+        final long[] failedAfter = new long[1];
+        final CountDownLatch failed = new CountDownLatch(1);
+        // 队列满，提交线程等待 300 ms 后才放入队列
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final long submitted = System.nanoTime();
+                async.readHoldingRegisters(1, 0, 1, 400).addCallback(new ModbusCallback<int[]>() {
+                    @Override
+                    public void onSuccess(int[] result) {
+                    }
+
+                    @Override
+                    public void onFailure(Exception error) {
+                        failedAfter[0] = (System.nanoTime() - submitted) / 1000000L;
+                        failed.countDown();
+                    }
+                });
+            }
+        }).start();
+        Thread.sleep(300);
+        assertTrue(queued.cancel(false));
+        assertTrue(failed.await(2, TimeUnit.SECONDS));
+        // 期限从提交开始计算，不再从放入队列开始另计 400 ms
+        assertTrue("failed after " + failedAfter[0] + " ms", failedAfter[0] >= 390 && failedAfter[0] < 600);
+
+        transport.gate.release(1);
+        running.get(1, TimeUnit.SECONDS);
+        assertEquals(1, transport.transactions.get());
+        async.close();
+    }
+}
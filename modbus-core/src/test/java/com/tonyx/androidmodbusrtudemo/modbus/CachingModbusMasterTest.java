@@ -0,0 +1,175 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusTransport;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CachingModbusMaster}.
+ */
+public class CachingModbusMasterTest {
+    private static CachingModbusMaster newMaster(SimulatedSlave slave) {
+        return new CachingModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+    }
+
+    @Test
+    public void repeatedReads_hitCacheUntilTtl() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        slave.registers[3] = 33;
+        CachingModbusMaster master = newMaster(slave);
+        master.setDefaultTtl(100);
+
+        assertEquals(33, master.readHoldingRegister(1, 3));
+        slave.registers[3] = 34;
+        assertEquals(33, master.readHoldingRegister(1, 3));
+        assertEquals(33, master.readHoldingRegisters(1, 3, 1)[0]);
+        assertEquals(1, slave.getRequestCount());
+        assertEquals(2, master.getHitCount());
+        assertEquals(1, master.getMissCount());
+
+        Thread.sleep(150);
+        assertEquals(34, master.readHoldingRegister(1, 3));
+        assertEquals(2, slave.getRequestCount());
+        master.close();
+    }
+
+    @Test
+    public void invalidRange_isRejectedBeforeCaching() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        CachingModbusMaster master = newMaster(slave);
+        // {slave, 起始地址, 数量}
+        int[][] invalid = {
+                {1, 0, -1},
+                {1, 0, 0},
+                {1, -1, 1},
+                {256, 0, 1},
+        };
+        for (int[] range : invalid) {
+            try {
+                master.readHoldingRegisters(range[0], range[1], range[2], new int[4], 0);
+                fail("invalid range " + Arrays.toString(range) + " accepted");
+            } catch (ModbusError e) {
+                assertEquals(ModbusErrorType.ModbusInvalidArgumentError, e.getType());
+            }
+        }
+        assertEquals(0, master.getMissCount());
+        assertEquals(0, slave.getRequestCount());
+        master.close();
+    }
+
+    @Test
+    public void writes_invalidateOverlappingRanges() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        CachingModbusMaster master = newMaster(slave);
+        int[] low = new int[10];
+        int[] high = new int[10];
+        boolean[] coils = new boolean[8];
+        master.readHoldingRegisters(1, 0, 10, low, 0);
+        master.readHoldingRegisters(1, 20, 10, high, 0);
+        master.readCoils(1, 0, 8, coils, 0);
+        assertEquals(3, slave.getRequestCount());
+
+        master.writeSingleRegister(1, 5, 55);
+        master.writeSingleCoil(1, 7, true);
+        assertEquals(2, master.getInvalidationCount());
+        master.readHoldingRegisters(1, 0, 10, low, 0);
+        master.readHoldingRegisters(1, 20, 10, high, 0);
+        master.readCoils(1, 0, 8, coils, 0);
+        // 2 次写入，2 次重新读取，寄存器 20..29 命中
+        assertEquals(7, slave.getRequestCount());
+        assertEquals(55, low[5]);
+        assertTrue(coils[7]);
+
+        master.writeMultipleRegisters(1, 28, new int[]{1, 2, 3});
+        master.readHoldingRegisters(1, 20, 10, high, 0);
+        assertEquals(1, high[8]);
+        master.setBits(1, 21, 0x10);
+        master.readHoldingRegisters(1, 20, 10, high, 0);
+        assertEquals(0x10, high[1]);
+        master.close();
+    }
+
+    @Test
+    public void rangeTtl_andLruEviction() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        CachingModbusMaster master = newMaster(slave);
+        master.setTtl(1, ModbusFunction.READ_HOLDING_REGISTERS, 100, 199, 0);
+        master.readHoldingRegisters(1, 150, 4);
+        master.readHoldingRegisters(1, 150, 4);
+        assertEquals(2, slave.getRequestCount());
+
+        master.setMaxEntries(2);
+        master.readInputRegisters(1, 0, 1);
+        master.readInputRegisters(1, 1, 1);
+        master.readInputRegisters(1, 0, 1);
+        master.readInputRegisters(1, 2, 1);
+        assertEquals(1, master.getEvictionCount());
+        long before = slave.getRequestCount();
+        master.readInputRegisters(1, 0, 1);
+        assertEquals(before, slave.getRequestCount());
+        master.readInputRegisters(1, 1, 1);
+        assertEquals(before + 1, slave.getRequestCount());
+        master.close();
+    }
+
+    @Test
+    public void concurrentIdenticalReads_shareOneTransaction() throws Exception {
+        final AtomicInteger transactions = new AtomicInteger();
+        ModbusTransport slow = new ModbusTransport() {
+            @Override
+            public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) throws ModbusError {
+                transactions.incrementAndGet();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                response[PDU_OFFSET] = request[PDU_OFFSET];
+                response[PDU_OFFSET + 1] = (byte) (expected_length - 2);
+                for (int i = 2; i < expected_length; i++) {
+                    response[PDU_OFFSET + i] = 7;
+                }
+                return expected_length;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final CachingModbusMaster master = new CachingModbusMaster(slow);
+        final int readers = 8;
+        final CountDownLatch done = new CountDownLatch(readers);
+        final AtomicInteger wrong = new AtomicInteger();
+        for (int i = 0; i < readers; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int[] values = master.readHoldingRegisters(1, 0, 4);
+                        if (values[3] != 0x0707) {
+                            wrong.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        wrong.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(0, wrong.get());
+        assertEquals(1, transactions.get());
+        assertEquals(1, master.getMissCount());
+        assertEquals(readers - 1, master.getSharedCount() + master.getHitCount());
+    }
+}
@@ -0,0 +1,142 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Local unit tests for {@link ChangeDetector}.
+ */
+public class ChangeDetectorTest {
+    private static final long MS = 1000000L;
+
+    private static class Recorder implements ChangeDetector.Listener {
+        int count;
+        int lastTag = -1;
+        int lastValue;
+        int lastPrevious;
+
+        @Override
+        public void onChange(int tag, int value, int previous) {
+            count++;
+            lastTag = tag;
+            lastValue = value;
+            lastPrevious = previous;
+        }
+    }
+
+    @Test
+    public void onlyChangesAreReported() {
+        ChangeDetector detector = new ChangeDetector(3);
+        Recorder recorder = new Recorder();
+        int[] values = {1, 2, 3};
+        assertEquals(3, detector.update(values, 0, recorder));
+        assertEquals(0, detector.update(values, MS, recorder));
+
+        values[1] = 20;
+        assertEquals(1, detector.update(values, 2 * MS, recorder));
+        assertEquals(1, recorder.lastTag);
+        assertEquals(20, recorder.lastValue);
+        assertEquals(2, recorder.lastPrevious);
+
+        detector.reset();
+        assertEquals(3, detector.update(values, 3 * MS, recorder));
+    }
+
+    @Test
+    public void deadband_comparesWithLastReportedValue() {
+        ChangeDetector detector = new ChangeDetector(1);
+        detector.setDeadband(5);
+        Recorder recorder = new Recorder();
+        int[] values = {100};
+        detector.update(values, 0, recorder);
+
+        // 缓慢漂移：每次 +3，累计超过死区时报告
+        values[0] = 103;
+        assertEquals(0, detector.update(values, MS, recorder));
+        values[0] = 106;
+        assertEquals(1, detector.update(values, 2 * MS, recorder));
+        values[0] = 101;
+        assertEquals(0, detector.update(values, 3 * MS, recorder));
+        values[0] = 100;
+        assertEquals(1, detector.update(values, 4 * MS, recorder));
+        assertEquals(106, recorder.lastPrevious);
+    }
+
+    @Test
+    public void intervals_limitAndRefreshReports() {
+        ChangeDetector detector = new ChangeDetector(2);
+        detector.setIntervals(0, 100, 0);
+        detector.setIntervals(1, 0, 1000);
+        Recorder recorder = new Recorder();
+        int[] values = {0, 0};
+        detector.update(values, 0, recorder);
+
+        // 最短间隔内的变化暂缓，间隔到后报告最新值
+        values[0] = 1;
+        assertEquals(0, detector.update(values, 50 * MS, recorder));
+        values[0] = 2;
+        assertEquals(0, detector.update(values, 90 * MS, recorder));
+        assertEquals(1, detector.update(values, 100 * MS, recorder));
+        assertEquals(2, recorder.lastValue);
+        assertEquals(0, recorder.lastPrevious);
+
+        // 未变化的值到最长间隔时重复报告
+        assertEquals(0, detector.update(values, 999 * MS, recorder));
+        assertEquals(1, detector.update(values, 1000 * MS, recorder));
+        assertEquals(1, recorder.lastTag);
+    }
+
+    @Test
+    public void reports_scaleWithChangeRate() {
+        int tags = 1000;
+        int scans = 200;
+        ChangeDetector detector = new ChangeDetector(tags);
+        Recorder recorder = new Recorder();
+        int[] values = new int[tags];
+        Random random = new Random(1);
+        detector.update(values, 0, recorder);
+        int changes = 0;
+        int reports = 0;
+        for (int scan = 1; scan <= scans; scan++) {
+            // 每次扫描约 2% 的标签变化
+            for (int i = 0; i < tags / 50; i++) {
+                int tag = random.nextInt(tags);
+                values[tag]++;
+            }
+            reports += detector.update(values, scan * MS, recorder);
+            changes += tags / 50;
+        }
+        assertTrue(reports <= changes);
+        assertTrue(reports * 100 < tags * scans * 3);
+    }
+
+    @Test
+    public void update_allocatesNothing() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        ChangeDetector detector = new ChangeDetector(500);
+        detector.setDeadband(1);
+        Recorder recorder = new Recorder();
+        int[] values = new int[500];
+        for (int i = 0; i < 10000; i++) {
+            values[i % 500] += 2;
+            detector.update(values, i * MS, recorder);
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10000; i++) {
+            values[i % 500] += 2;
+            detector.update(values, i * MS, recorder);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertEquals("bytes allocated per update", 0, allocated / 10000);
+    }
+}
@@ -0,0 +1,271 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.simulator.ModbusSlaveSimulator;
+import com.tonyx.androidmodbusrtudemo.modbus.simulator.PtyLink;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusTransport;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.SerialChannel;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNoException;
+
+/**
+ * Local unit tests for {@link ModbusBusManager}.
+ */
+public class ModbusBusManagerTest {
+    /**
+     * 每个事务占用总线固定时间，模拟串口传输
+     */
+    private static class SlowBusTransport implements ModbusTransport {
+        private final int busMillis;
+
+        SlowBusTransport(int busMillis) {
+            this.busMillis = busMillis;
+        }
+
+        @Override
+        public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) {
+            try {
+                Thread.sleep(busMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response[PDU_OFFSET] = request[PDU_OFFSET];
+            response[PDU_OFFSET + 1] = (byte) (expected_length - 2);
+            for (int i = 0; i < (expected_length - 2) / 2; i++) {
+                ByteUtil.putInt16(response, PDU_OFFSET + 2 + 2 * i, slave);
+            }
+            return expected_length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 事务占用固定时间且不响应中断，如同阻塞在串口读取
+     */
+    private static class BlockingTransport implements ModbusTransport {
+        volatile boolean busy;
+        volatile boolean closedWhileBusy;
+
+        @Override
+        public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) throws ModbusError {
+            busy = true;
+            long end = System.nanoTime() + 200000000L;
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+            busy = false;
+            throw new ModbusError(ModbusErrorType.ModbusTimeoutError, "no response");
+        }
+
+        @Override
+        public void close() {
+            closedWhileBusy |= busy;
+        }
+    }
+
+    private static class IdleChannel implements SerialChannel {
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public int getBaudrate() {
+            return 9600;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len, int timeoutMillis) {
+            return 0;
+        }
+
+        @Override
+        public void flushInput() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void requests_areRoutedBySlave() throws Exception {
+        SimulatedSlave first = new SimulatedSlave(1);
+        SimulatedSlave second = new SimulatedSlave(2);
+        first.registers[0] = 100;
+        second.registers[0] = 200;
+        ModbusBusManager manager = new ModbusBusManager();
+        manager.addBus("ttyS1", new ModbusMaster(first.getMasterInput(), first.getMasterOutput(), 115200));
+        manager.addBus("ttyS2", new ModbusMaster(second.getMasterInput(), second.getMasterOutput(), 115200));
+        manager.route(1, "ttyS1");
+        manager.route(2, "ttyS2");
+
+        assertEquals(100, manager.readHoldingRegisters(1, 0, 1, 1000).get()[0]);
+        assertEquals(200, manager.readHoldingRegisters(2, 0, 1, 1000).get()[0]);
+        manager.writeSingleRegister(2, 5, 55, 1000).get();
+        assertEquals(55, second.registers[5]);
+        assertEquals(0, first.registers[5]);
+        assertSame(manager.getBus("ttyS2"), manager.getBus(2));
+
+        try {
+            manager.readHoldingRegisters(3, 0, 1, 1000).get();
+            fail("unrouted slave accepted");
+        } catch (ExecutionException e) {
+            assertEquals(ModbusErrorType.ModbusInvalidArgumentError, ((ModbusError) e.getCause()).getType());
+        }
+        try {
+            manager.addBus("ttyS1", new ModbusMaster(new SlowBusTransport(1)));
+            fail("duplicated bus accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        manager.close();
+        assertNull(manager.getBus(1));
+    }
+
+    @Test
+    public void buses_runInParallel() throws Exception {
+        int ports = 4;
+        // 每条总线的第一个事务等待其它总线的事务同时开始，串行执行时等待超时
+        final CountDownLatch together = new CountDownLatch(ports);
+        ModbusBusManager manager = new ModbusBusManager();
+        for (int i = 0; i < ports; i++) {
+            manager.addBus("port" + i, new ModbusMaster(new SlowBusTransport(1) {
+                @Override
+                public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) {
+                    together.countDown();
+                    try {
+                        together.await(2, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.transact(slave, request, pdu_length, response, expected_length, timeout);
+                }
+            }));
+        }
+        for (int slave = 1; slave <= 8; slave++) {
+            manager.route(slave, "port" + (slave % ports));
+        }
+        List<ModbusFuture<int[]>> futures = new ArrayList<ModbusFuture<int[]>>();
+        for (int i = 0; i < 40; i++) {
+            futures.add(manager.readHoldingRegisters(1 + i % 8, 0, 4, 10000));
+        }
+        assertTrue(together.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(1 + i % 8, futures.get(i).get()[3]);
+        }
+        manager.close();
+    }
+
+    @Test
+    public void twoPorts_overPtys() throws Exception {
+        PtyLink link = null;
+        try {
+            link = PtyLink.open(2);
+        } catch (IOException e) {
+            assumeNoException(e);
+        }
+        ModbusBusManager manager = new ModbusBusManager();
+        List<ModbusSlaveSimulator> simulators = new ArrayList<ModbusSlaveSimulator>();
+        List<OutputStream> outputs = new ArrayList<OutputStream>();
+        for (int i = 0; i < 2; i++) {
+            int[] registers = new int[256];
+            for (int r = 0; r < registers.length; r++) {
+                registers[r] = (i + 1) * 1000 + r;
+            }
+            boolean[] bits = new boolean[256];
+            String device = link.getDevicePath(i);
+            simulators.add(new ModbusSlaveSimulator(i + 1, registers, registers, bits, bits,
+                    new FileInputStream(device), new FileOutputStream(device)).start());
+            // 主站一端经 tty 层读写，由接收线程读取
+            OutputStream output = new FileOutputStream(link.getPortPath(i));
+            outputs.add(output);
+            manager.addBus("pty" + i, new ModbusMaster(new FileInputStream(link.getPortPath(i)), output, 115200));
+            manager.route(i + 1, "pty" + i);
+        }
+        List<ModbusFuture<int[]>> futures = new ArrayList<ModbusFuture<int[]>>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(manager.readHoldingRegisters(1 + i % 2, i, 10, 5000));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            int[] values = futures.get(i).get();
+            assertEquals((1 + i % 2) * 1000 + i, values[0]);
+            assertEquals((1 + i % 2) * 1000 + i + 9, values[9]);
+        }
+        manager.close();
+        for (OutputStream output : outputs) {
+            output.close();
+        }
+        // 关闭伪终端后仿真器阻塞的读取返回
+        link.close();
+        for (ModbusSlaveSimulator simulator : simulators) {
+            simulator.close();
+        }
+    }
+
+    @Test
+    public void openAll_collectsFailures() throws Exception {
+        ModbusBusManager manager = new ModbusBusManager(new SerialChannel.Factory() {
+            @Override
+            public SerialChannel open(String path, int baudrate) throws IOException {
+                if (path.startsWith("/dev/bad")) {
+                    throw new IOException("No such device " + path);
+                }
+                return new IdleChannel();
+            }
+        });
+        Map<String, Exception> errors = new HashMap<String, Exception>();
+        List<ModbusBusManager.Bus> opened = manager.openAll(new String[]{"/dev/ttyS1", "/dev/bad0", "/dev/ttyS1"}, 9600, errors);
+        assertEquals(1, opened.size());
+        assertEquals("/dev/ttyS1", opened.get(0).getName());
+        assertEquals(2, errors.size());
+        assertTrue(errors.get("/dev/bad0") instanceof IOException);
+        // 重复的总线
+        assertTrue(errors.get("/dev/ttyS1") instanceof IllegalArgumentException);
+        manager.close();
+    }
+
+    @Test
+    public void close_waitsForRunningTransaction() throws Exception {
+        BlockingTransport transport = new BlockingTransport();
+        ModbusBusManager manager = new ModbusBusManager();
+        manager.addBus("ttyS1", new ModbusMaster(transport));
+        manager.route(1, "ttyS1");
+        ModbusFuture<int[]> read = manager.readHoldingRegisters(1, 0, 1, 1000);
+        while (!transport.busy) {
+            Thread.sleep(1);
+        }
+        manager.close();
+        assertFalse(transport.closedWhileBusy);
+        assertTrue(read.isDone());
+        assertNull(manager.getBus(1));
+    }
+}
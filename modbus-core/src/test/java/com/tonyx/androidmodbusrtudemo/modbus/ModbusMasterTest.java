@@ -0,0 +1,306 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusTransport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Local unit tests for {@link ModbusMaster}, running on the development machine (host).
+ */
+public class ModbusMasterTest {
+    private static ModbusMaster newMaster() {
+        return new ModbusMaster(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), 9600);
+    }
+
+    @Test
+    public void encodeRequest_isCorrect() throws Exception {
+        ModbusMaster master = newMaster();
+        int length = master.encodeRequest(1, ModbusFunction.READ_HOLDING_REGISTERS, 0, 6, 0);
+        assertEquals(5, length);
+        byte[] pdu = new byte[length];
+        System.arraycopy(master.getRequestFrame(), ModbusTransport.PDU_OFFSET, pdu, 0, length);
+        assertArrayEquals(new byte[]{0x03, 0x00, 0x00, 0x00, 0x06}, pdu);
+        master.close();
+    }
+
+    @Test
+    public void encodeRequest_allocatesNothing() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        ModbusMaster master = newMaster();
+        long thread = Thread.currentThread().getId();
+        int iterations = 100000;
+        for (int i = 0; i < iterations; i++) {
+            master.encodeRequest(1, ModbusFunction.READ_HOLDING_REGISTERS, i & 0xffff, 10, 0);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            master.encodeRequest(1, ModbusFunction.READ_HOLDING_REGISTERS, i & 0xffff, 10, 0);
+            master.encodeRequest(1, ModbusFunction.WRITE_SINGLE_REGISTER, i & 0xffff, 1, i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        master.close();
+        assertEquals("bytes allocated per request encode", 0, allocated / iterations);
+    }
+
+    @Test
+    public void encodeRequest_appliesPerFunctionLimits() throws Exception {
+        ModbusMaster master = newMaster();
+        assertEquals(5, master.encodeRequest(1, ModbusFunction.READ_COILS, 0, 2000, 0));
+        assertEquals(5, master.encodeRequest(1, ModbusFunction.READ_HOLDING_REGISTERS, 0, 125, 0));
+        int[][] invalid = {
+                {ModbusFunction.READ_COILS, 2001},
+                {ModbusFunction.READ_DISCRETE_INPUTS, 0},
+                {ModbusFunction.READ_INPUT_REGISTERS, 126},
+                {ModbusFunction.WRITE_SINGLE_REGISTER, 2},
+        };
+        for (int[] request : invalid) {
+            try {
+                master.encodeRequest(1, request[0], 0, request[1], 0);
+                fail("invalid quantity " + request[1] + " accepted for function " + request[0]);
+            } catch (ModbusError e) {
+                assertEquals(ModbusErrorType.ModbusInvalidArgumentError, e.getType());
+            }
+        }
+        // 批量读取不发送事务也要检查范围：{slave, 起始地址, 数量}
+        int[][] invalidBulk = {
+                {1, 0, 0},
+                {256, 0, 1},
+                {1, -1, 1},
+                {1, 0xffff, 2},
+        };
+        for (int[] range : invalidBulk) {
+            try {
+                master.readHoldingRegisters(range[0], range[1], range[2], new int[4], 0);
+                fail("invalid range " + Arrays.toString(range) + " accepted for function " + ModbusFunction.READ_HOLDING_REGISTERS);
+            } catch (ModbusError e) {
+                assertEquals(ModbusErrorType.ModbusInvalidArgumentError, e.getType());
+            }
+        }
+        try {
+            master.readCoils(1, 0, 0, new long[1]);
+            fail("zero quantity accepted for function " + ModbusFunction.READ_COILS);
+        } catch (ModbusError e) {
+            assertEquals(ModbusErrorType.ModbusInvalidArgumentError, e.getType());
+        }
+        master.close();
+    }
+
+    @Test
+    public void largeReads_areChunkedIntoFullFrames() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        for (int i = 0; i < 5000; i++) {
+            slave.coils[i] = Integer.bitCount(i * 7) % 2 == 0;
+            slave.registers[i] = i ^ 0x5a5a;
+        }
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+
+        // 2000 + 2000 + 500
+        boolean[] coils = new boolean[4500];
+        master.readCoils(1, 3, coils.length, coils, 0);
+        assertEquals(3, slave.getRequestCount());
+        for (int i = 0; i < coils.length; i++) {
+            assertEquals(slave.coils[3 + i], coils[i]);
+        }
+
+        long[] bitmap = new long[(4500 + 63) / 64];
+        master.readCoils(1, 3, 4500, bitmap);
+        assertEquals(6, slave.getRequestCount());
+        for (int i = 0; i < 4500; i++) {
+            assertEquals(coils[i], (bitmap[i >> 6] & (1L << (i & 63))) != 0);
+        }
+        assertEquals(0, bitmap[bitmap.length - 1] >>> (4500 & 63));
+
+        // 125 + 125 + 50
+        int[] registers = master.readHoldingRegisters(1, 1, 300);
+        assertEquals(9, slave.getRequestCount());
+        for (int i = 0; i < registers.length; i++) {
+            assertEquals(slave.registers[1 + i], registers[i]);
+        }
+        master.close();
+    }
+
+    @Test
+    public void corruptedResponse_isRetried() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        slave.registers[10] = 1234;
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        master.setRetries(2);
+        slave.corruptResponses(1);
+
+        assertEquals(1234, master.readHoldingRegister(1, 10));
+        assertEquals(1, master.getCrcErrorCount());
+        assertEquals(1, master.getRetryCount());
+        assertEquals(2, slave.getRequestCount());
+        master.close();
+    }
+
+    @Test
+    public void corruptedResponse_failsWithoutRetries() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        slave.corruptResponses(1);
+        try {
+            master.readHoldingRegisters(1, 0, 10);
+            fail("CRC error expected");
+        } catch (ModbusError e) {
+            assertEquals(ModbusErrorType.ModbusCrcError, e.getType());
+        }
+        // the next transaction starts on a clean frame boundary
+        slave.registers[0] = 42;
+        assertEquals(42, master.readHoldingRegister(1, 0));
+        master.close();
+    }
+
+    @Test
+    public void writeMultiple_roundTrip() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        int[] registers = new int[123];
+        boolean[] coils = new boolean[19];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = 0xff00 + i;
+        }
+        for (int i = 0; i < coils.length; i++) {
+            coils[i] = i % 3 != 1;
+        }
+        master.writeMultipleRegisters(1, 200, registers);
+        master.writeMultipleCoils(1, 30, coils, 1, 17);
+
+        assertArrayEquals(registers, master.readHoldingRegisters(1, 200, registers.length));
+        for (int i = 0; i < 17; i++) {
+            assertEquals(coils[1 + i], master.readCoil(1, 30 + i));
+        }
+        assertFalse(master.readCoil(1, 47));
+        master.close();
+    }
+
+    @Test
+    public void setAndClearBits_halveTransactions() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        slave.registers[5] = 0x00f0;
+        int cycles = 50;
+
+        // 读-改-写：每周期两个事务
+        for (int i = 0; i < cycles; i++) {
+            int value = master.readHoldingRegister(1, 5);
+            master.writeSingleRegister(1, 5, (i & 1) == 0 ? value | 0x0101 : value & ~0x0101);
+        }
+        long readModifyWrite = slave.getRequestCount();
+        assertEquals(0x00f0, slave.registers[5]);
+
+        for (int i = 0; i < cycles; i++) {
+            if ((i & 1) == 0) {
+                master.setBits(1, 5, 0x0101);
+                assertEquals(0x01f1, slave.registers[5]);
+            } else {
+                master.clearBits(1, 5, 0x0101);
+                assertEquals(0x00f0, slave.registers[5]);
+            }
+        }
+        long masked = slave.getRequestCount() - readModifyWrite;
+        assertEquals(2 * cycles, readModifyWrite);
+        assertEquals(readModifyWrite / 2, masked);
+
+        master.maskWriteRegister(1, 5, 0xff0f, 0x0020);
+        assertEquals(0x0020, slave.registers[5]);
+        master.close();
+    }
+
+    @Test
+    public void readWriteMultiple_halvesTransactions() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        for (int i = 0; i < 8; i++) {
+            slave.registers[100 + i] = 500 + i;
+        }
+        int[] setpoints = {11, 12, 13};
+
+        master.writeMultipleRegisters(1, 200, setpoints);
+        int[] separate = master.readHoldingRegisters(1, 100, 8);
+        assertEquals(2, slave.getRequestCount());
+
+        setpoints[0] = 21;
+        int[] exchanged = master.readWriteMultipleRegisters(1, 100, 8, 200, setpoints);
+        assertEquals(3, slave.getRequestCount());
+        assertArrayEquals(separate, exchanged);
+        assertEquals(21, slave.registers[200]);
+
+        // 写入先于读取执行
+        int[] readBack = new int[4];
+        master.readWriteMultipleRegisters(1, 199, 3, readBack, 1, 200, new int[]{7, 8, 9, 10}, 1, 2);
+        assertArrayEquals(new int[]{0, 0, 8, 9}, readBack);
+        master.close();
+    }
+
+    @Test
+    public void burstyResponse_isReceivedWhole() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        for (int i = 0; i < 125; i++) {
+            slave.registers[i] = i * 3;
+        }
+        // 每 62 字节间隔 20 ms，远超 115200 波特率下 3.5 个字符的静默时间
+        slave.setChunking(62, 20000);
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        int[] values = master.readHoldingRegisters(1, 0, 125);
+        for (int i = 0; i < 125; i++) {
+            assertEquals(i * 3, values[i]);
+        }
+        master.writeMultipleRegisters(1, 200, new int[]{1, 2, 3});
+        assertEquals(3, slave.registers[202]);
+        assertEquals(0, master.getInvalidResponseCount());
+        master.close();
+        slave.close();
+    }
+
+    @Test
+    public void responseFromOtherSlave_isRejected() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        slave.replyAs(2);
+        try {
+            master.readHoldingRegisters(1, 0, 10);
+            fail("invalid response expected");
+        } catch (ModbusError e) {
+            assertEquals(ModbusErrorType.ModbusInvalidResponseError, e.getType());
+        }
+        assertEquals(1, master.getInvalidResponseCount());
+        master.close();
+    }
+
+    @Test
+    public void close_throwsTransportFailure() throws Exception {
+        ModbusMaster master = new ModbusMaster(new ModbusTransport() {
+            @Override
+            public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) {
+                return 0;
+            }
+
+            @Override
+            public void close() throws IOException {
+                throw new IOException("close failed");
+            }
+        });
+        try {
+            master.close();
+            fail("failure expected");
+        } catch (IOException e) {
+            assertEquals("close failed", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Local unit tests for {@link ModbusMetrics} and {@link LatencyHistogram}.
+ */
+public class ModbusMetricsTest {
+    @Test
+    public void histogram_percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000000L, histogram.getMaxNanos());
+        assertEquals(5000500L, histogram.getMeanNanos());
+        long p50 = histogram.getPercentileNanos(0.5);
+        long p99 = histogram.getPercentileNanos(0.99);
+        assertTrue(p50 >= 5000000L && p50 <= 5000000L * 17 / 16);
+        assertTrue(p99 >= 9900000L && p99 <= 10000000L);
+        histogram.reset();
+        assertEquals(0, histogram.getPercentileNanos(0.99));
+    }
+
+    @Test
+    public void master_recordsPhasesAndErrors() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        ModbusMetrics metrics = new ModbusMetrics("ttyS1");
+        master.setMetrics(metrics);
+        master.setRetries(1);
+        master.setTimeout(50);
+
+        for (int i = 0; i < 20; i++) {
+            master.readHoldingRegisters(1, 0, 10);
+        }
+        master.writeSingleRegister(1, 3, 33);
+        slave.corruptResponses(1);
+        master.readHoldingRegisters(1, 0, 10);
+        try {
+            master.readHoldingRegisters(2, 0, 10);
+            fail("timeout expected");
+        } catch (ModbusError e) {
+            assertEquals(ModbusErrorType.ModbusTimeoutError, e.getType());
+        }
+
+        assertEquals(24, metrics.getTransactionCount());
+        assertEquals(22, metrics.getLatency().getCount());
+        // 重试原样重发，不再构造请求
+        assertEquals(21, metrics.getPhaseLatency(ModbusMetrics.PHASE_ENCODE).getCount());
+        for (int phase = ModbusMetrics.PHASE_WRITE; phase < ModbusMetrics.PHASES; phase++) {
+            assertEquals(22, metrics.getPhaseLatency(phase).getCount());
+        }
+        assertEquals(1, metrics.getCrcErrorCount());
+        assertEquals(1, metrics.getTimeoutCount());
+        assertEquals(1, metrics.getSlaveTimeoutCount(2));
+        assertNull(metrics.getSlaveLatency(2));
+        assertEquals(22, metrics.getSlaveLatency(1).getCount());
+        assertEquals(21, metrics.getFunctionLatency(ModbusFunction.READ_HOLDING_REGISTERS).getCount());
+        assertEquals(1, metrics.getFunctionLatency(ModbusFunction.WRITE_SINGLE_REGISTER).getCount());
+        // 超时也占用总线
+        assertTrue(metrics.getBusyNanos() >= 50000000L);
+
+        final double[] exported = new double[2];
+        metrics.export(new MetricsExporter() {
+            @Override
+            public void export(ModbusMetrics m, long intervalNanos) {
+                exported[0] = m.getBusUtilization();
+                exported[1] = intervalNanos;
+            }
+        });
+        assertTrue(exported[0] > 0 && exported[0] <= 1);
+        assertTrue(exported[1] > 0);
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        metrics.export(new PrintMetricsExporter(new PrintStream(text, true, "UTF-8")));
+        String report = text.toString("UTF-8");
+        assertTrue(report.startsWith("ttyS1: 24 transactions"));
+        assertTrue(report.contains("slave 2: no response, 1 errors, 1 timeouts"));
+        master.close();
+    }
+
+    @Test
+    public void brokenPipe_isRecorded() throws Exception {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        ModbusMaster master = new ModbusMaster(new ByteArrayInputStream(new byte[0]), broken, 115200);
+        ModbusMetrics metrics = new ModbusMetrics("ttyS1");
+        master.setMetrics(metrics);
+        try {
+            master.readHoldingRegisters(1, 0, 10);
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+        assertEquals(1, metrics.getTransactionCount());
+        assertEquals(1, metrics.getIoErrorCount());
+        assertEquals(0, metrics.getTimeoutCount());
+        assertEquals(1, metrics.getSlaveErrorCount(1));
+        assertEquals(0, metrics.getLatency().getCount());
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        metrics.export(new PrintMetricsExporter(new PrintStream(text, true, "UTF-8")));
+        assertTrue(text.toString("UTF-8").contains("1 I/O errors"));
+        master.close();
+    }
+
+    @Test
+    public void recording_allocatesNothing() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        ModbusMetrics metrics = new ModbusMetrics("bus");
+        ModbusError timeout = new ModbusError(ModbusErrorType.ModbusTimeoutError, "no answer");
+        long thread = Thread.currentThread().getId();
+        int iterations = 100000;
+        for (int pass = 0; pass < 2; pass++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < iterations; i++) {
+                long t = i * 1000L;
+                metrics.onTransaction(1 + (i & 7), ModbusFunction.READ_HOLDING_REGISTERS, t, t + 100, t + 200, t + 3000, t + 5000, t + 5100);
+                metrics.onError(9, ModbusFunction.READ_HOLDING_REGISTERS, timeout, t, t + 100000);
+            }
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            if (pass == 1) {
+                assertEquals("bytes allocated per recorded transaction", 0, allocated / iterations);
+            }
+        }
+        assertEquals(4 * iterations, metrics.getTransactionCount());
+    }
+}
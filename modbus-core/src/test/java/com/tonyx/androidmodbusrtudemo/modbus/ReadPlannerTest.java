@@ -0,0 +1,145 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ReadPlanner} and {@link ReadPlan}.
+ */
+public class ReadPlannerTest {
+    /**
+     * 4 台电表的典型点表：电压、电流、功率、电能、状态线圈、告警输入，每台 46 个标签
+     */
+    private static ReadPlanner meterTags() {
+        ReadPlanner planner = new ReadPlanner();
+        for (int slave = 1; slave <= 4; slave++) {
+            for (int address = 0; address < 12; address++) {
+                planner.addTag(slave, ModbusFunction.READ_INPUT_REGISTERS, address);
+            }
+            for (int address = 16; address < 24; address += 2) {
+                planner.addTag(slave, ModbusFunction.READ_INPUT_REGISTERS, address);
+            }
+            for (int address = 100; address < 108; address++) {
+                planner.addTag(slave, ModbusFunction.READ_INPUT_REGISTERS, address);
+            }
+            for (int address = 0; address < 16; address += 3) {
+                planner.addTag(slave, ModbusFunction.READ_HOLDING_REGISTERS, 40 + address);
+            }
+            for (int address = 0; address < 8; address++) {
+                planner.addTag(slave, ModbusFunction.READ_COILS, address);
+            }
+            for (int address = 0; address < 64; address += 8) {
+                planner.addTag(slave, ModbusFunction.READ_DISCRETE_INPUTS, address);
+            }
+        }
+        return planner;
+    }
+
+    @Test
+    public void plan_mergesWithinGapAndLimit() {
+        ReadPlanner planner = new ReadPlanner();
+        planner.setMaxGap(8, 0);
+        planner.addTag(1, ModbusFunction.READ_HOLDING_REGISTERS, 5);
+        planner.addTag(1, ModbusFunction.READ_HOLDING_REGISTERS, 0);
+        planner.addTag(1, ModbusFunction.READ_HOLDING_REGISTERS, 1);
+        planner.addTag(1, ModbusFunction.READ_HOLDING_REGISTERS, 20);
+        planner.addTag(2, ModbusFunction.READ_HOLDING_REGISTERS, 21);
+        planner.addTag(1, ModbusFunction.READ_INPUT_REGISTERS, 6);
+        planner.addTag(1, ModbusFunction.READ_COILS, 0);
+        planner.addTag(1, ModbusFunction.READ_COILS, 2);
+        for (int address = 300; address < 500; address++) {
+            planner.addTag(3, ModbusFunction.READ_HOLDING_REGISTERS, address);
+        }
+        ReadPlan plan = planner.plan();
+
+        // {1:0..5} {1:20} {2:21} {1 FC4:6} {1 FC1:0} {1 FC1:2} {3:300..424} {3:425..499}
+        assertEquals(8, plan.getTransactionCount());
+        assertEquals(planner.getTagCount(), plan.getTagCount());
+        int blocks = 0;
+        for (int b = 0; b < plan.getTransactionCount(); b++) {
+            assertTrue(plan.getQuantity(b) <= ModbusFunction.maxReadQuantity(plan.getFunction(b)));
+            if (plan.getSlave(b) == 1 && plan.getFunction(b) == ModbusFunction.READ_HOLDING_REGISTERS && plan.getStartAddress(b) == 0) {
+                assertEquals(6, plan.getQuantity(b));
+                blocks++;
+            }
+            if (plan.getSlave(b) == 3 && plan.getStartAddress(b) == 425) {
+                assertEquals(75, plan.getQuantity(b));
+                blocks++;
+            }
+        }
+        assertEquals(2, blocks);
+    }
+
+    @Test
+    public void realisticTagMap_cutsTransactionsPerCycle() {
+        ReadPlanner planner = meterTags();
+        ReadPlan plan = planner.plan();
+        // 每台电表：输入寄存器 0..23、100..107，保持寄存器，线圈，离散输入
+        assertEquals(4 * 5, plan.getTransactionCount());
+        assertTrue(plan.getTransactionCount() * 8 <= planner.getTagCount());
+
+        planner.setMaxGap(0, 0);
+        assertTrue(planner.plan().getTransactionCount() > plan.getTransactionCount());
+    }
+
+    @Test
+    public void execute_fansOutValues() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        for (int i = 0; i < 200; i++) {
+            slave.registers[i] = 1000 + i;
+            slave.coils[i] = i % 3 == 0;
+        }
+        ReadPlanner planner = new ReadPlanner();
+        int[] addresses = {7, 3, 150, 4, 3, 60};
+        int[] registerTags = new int[addresses.length];
+        int[] coilTags = new int[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            registerTags[i] = planner.addTag(1, ModbusFunction.READ_HOLDING_REGISTERS, addresses[i]);
+            coilTags[i] = planner.addTag(1, ModbusFunction.READ_COILS, addresses[i]);
+        }
+        ReadPlan plan = planner.plan();
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+
+        int[] values = new int[planner.getTagCount()];
+        plan.execute(master, values);
+        for (int i = 0; i < addresses.length; i++) {
+            assertEquals(1000 + addresses[i], values[registerTags[i]]);
+            assertEquals(addresses[i] % 3 == 0 ? 1 : 0, values[coilTags[i]]);
+        }
+        assertEquals(plan.getTransactionCount(), slave.getRequestCount());
+        assertEquals(1, plan.getTagSlave(coilTags[2]));
+        assertEquals(ModbusFunction.READ_COILS, plan.getTagFunction(coilTags[2]));
+        assertEquals(150, plan.getTagAddress(coilTags[2]));
+        master.close();
+    }
+
+    @Test
+    public void plannedCycle_sendsFewerTransactions() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ReadPlanner planner = new ReadPlanner();
+        for (int address = 0; address < 120; address += 2) {
+            planner.addTag(1, ModbusFunction.READ_HOLDING_REGISTERS, address);
+        }
+        ReadPlan plan = planner.plan();
+        ModbusMaster master = new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+        int[] values = new int[planner.getTagCount()];
+        int cycles = 20;
+
+        for (int c = 0; c < cycles; c++) {
+            for (int address = 0; address < 120; address += 2) {
+                values[address / 2] = master.readHoldingRegister(1, address);
+            }
+        }
+        long tagByTag = slave.getRequestCount();
+        for (int c = 0; c < cycles; c++) {
+            plan.execute(master, values);
+        }
+        long planned = slave.getRequestCount() - tagByTag;
+        master.close();
+
+        assertEquals(cycles * planner.getTagCount(), tagByTag);
+        assertEquals(cycles * plan.getTransactionCount(), planned);
+        assertTrue(planned * 10 < tagByTag);
+    }
+}
@@ -0,0 +1,157 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusTransport;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ScanScheduler}.
+ */
+public class ScanSchedulerTest {
+    /**
+     * 每个事务占用固定的总线时间，寄存器值等于地址；从站 9 返回异常
+     */
+    private static class TimedTransport implements ModbusTransport {
+        private final long busNanos;
+
+        TimedTransport(int busMicros) {
+            this.busNanos = busMicros * 1000L;
+        }
+
+        @Override
+        public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) throws ModbusError {
+            long end = System.nanoTime() + busNanos;
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+            if (slave == 9) {
+                throw new ModbusError(ModbusErrorType.ModbusTimeoutError, "no answer");
+            }
+            int address = ByteUtil.getUInt16(request, PDU_OFFSET + 1);
+            response[PDU_OFFSET] = request[PDU_OFFSET];
+            response[PDU_OFFSET + 1] = (byte) (expected_length - 2);
+            for (int i = 0; i < (expected_length - 2) / 2; i++) {
+                ByteUtil.putInt16(response, PDU_OFFSET + 2 + 2 * i, address + i);
+            }
+            return expected_length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class CountingListener implements ScanListener {
+        final AtomicInteger scans = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicInteger overruns = new AtomicInteger();
+
+        @Override
+        public void onScan(ScanGroup group) {
+            scans.incrementAndGet();
+        }
+
+        @Override
+        public void onError(ScanGroup group, Exception error) {
+            errors.incrementAndGet();
+        }
+
+        @Override
+        public void onOverrun(ScanGroup group, long lateNanos) {
+            overruns.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param blocks 生成的读取块数，每块一个寄存器，块之间间隔超过允许的空隙
+     */
+    private static ReadPlan plan(int slave, int blocks) {
+        ReadPlanner planner = new ReadPlanner();
+        for (int b = 0; b < blocks; b++) {
+            planner.addTag(slave, ModbusFunction.READ_HOLDING_REGISTERS, b * 100);
+        }
+        return planner.plan();
+    }
+
+    @Test
+    public void fastGroup_isNotStarvedBySlowScan() throws Exception {
+        ScanScheduler scheduler = new ScanScheduler(new ModbusMaster(new TimedTransport(2000)));
+        CountingListener fast = new CountingListener();
+        CountingListener slow = new CountingListener();
+        // 快速组 20 ms，1 个事务；慢速组 200 ms，40 个事务共 80 ms
+        ScanGroup fastGroup = scheduler.addGroup(plan(1, 1), 20, 0, fast);
+        ScanGroup slowGroup = scheduler.addGroup(plan(2, 40), 200, 0, slow);
+        scheduler.start();
+        Thread.sleep(1000);
+        double utilization = scheduler.getBusUtilization();
+        scheduler.stop();
+
+        assertTrue(utilization > 0 && utilization <= 1);
+        assertTrue(fastGroup.getScanCount() >= 40);
+        assertTrue(slowGroup.getScanCount() >= 4);
+        assertEquals(0, fast.overruns.get());
+        assertEquals(0, slow.overruns.get());
+        // 快速组最多等待慢速组的一个事务，总能在本周期内完成
+        assertTrue(fastGroup.getMaxCycleNanos() < 20000000L);
+        assertEquals(300, slowGroup.getValues()[3]);
+    }
+
+    @Test
+    public void priority_winsOverDeadline() throws Exception {
+        ScanScheduler scheduler = new ScanScheduler(new ModbusMaster(new TimedTransport(1000)));
+        CountingListener high = new CountingListener();
+        CountingListener low = new CountingListener();
+        // 总线过载：高优先级组占 50 ms 周期中的 15 ms，低优先级组需要 30 ms 周期中的 25 ms
+        ScanGroup highGroup = scheduler.addGroup(plan(1, 15), 50, 1, high);
+        ScanGroup lowGroup = scheduler.addGroup(plan(2, 25), 30, 0, low);
+        scheduler.start();
+        Thread.sleep(600);
+        scheduler.stop();
+
+        assertEquals(0, highGroup.getOverrunCount());
+        assertTrue(lowGroup.getOverrunCount() > 0);
+        assertEquals(lowGroup.getOverrunCount(), low.overruns.get());
+        assertTrue(lowGroup.getScanCount() > 0);
+    }
+
+    @Test
+    public void overrun_isReportedAndCyclesAreSkipped() throws Exception {
+        ScanScheduler scheduler = new ScanScheduler(new ModbusMaster(new TimedTransport(2000)));
+        CountingListener listener = new CountingListener();
+        // 10 个事务共 20 ms，周期只有 10 ms
+        ScanGroup group = scheduler.addGroup(plan(1, 10), 10, 0, listener);
+        scheduler.start();
+        Thread.sleep(500);
+        scheduler.stop();
+
+        assertTrue(listener.overruns.get() > 0);
+        assertEquals(group.getOverrunCount(), listener.overruns.get());
+        // 不补读跳过的周期：扫描次数受总线时间限制
+        assertTrue(group.getScanCount() <= 500 / 20 + 1);
+        assertTrue(group.getScanCount() >= 500 / 20 / 2);
+    }
+
+    @Test
+    public void failedBlock_isReportedAndScanContinues() throws Exception {
+        ScanScheduler scheduler = new ScanScheduler(new ModbusMaster(new TimedTransport(100)));
+        CountingListener listener = new CountingListener();
+        ReadPlanner planner = new ReadPlanner();
+        int good = planner.addTag(1, ModbusFunction.READ_HOLDING_REGISTERS, 42);
+        planner.addTag(9, ModbusFunction.READ_HOLDING_REGISTERS, 0);
+        ScanGroup group = scheduler.addGroup(planner.plan(), 20, 0, listener);
+        scheduler.start();
+        Thread.sleep(200);
+        scheduler.stop();
+
+        assertTrue(listener.scans.get() >= 5);
+        assertEquals(listener.scans.get(), listener.errors.get(), 1);
+        assertEquals(42, group.getValues()[good]);
+    }
+}
@@ -0,0 +1,25 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.simulator.ModbusSlaveSimulator;
+
+import java.io.IOException;
+
+/**
+ * Modbus RTU slave answering a {@link ModbusMaster} over piped streams, with fault injection.
+ * Holding and input registers share one array, coils and discrete inputs another.
+ */
+class SimulatedSlave extends ModbusSlaveSimulator {
+    final int[] registers;
+    final boolean[] coils;
+
+    SimulatedSlave(int slave) throws IOException {
+        this(slave, new int[0x10000], new boolean[0x10000]);
+    }
+
+    private SimulatedSlave(int slave, int[] registers, boolean[] coils) throws IOException {
+        super(slave, registers, registers, coils, coils);
+        this.registers = registers;
+        this.coils = coils;
+        start();
+    }
+}
@@ -0,0 +1,162 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusTransport;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SlaveHealth}.
+ */
+public class SlaveHealthTest {
+    /**
+     * 从站 1 在 latency 毫秒后响应；offline 时从站 2 不响应，等满超时时间
+     */
+    private static class FlakyTransport implements ModbusTransport {
+        final AtomicInteger requests = new AtomicInteger();
+        volatile int latency = 5;
+        volatile boolean offline = true;
+
+        @Override
+        public int transact(int slave, byte[] request, int pdu_length, byte[] response, int expected_length, int timeout) throws ModbusError {
+            requests.incrementAndGet();
+            if (slave == 2 && offline) {
+                sleep(timeout);
+                throw new ModbusError(ModbusErrorType.ModbusTimeoutError, String.format("Timeout of %d ms.", timeout));
+            }
+            sleep(latency);
+            response[PDU_OFFSET] = request[PDU_OFFSET];
+            response[PDU_OFFSET + 1] = (byte) (expected_length - 2);
+            for (int i = 0; i < (expected_length - 2) / 2; i++) {
+                ByteUtil.putInt16(response, PDU_OFFSET + 2 + 2 * i, slave);
+            }
+            return expected_length;
+        }
+
+        private static void sleep(int millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static boolean read(ModbusMaster master, int slave) throws Exception {
+        try {
+            master.readHoldingRegisters(slave, 0, 4);
+            return true;
+        } catch (ModbusError e) {
+            assertEquals(ModbusErrorType.ModbusTimeoutError, e.getType());
+            return false;
+        }
+    }
+
+    @Test
+    public void timeout_adaptsToResponseTime() throws Exception {
+        FlakyTransport transport = new FlakyTransport();
+        ModbusMaster master = new ModbusMaster(transport);
+        SlaveHealth health = new SlaveHealth(0);
+        master.setHealth(health);
+        master.setTimeout(1000);
+        assertEquals(1000, health.timeout(1, 8, 13, 1000));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(read(master, 1));
+        }
+        long mean = health.getMeanNanos(1);
+        assertTrue(mean >= 4000000L && mean < 50000000L);
+        assertTrue(health.getP99Nanos(1) >= mean);
+        int adaptive = health.timeout(1, 8, 13, 1000);
+        assertTrue(adaptive < 200);
+        // 不超过 ModbusMaster 的超时时间
+        assertEquals(10, health.timeout(1, 8, 13, 10));
+    }
+
+    @Test
+    public void offlineSlave_backsOffAndRecovers() throws Exception {
+        FlakyTransport transport = new FlakyTransport();
+        ModbusMaster master = new ModbusMaster(transport);
+        SlaveHealth health = new SlaveHealth(0);
+        health.setBackoff(3, 100, 400);
+        master.setHealth(health);
+        master.setTimeout(50);
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(read(master, 2));
+        }
+        assertFalse(health.isOnline(2));
+        assertEquals(3, transport.requests.get());
+        // 退避期内不发送
+        assertFalse(read(master, 2));
+        assertEquals(3, transport.requests.get());
+        assertEquals(1, health.getSkippedCount());
+        // 其它从站不受影响
+        assertTrue(read(master, 1));
+
+        // 退避期满后发送一次探测，失败后退避加倍
+        Thread.sleep(120);
+        assertFalse(read(master, 2));
+        assertEquals(5, transport.requests.get());
+        Thread.sleep(120);
+        assertFalse(read(master, 2));
+        assertEquals(5, transport.requests.get());
+
+        transport.offline = false;
+        Thread.sleep(100);
+        assertTrue(read(master, 2));
+        assertTrue(health.isOnline(2));
+        assertEquals(4, health.getTimeoutCount(2));
+    }
+
+    private static void scanCycles(ModbusMaster master, ReadPlan plan, int cycles) {
+        int[] values = new int[plan.getTagCount()];
+        for (int c = 0; c < cycles; c++) {
+            for (int b = 0; b < plan.getTransactionCount(); b++) {
+                try {
+                    plan.execute(master, b, values);
+                } catch (Exception e) {
+                    // 离线从站的块失败，继续下一个块
+                }
+            }
+        }
+    }
+
+    @Test
+    public void scanCycles_skipOfflineSlave() throws Exception {
+        ReadPlanner planner = new ReadPlanner();
+        for (int slave = 1; slave <= 2; slave++) {
+            planner.addTag(slave, ModbusFunction.READ_HOLDING_REGISTERS, 0);
+            planner.addTag(slave, ModbusFunction.READ_HOLDING_REGISTERS, 100);
+        }
+        ReadPlan plan = planner.plan();
+        FlakyTransport transport = new FlakyTransport();
+        transport.latency = 1;
+
+        ModbusMaster plain = new ModbusMaster(transport);
+        plain.setTimeout(50);
+        scanCycles(plain, plan, 10);
+        // 每个周期从站 1、2 各两个块
+        assertEquals(40, transport.requests.get());
+
+        transport.requests.set(0);
+        ModbusMaster tracked = new ModbusMaster(transport);
+        tracked.setTimeout(50);
+        SlaveHealth health = new SlaveHealth(0);
+        tracked.setHealth(health);
+        scanCycles(tracked, plan, 10);
+        // 连续超时后从站 2 进入退避，之后的周期只读从站 1
+        assertTrue(transport.requests.get() < 30);
+        assertFalse(health.isOnline(2));
+        assertTrue(health.getSkippedCount() > 0);
+    }
+}
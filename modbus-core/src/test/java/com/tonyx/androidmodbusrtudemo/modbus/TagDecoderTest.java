@@ -0,0 +1,124 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Local unit tests for {@link TagDecoder}, running on the development machine (host).
+ */
+public class TagDecoderTest {
+    @Test
+    public void decode_typesScaleAndOrder() {
+        int[] block = new int[20];
+        block[0] = 0xFF38;                                  // -200
+        block[1] = 0x1027;                                  // 10000，字节交换
+        int counter = 0xF0000001;
+        block[2] = counter & 0xFFFF;                        // CDAB
+        block[3] = counter >>> 16;
+        int bits = Float.floatToIntBits(23.75f);
+        block[4] = bits >>> 16;
+        block[5] = bits & 0xFFFF;
+        long energy = 0x0123456789ABCDEFL;
+        for (int i = 0; i < 4; i++) {
+            block[6 + i] = (int) (energy >>> (48 - 16 * i)) & 0xFFFF;
+        }
+        long pi = Double.doubleToLongBits(Math.PI);
+        for (int i = 0; i < 4; i++) {
+            block[10 + i] = (int) (pi >>> (16 * i)) & 0xFFFF;   // 低位寄存器在前
+        }
+        block[14] = ('S' << 8) | 'N';
+        block[15] = ('1' << 8) | '2';
+
+        TagDecoder decoder = new TagDecoder();
+        int temperature = decoder.addTag(TagDecoder.INT16, 0, ByteUtil.ORDER_ABCD, 0.1, -40);
+        int speed = decoder.addTag(TagDecoder.UINT16, 1, ByteUtil.ORDER_BADC);
+        int total = decoder.addTag(TagDecoder.UINT32, 2, ByteUtil.ORDER_CDAB);
+        int flow = decoder.addTag(TagDecoder.FLOAT32, 4, ByteUtil.ORDER_ABCD, 2, 0);
+        int meter = decoder.addTag(TagDecoder.INT64, 6, ByteUtil.ORDER_ABCD);
+        int ratio = decoder.addTag(TagDecoder.FLOAT64, 10, ByteUtil.ORDER_CDAB);
+        int serial = decoder.addString(14, 3, ByteUtil.ORDER_ABCD);
+        assertEquals(17, decoder.getBlockLength());
+
+        double[] values = new double[decoder.getTagCount()];
+        long[] raw = new long[decoder.getTagCount()];
+        decoder.decode(block, 0, values, raw);
+        assertEquals(-60.0, values[temperature], 1e-9);
+        assertEquals(-200, raw[temperature]);
+        assertEquals(10000, raw[speed]);
+        assertEquals(0xF0000001L, raw[total]);
+        assertEquals(0xF0000001L, values[total], 0);
+        assertEquals(47.5, values[flow], 0);
+        assertEquals(bits & 0xFFFFFFFFL, raw[flow]);
+        assertEquals(energy, raw[meter]);
+        assertEquals(Math.PI, values[ratio], 0);
+        assertTrue(Double.isNaN(values[serial]));
+        assertEquals("SN12", decoder.decodeString(serial, block, 0));
+    }
+
+    @Test
+    public void decode_offsetAndByteSwappedString() {
+        int[] image = new int[8];
+        image[5] = ('B' << 8) | 'A';
+        image[6] = ('D' << 8) | 'C';
+        TagDecoder decoder = new TagDecoder();
+        int name = decoder.addString(0, 2, ByteUtil.ORDER_BADC);
+        char[] chars = new char[4];
+        assertEquals(4, decoder.decodeString(name, image, 5, chars, 0));
+        assertEquals("ABCD", new String(chars));
+        try {
+            decoder.decode(image, 7, null, new long[1]);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            decoder.addTag(TagDecoder.STRING, 0, ByteUtil.ORDER_ABCD);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void decode_thousandTagsAllocatesNothing() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        TagDecoder decoder = new TagDecoder();
+        int register = 0;
+        for (int i = 0; i < 1000; i++) {
+            int type = i % (TagDecoder.FLOAT64 + 1);
+            decoder.addTag(type, register, i & 3, 0.5, 1);
+            register += TagDecoder.registerCount(type);
+        }
+        int[] block = new int[register];
+        Random random = new Random(1);
+        for (int i = 0; i < block.length; i++) {
+            block[i] = random.nextInt(0x10000);
+        }
+        double[] values = new double[1000];
+        long[] raw = new long[1000];
+        long thread = Thread.currentThread().getId();
+        int iterations = 2000;
+        for (int pass = 0; pass < 2; pass++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < iterations; i++) {
+                decoder.decode(block, 0, values, raw);
+            }
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            if (pass == 1) {
+                assertEquals("bytes allocated per 1000-tag decode", 0, allocated / iterations);
+            }
+        }
+        // 第 2 个标签为 INT32，位于寄存器 2、3，字节顺序 BADC
+        assertEquals(ByteUtil.getInt32(block, 2, ByteUtil.ORDER_BADC), raw[2]);
+        assertEquals(raw[2] * 0.5 + 1, values[2], 0);
+    }
+}
@@ -0,0 +1,225 @@
+package com.tonyx.androidmodbusrtudemo.modbus;
+
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link WriteBatcher}.
+ */
+public class WriteBatcherTest {
+    private static ModbusMaster newMaster(SimulatedSlave slave) {
+        return new ModbusMaster(slave.getMasterInput(), slave.getMasterOutput(), 115200);
+    }
+
+    @Test
+    public void contiguousWrites_areMerged() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = newMaster(slave);
+        WriteBatcher batcher = new WriteBatcher(master);
+        batcher.setLimits(1000, 10000);
+        for (int address = 109; address >= 100; address--) {
+            batcher.writeRegister(1, address, address * 2);
+        }
+        batcher.writeRegister(1, 105, 7);
+        batcher.writeRegister(1, 300, 3);
+        batcher.writeCoil(1, 4, true);
+        batcher.writeCoil(1, 5, false);
+        batcher.writeCoil(1, 6, true);
+        assertEquals(0, slave.getRequestCount());
+        batcher.flush();
+
+        // FC16 100..109, FC6 300, FC15 4..6
+        assertEquals(3, slave.getRequestCount());
+        assertEquals(3, batcher.getTransactionCount());
+        assertEquals(14, batcher.getWriteCount());
+        assertEquals(200, slave.registers[100]);
+        assertEquals(7, slave.registers[105]);
+        assertEquals(218, slave.registers[109]);
+        assertEquals(3, slave.registers[300]);
+        assertTrue(slave.coils[4]);
+        assertFalse(slave.coils[5]);
+        assertTrue(slave.coils[6]);
+        batcher.close();
+        master.close();
+    }
+
+    @Test
+    public void longRuns_areSplitAtProtocolLimit() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = newMaster(slave);
+        WriteBatcher batcher = new WriteBatcher(master);
+        batcher.setLimits(1000, 10000);
+        for (int address = 0; address < 300; address++) {
+            batcher.writeRegister(1, address, address);
+        }
+        batcher.flush();
+        // 123 + 123 + 54
+        assertEquals(3, slave.getRequestCount());
+        assertEquals(299, slave.registers[299]);
+        batcher.close();
+        master.close();
+    }
+
+    @Test
+    public void batchLimits_triggerFlush() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = newMaster(slave);
+        WriteBatcher batcher = new WriteBatcher(master);
+        batcher.setLimits(4, 10000);
+        for (int address = 0; address < 4; address++) {
+            batcher.writeRegister(1, address, 1);
+        }
+        assertEquals(1, slave.getRequestCount());
+        assertEquals(0, batcher.getPendingCount());
+
+        final CountDownLatch flushed = new CountDownLatch(1);
+        batcher.setCallback(new ModbusCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                flushed.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+            }
+        });
+        batcher.setLimits(100, 20);
+        batcher.start();
+        batcher.writeRegister(1, 10, 5);
+        assertTrue(flushed.await(1, TimeUnit.SECONDS));
+        assertEquals(5, slave.registers[10]);
+        batcher.close();
+        master.close();
+    }
+
+    @Test
+    public void failedRuns_areReported() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = newMaster(slave);
+        master.setTimeout(50);
+        WriteBatcher batcher = new WriteBatcher(master);
+        batcher.setLimits(1000, 10000);
+        final List<String> failed = new ArrayList<String>();
+        batcher.setListener(new WriteBatcher.Listener() {
+            @Override
+            public void onWriteFailed(int slave, boolean coils, int start, int[] values, Exception error) {
+                failed.add(slave + " " + coils + " " + start + " " + Arrays.toString(values));
+            }
+        });
+        batcher.writeRegister(1, 0, 10);
+        batcher.writeRegister(1, 1, 11);
+        // 从站 2 不存在
+        batcher.writeRegister(2, 5, 25);
+        batcher.writeCoil(2, 3, true);
+        try {
+            batcher.flush();
+            fail("timeout expected");
+        } catch (ModbusError e) {
+            assertEquals(ModbusErrorType.ModbusTimeoutError, e.getType());
+        }
+        assertEquals(11, slave.registers[1]);
+        assertEquals(Arrays.asList("2 true 3 [1]", "2 false 5 [25]"), failed);
+        batcher.close();
+        master.close();
+    }
+
+    @Test
+    public void backgroundFailure_isThrownByNextFlush() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = newMaster(slave);
+        master.setTimeout(20);
+        WriteBatcher batcher = new WriteBatcher(master);
+        batcher.setLimits(100, 1);
+        batcher.start();
+        batcher.writeRegister(2, 0, 1);
+        while (batcher.getPendingCount() > 0) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(100);
+        try {
+            batcher.flush();
+            fail("background failure not reported");
+        } catch (ModbusError e) {
+            assertEquals(ModbusErrorType.ModbusTimeoutError, e.getType());
+        }
+        batcher.flush();
+        batcher.close();
+        master.close();
+    }
+
+    @Test
+    public void writers_areNotBlockedBySend() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = newMaster(slave);
+        master.setTimeout(300);
+        final WriteBatcher batcher = new WriteBatcher(master);
+        batcher.setLimits(1000, 10000);
+        // 从站 2 不响应，发送占用 300 ms
+        batcher.writeRegister(2, 0, 1);
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    batcher.flush();
+                } catch (Exception expected) {
+                }
+            }
+        });
+        sender.start();
+        while (batcher.getPendingCount() > 0) {
+            Thread.sleep(1);
+        }
+        long start = System.nanoTime();
+        batcher.writeRegister(1, 7, 70);
+        assertEquals(1, batcher.getPendingCount());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        sender.join();
+        batcher.flush();
+        assertEquals(70, slave.registers[7]);
+        batcher.close();
+        master.close();
+    }
+
+    @Test
+    public void recipeDownload_usesFewTransactions() throws Exception {
+        SimulatedSlave slave = new SimulatedSlave(1);
+        ModbusMaster master = newMaster(slave);
+        // 配方：3 段连续的设定值，共 500 个
+        int[] addresses = new int[500];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = i < 200 ? 1000 + i : i < 450 ? 3000 + i : 6000 + i;
+        }
+
+        for (int i = 0; i < addresses.length; i++) {
+            master.writeSingleRegister(1, addresses[i], i);
+        }
+        long singleRequests = slave.getRequestCount();
+
+        WriteBatcher batcher = new WriteBatcher(master);
+        batcher.setLimits(1000, 10000);
+        for (int i = 0; i < addresses.length; i++) {
+            batcher.writeRegister(1, addresses[i], i + 1);
+        }
+        batcher.flush();
+        long batchedRequests = slave.getRequestCount() - singleRequests;
+        batcher.close();
+        master.close();
+
+        for (int i = 0; i < addresses.length; i++) {
+            assertEquals(i + 1, slave.registers[addresses[i]]);
+        }
+        assertEquals(addresses.length, singleRequests);
+        // 200 + 250 + 50 个，按每帧 123 个拆分
+        assertEquals(6, batchedRequests);
+    }
+}
@@ -0,0 +1,225 @@
+package com.tonyx.androidmodbusrtudemo.modbus.store;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SnapshotWriter}, {@link SnapshotReader} and {@link SnapshotDiff},
+ * running on the development machine (host).
+ */
+public class SnapshotWriterTest {
+    private static final long TIMESTAMP = 1500000000000L;
+
+    /**
+     * 典型的寄存器表：一半为 0，计数器、缓慢变化的测量值、文本和少量随机值
+     */
+    private static int[] registerMap(int length, long seed) {
+        Random random = new Random(seed);
+        int[] map = new int[length];
+        for (int i = 0; i < length; i++) {
+            switch ((i / 64) % 8) {
+                case 4:
+                    map[i] = 1000 + i + random.nextInt(4);
+                    break;
+                case 5:
+                    map[i] = 20000 + random.nextInt(16);
+                    break;
+                case 6:
+                    map[i] = (i & 1) == 0 ? 0x4148 : 0x3000 | random.nextInt(0x10);
+                    break;
+                case 7:
+                    map[i] = random.nextInt(0x10000);
+                    break;
+                default:
+                    map[i] = 0;
+                    break;
+            }
+        }
+        return map;
+    }
+
+    private static boolean[] coilMap(int length, long seed) {
+        Random random = new Random(seed);
+        boolean[] coils = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            coils[i] = random.nextInt(5) == 0;
+        }
+        return coils;
+    }
+
+    private static byte[] snapshot(int[] holding, int[] input, boolean[] coils) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotWriter writer = new SnapshotWriter(bytes, TIMESTAMP);
+        for (int slave = 1; slave <= 2; slave++) {
+            writer.writeRegisters(slave, ModbusFunction.READ_HOLDING_REGISTERS, 0, holding, 0, holding.length);
+            writer.writeRegisters(slave, ModbusFunction.READ_INPUT_REGISTERS, 30000, input, 0, input.length);
+            writer.writeBits(slave, ModbusFunction.READ_COILS, 5, coils, 0, coils.length);
+        }
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void snapshot_roundTripsInChunks() throws Exception {
+        int[] holding = registerMap(20000, 1);
+        int[] input = new int[300];
+        Arrays.fill(input, 7);
+        input[299] = 0xFFFF;
+        boolean[] coils = coilMap(1001, 2);
+        byte[] bytes = snapshot(holding, input, coils);
+
+        int registers = 2 * (holding.length + input.length);
+        assertTrue(bytes.length < registers * 2 / 2);
+
+        SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(bytes));
+        assertEquals(TIMESTAMP, reader.getTimestamp());
+        for (int slave = 1; slave <= 2; slave++) {
+            assertTrue(reader.next());
+            assertEquals(slave, reader.getSlave());
+            assertEquals(ModbusFunction.READ_HOLDING_REGISTERS, reader.getFunction());
+            assertEquals(holding.length, reader.getQuantity());
+            int[] decoded = new int[holding.length];
+            int n = 0;
+            int len;
+            while ((len = reader.readRegisters(decoded, n, Math.min(77, decoded.length - n))) > 0) {
+                n += len;
+            }
+            assertArrayEquals(holding, decoded);
+
+            assertTrue(reader.next());
+            assertEquals(30000, reader.getStartAddress());
+            if (slave == 2) {
+                decoded = new int[input.length];
+                assertEquals(input.length, reader.readRegisters(decoded, 0, decoded.length));
+                assertArrayEquals(input, decoded);
+            }
+            // 其余块不读取，由 next() 跳过
+            assertTrue(reader.next());
+            assertTrue(reader.isBits());
+        }
+        assertFalse(reader.next());
+        reader.close();
+
+        reader = new SnapshotReader(new ByteArrayInputStream(bytes));
+        int blocks = 0;
+        while (reader.next()) {
+            blocks++;
+            if (reader.isBits()) {
+                assertEquals(5, reader.getStartAddress());
+                boolean[] decoded = new boolean[coils.length];
+                assertEquals(3, reader.readBits(decoded, 0, 3));
+                assertEquals(coils.length - 3, reader.readBits(decoded, 3, coils.length));
+                assertEquals(0, reader.getRemaining());
+                assertArrayEquals(coils, decoded);
+            }
+        }
+        assertEquals(6, blocks);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void invalidRange_isRejected() throws Exception {
+        SnapshotWriter writer = new SnapshotWriter(new ByteArrayOutputStream(), TIMESTAMP);
+        // {起始地址, 数量}，start + quantity 溢出时也要拒绝
+        int[][] invalid = {
+                {Integer.MAX_VALUE, 1},
+                {0xffff, 2},
+                {-1, 1},
+                {0, 0},
+        };
+        for (int[] range : invalid) {
+            try {
+                writer.writeRegisters(1, ModbusFunction.READ_HOLDING_REGISTERS, range[0], new int[2], 0, range[1]);
+                fail("invalid range " + Arrays.toString(range) + " accepted");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        writer.writeRegisters(1, ModbusFunction.READ_HOLDING_REGISTERS, 0xffff, new int[1], 0, 1);
+        writer.close();
+    }
+
+    @Test
+    public void reader_rejectsRangeThatOnlyFitsAfterNarrowing() throws Exception {
+        byte[] bytes = new byte[64];
+        int pos = ByteUtil.putInt32(bytes, 0, SnapshotWriter.MAGIC);
+        bytes[pos++] = SnapshotWriter.VERSION;
+        pos = ByteUtil.putVarLong(bytes, pos, TIMESTAMP);
+        bytes[pos++] = ModbusFunction.READ_HOLDING_REGISTERS;
+        bytes[pos++] = 1;
+        // 起始地址 2^32 + 5 转为 int 后为 5
+        pos = ByteUtil.putVarLong(bytes, pos, (1L << 32) + 5);
+        pos = ByteUtil.putVarLong(bytes, pos, 1);
+        SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(Arrays.copyOf(bytes, pos)));
+        try {
+            reader.next();
+            fail("invalid block range accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void snapshot_detectsCorruption() throws Exception {
+        byte[] bytes = snapshot(registerMap(1000, 3), new int[]{1, 2, 3}, coilMap(20, 4));
+        byte[] corrupted = bytes.clone();
+        corrupted[bytes.length / 2] ^= 0x10;
+        try {
+            SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(corrupted));
+            while (reader.next()) {
+            }
+            fail();
+        } catch (IOException expected) {
+        }
+        try {
+            SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 10)));
+            while (reader.next()) {
+            }
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void diff_reportsChangedAddresses() throws Exception {
+        int[] holding = registerMap(5000, 5);
+        boolean[] coils = coilMap(100, 6);
+        byte[] before = snapshot(holding, new int[10], coils);
+        holding[4999] ^= 0x8000;
+        holding[130] += 1;
+        coils[42] = !coils[42];
+        byte[] after = snapshot(holding, new int[10], coils);
+
+        final List<String> changes = new ArrayList<String>();
+        long count = new SnapshotDiff().diff(new SnapshotReader(new ByteArrayInputStream(before)),
+                new SnapshotReader(new ByteArrayInputStream(after)), new SnapshotDiff.Listener() {
+                    @Override
+                    public void onChange(int slave, int function_code, int address, int was, int is) {
+                        changes.add(slave + ":" + function_code + ":" + address);
+                    }
+                });
+        assertEquals(6, count);
+        assertEquals(Arrays.asList("1:3:130", "1:3:4999", "1:1:47", "2:3:130", "2:3:4999", "2:1:47"), changes);
+
+        try {
+            new SnapshotDiff().diff(new SnapshotReader(new ByteArrayInputStream(before)),
+                    new SnapshotReader(new ByteArrayInputStream(snapshot(holding, new int[11], coils))), new SnapshotDiff.Listener() {
+                        @Override
+                        public void onChange(int slave, int function_code, int address, int was, int is) {
+                        }
+                    });
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+}
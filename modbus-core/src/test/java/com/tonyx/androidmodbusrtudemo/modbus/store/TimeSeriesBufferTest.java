@@ -0,0 +1,148 @@
+package com.tonyx.androidmodbusrtudemo.modbus.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TimeSeriesBuffer}, running on the development machine (host).
+ */
+public class TimeSeriesBufferTest {
+    private static final long BASE = 1500000000000L;
+    private static final int TAGS = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 第 n 次轮询的值：缓慢变化的计数器，一半为负数
+     */
+    private static long value(int n, int tag) {
+        return (tag & 1) == 0 ? (long) n * (tag + 1) : -1000000L * tag - n / 10;
+    }
+
+    private static void append(TimeSeriesBuffer buffer, int from, int to) {
+        long[] values = new long[TAGS];
+        for (int n = from; n < to; n++) {
+            for (int tag = 0; tag < TAGS; tag++) {
+                values[tag] = value(n, tag);
+            }
+            buffer.append(BASE + n * 1000L, values, TAGS);
+        }
+    }
+
+    /**
+     * 读取下一条记录并检查内容
+     *
+     * @return 记录的轮询序号
+     */
+    private static int readChecked(TimeSeriesBuffer.Cursor cursor) {
+        assertTrue(cursor.next());
+        return checkCurrent(cursor);
+    }
+
+    private static int checkCurrent(TimeSeriesBuffer.Cursor cursor) {
+        int n = (int) ((cursor.getTimestamp() - BASE) / 1000);
+        assertEquals(BASE + n * 1000L, cursor.getTimestamp());
+        assertEquals(TAGS, cursor.getCount());
+        for (int tag = 0; tag < TAGS; tag++) {
+            assertEquals(value(n, tag), cursor.getValue(tag));
+        }
+        return n;
+    }
+
+    @Test
+    public void append_readsBackCompressed() throws Exception {
+        TimeSeriesBuffer buffer = new TimeSeriesBuffer(folder.newFile(), 1 << 20);
+        append(buffer, 0, 1000);
+        TimeSeriesBuffer.Cursor cursor = buffer.getCursor();
+        for (int n = 0; n < 1000; n++) {
+            assertEquals(n, readChecked(cursor));
+        }
+        assertFalse(cursor.next());
+        long bytes = buffer.getSize();
+        assertTrue(bytes < 1000 * TAGS * 2);
+        assertEquals(bytes, buffer.getPendingBytes());
+        cursor.commit();
+        assertEquals(0, buffer.getPendingBytes());
+        assertEquals(0, buffer.getLostCount());
+        buffer.close();
+    }
+
+    @Test
+    public void append_wrapsAndDropsOldest() throws Exception {
+        TimeSeriesBuffer buffer = new TimeSeriesBuffer(folder.newFile(), 4096);
+        buffer.setKeyframeInterval(8);
+        TimeSeriesBuffer.Cursor cursor = buffer.getCursor();
+        // 前 200 条被及时读取
+        for (int n = 0; n < 200; n++) {
+            append(buffer, n, n + 1);
+            assertEquals(n, readChecked(cursor));
+            cursor.commit();
+        }
+        // 上传中断，写入远超容量的数据
+        append(buffer, 200, 2000);
+        assertTrue(buffer.getSize() <= 4096);
+        int first = readChecked(cursor);
+        assertTrue(first > 200);
+        int last = first;
+        while (cursor.next()) {
+            assertEquals(last + 1, (int) ((cursor.getTimestamp() - BASE) / 1000));
+            last++;
+        }
+        assertEquals(1999, last);
+        assertTrue(buffer.getLostCount() >= first - 200);
+        // 回到 commit 位置重读得到同样的记录
+        cursor.rewind();
+        assertTrue(readChecked(cursor) >= first);
+        buffer.close();
+    }
+
+    @Test
+    public void reopen_recoversRecordsAndCommittedPosition() throws Exception {
+        File file = folder.newFile();
+        TimeSeriesBuffer buffer = new TimeSeriesBuffer(file, 1 << 16);
+        append(buffer, 0, 100);
+        TimeSeriesBuffer.Cursor cursor = buffer.getCursor();
+        for (int n = 0; n < 40; n++) {
+            readChecked(cursor);
+        }
+        cursor.commit();
+        // 不调用 close()，相当于进程被杀死
+        TimeSeriesBuffer recovered = new TimeSeriesBuffer(file, 1 << 16);
+        assertEquals(buffer.getSize(), recovered.getSize());
+        cursor = recovered.getCursor();
+        // 第 40 条是增量记录，需要从关键帧重放
+        assertEquals(40, readChecked(cursor));
+        append(recovered, 100, 110);
+        for (int n = 41; n < 110; n++) {
+            assertEquals(n, readChecked(cursor));
+        }
+        assertFalse(cursor.next());
+        long size = recovered.getSize();
+        recovered.close();
+        buffer.close();
+
+        // 最后一条记录写了一半
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(64 + size - 3);
+        raf.write(new byte[]{0x55, 0x55, 0x55});
+        raf.close();
+        recovered = new TimeSeriesBuffer(file, 1 << 16);
+        cursor = recovered.getCursor();
+        int last = -1;
+        while (cursor.next()) {
+            last = checkCurrent(cursor);
+        }
+        assertEquals(108, last);
+        append(recovered, 109, 111);
+        assertEquals(109, readChecked(cursor));
+        assertEquals(110, readChecked(cursor));
+        recovered.close();
+    }
+}
@@ -0,0 +1,180 @@
+package com.tonyx.androidmodbusrtudemo.modbus.transport;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusMaster;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link ModbusTcpTransport} against an in-process Modbus TCP slave on localhost.
+ */
+public class ModbusTcpTransportTest {
+    private static final int DELAY = 100;
+    private static final int BAD_PROTOCOL_UNIT = 99;
+
+    private ServerSocket server;
+    private ScheduledExecutorService scheduler;
+    private ModbusTcpTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0);
+        scheduler = Executors.newScheduledThreadPool(4);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        transport = new ModbusTcpTransport("127.0.0.1", server.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.close();
+        server.close();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 每个 FC3 请求在 DELAY 毫秒后回复，寄存器值为 unit * 1000 + 地址；请求可以交错应答。
+     * 发给 BAD_PROTOCOL_UNIT 的请求的响应协议标识为 1
+     */
+    private void serve() {
+        try {
+            Socket socket = server.accept();
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            final OutputStream output = socket.getOutputStream();
+            while (true) {
+                byte[] header = new byte[7];
+                input.readFully(header);
+                byte[] pdu = new byte[ByteUtil.getUInt16(header, 4) - 1];
+                input.readFully(pdu);
+                int unit = header[6] & 0xff;
+                int address = ByteUtil.getUInt16(pdu, 1);
+                int quantity = ByteUtil.getUInt16(pdu, 3);
+                final byte[] response = new byte[9 + 2 * quantity];
+                System.arraycopy(header, 0, response, 0, 4);
+                if (unit == BAD_PROTOCOL_UNIT) {
+                    ByteUtil.putInt16(response, 2, 1);
+                }
+                ByteUtil.putInt16(response, 4, 3 + 2 * quantity);
+                response[6] = (byte) unit;
+                response[7] = pdu[0];
+                response[8] = (byte) (2 * quantity);
+                for (int i = 0; i < quantity; i++) {
+                    ByteUtil.putInt16(response, 9 + 2 * i, unit * 1000 + address + i);
+                }
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (output) {
+                            try {
+                                output.write(response);
+                                output.flush();
+                            } catch (IOException e) {
+                                // connection closed
+                            }
+                        }
+                    }
+                }, DELAY, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            // server closed
+        }
+    }
+
+    @Test
+    public void readHoldingRegisters_overTcp() throws Exception {
+        ModbusMaster master = new ModbusMaster(transport);
+        int[] values = master.readHoldingRegisters(3, 100, 4);
+        assertArrayEquals(new int[]{3100, 3101, 3102, 3103}, values);
+    }
+
+    @Test
+    public void nonModbusProtocol_isInvalidResponse() throws Exception {
+        ModbusMaster master = new ModbusMaster(transport);
+        try {
+            master.readHoldingRegisters(BAD_PROTOCOL_UNIT, 0, 2);
+            fail("invalid response expected");
+        } catch (ModbusError e) {
+            assertEquals(ModbusErrorType.ModbusInvalidResponseError, e.getType());
+        }
+        // 整帧已读出，之后的响应不受影响
+        assertArrayEquals(new int[]{1007}, master.readHoldingRegisters(1, 7, 1));
+    }
+
+    @Test
+    public void interruptedCaller_stopsWaiting() throws Exception {
+        ModbusMaster master = new ModbusMaster(transport);
+        master.setTimeout(5000);
+        final Thread caller = Thread.currentThread();
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                caller.interrupt();
+            }
+        }, DELAY / 4, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        try {
+            master.readHoldingRegisters(1, 0, 1);
+            fail("interruption expected");
+        } catch (InterruptedIOException expected) {
+        }
+        assertTrue(Thread.interrupted());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(DELAY));
+        // 迟到的响应被丢弃，transport 仍可使用
+        assertArrayEquals(new int[]{2005}, master.readHoldingRegisters(2, 5, 1));
+    }
+
+    @Test
+    public void requests_arePipelined() throws Exception {
+        final int callers = 16;
+        final CountDownLatch done = new CountDownLatch(callers);
+        final AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int c = 0; c < callers; c++) {
+            final int unit = c + 1;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ModbusMaster master = new ModbusMaster(transport);
+                    try {
+                        if (master.readHoldingRegister(unit, 7) != unit * 1000 + 7) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        assertEquals(0, failures.get());
+        // one at a time would take callers * DELAY
+        assertTrue("elapsed " + elapsed + " ms", elapsed < callers * DELAY / 2);
+    }
+}
@@ -0,0 +1,84 @@
+package com.tonyx.androidmodbusrtudemo.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ByteUtil}, running on the development machine (host).
+ */
+public class ByteUtilTest {
+    private static final byte[] ABCD = {(byte) 0xA1, (byte) 0xB2, (byte) 0xC3, (byte) 0xD4};
+
+    @Test
+    public void toInt_isCorrect() {
+        assertEquals(0xA1B2, ByteUtil.toInt(new byte[]{(byte) 0xA1, (byte) 0xB2}));
+        assertEquals(0xA1B2C3D4, ByteUtil.toInt(ABCD));
+        assertEquals(0, ByteUtil.toInt(new byte[0]));
+    }
+
+    @Test
+    public void int16_isCorrect() {
+        assertEquals(0xA1B2, ByteUtil.getUInt16(ABCD, 0));
+        assertEquals((short) 0xA1B2, ByteUtil.getInt16(ABCD, 0));
+        assertEquals(0xB2A1, ByteUtil.getUInt16Reversal(ABCD, 0));
+    }
+
+    @Test
+    public void int32_isCorrect() {
+        assertEquals(0xA1B2C3D4, ByteUtil.getInt32(ABCD, 0));
+        assertEquals(0xD4C3B2A1, ByteUtil.getInt32Reversal(ABCD, 0));
+        assertEquals(0xC3D4A1B2, ByteUtil.getInt32WordSwap(ABCD, 0));
+        assertEquals(0xA1B2C3D4L, ByteUtil.getUInt32(ABCD, 0));
+    }
+
+    @Test
+    public void readInt16_isCorrect() throws Exception {
+        ByteArrayReader reader = new ByteArrayReader(ABCD);
+        assertEquals(0xA1B2, reader.readInt16());
+        assertEquals(0xC3D4, reader.readInt16());
+    }
+
+    @Test
+    public void registers_allOrders() {
+        int[] registers = {0xA1B2, 0xC3D4};
+        assertEquals(0xA1B2C3D4, ByteUtil.getInt32(registers, 0, ByteUtil.ORDER_ABCD));
+        assertEquals(0xC3D4A1B2, ByteUtil.getInt32(registers, 0, ByteUtil.ORDER_CDAB));
+        assertEquals(0xB2A1D4C3, ByteUtil.getInt32(registers, 0, ByteUtil.ORDER_BADC));
+        assertEquals(0xD4C3B2A1, ByteUtil.getInt32(registers, 0, ByteUtil.ORDER_DCBA));
+        int[] words = {0x0102, 0x0304, 0x0506, 0x0708};
+        assertEquals(0x0102030405060708L, ByteUtil.getInt64(words, 0, ByteUtil.ORDER_ABCD));
+        assertEquals(0x0708050603040102L, ByteUtil.getInt64(words, 0, ByteUtil.ORDER_CDAB));
+        assertEquals(0x0201040306050807L, ByteUtil.getInt64(words, 0, ByteUtil.ORDER_BADC));
+        assertEquals(0x0807060504030201L, ByteUtil.getInt64(words, 0, ByteUtil.ORDER_DCBA));
+        int bits = Float.floatToIntBits(-12.5f);
+        assertEquals(-12.5f, ByteUtil.getFloat32(new int[]{bits & 0xFFFF, bits >>> 16}, 0, ByteUtil.ORDER_CDAB), 0);
+    }
+
+    @Test
+    public void reader_reusedWithoutAllocation() throws Exception {
+        byte[] data = {0x40, 0x09, 0x21, (byte) 0xFB, 0x54, 0x44, 0x2D, 0x18, (byte) 0xA1, (byte) 0xB2};
+        ByteArrayReader reader = new ByteArrayReader(ABCD);
+        reader.setBuffer(data, 0, 8);
+        assertEquals(Math.PI, reader.readFloat64(), 0);
+        assertEquals(0, reader.available());
+        reader.setBuffer(data, 8, 2);
+        int[] registers = new int[1];
+        reader.readRegisters(registers, 0, 1);
+        assertEquals(0xA1B2, registers[0]);
+        reader.setBuffer(ABCD, 0, ABCD.length);
+        assertEquals(0xA1B2C3D4, reader.readInt32());
+    }
+
+    @Test
+    public void writer_matchesByteUtil() {
+        ByteArrayWriter writer = new ByteArrayWriter();
+        writer.writeInt16(0xA1B2);
+        writer.writeInt16Reversal(0xA1B2);
+        writer.writeInt32(0xA1B2C3D4);
+        byte[] bytes = writer.toByteArray();
+        assertArrayEquals(ByteUtil.fromInt16(0xA1B2), ByteUtil.subBytes(bytes, 0, 2));
+        assertArrayEquals(ByteUtil.fromInt16Reversal(0xA1B2), ByteUtil.subBytes(bytes, 2, 2));
+        assertArrayEquals(ByteUtil.fromInt32(0xA1B2C3D4), ByteUtil.subBytes(bytes, 4, 4));
+    }
+}
@@ -0,0 +1,39 @@
+package com.tonyx.androidmodbusrtudemo.utilities;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CRC16}, running on the development machine (host).
+ */
+public class CRC16Test {
+    @Test
+    public void compute_isCorrect() {
+        assertEquals(0xC8C5, CRC16.compute(new byte[]{0x01, 0x03, 0x00, 0x00, 0x00, 0x06}));
+    }
+
+    @Test
+    public void update_matchesCompute() {
+        Random random = new Random(42);
+        for (int length = 0; length <= 300; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            int expected = CRC16.compute(data);
+
+            assertEquals(expected, CRC16.update(CRC16.INITIAL, data, 0, length));
+
+            int split = length / 3;
+            int crc = CRC16.update(CRC16.INITIAL, data, 0, split);
+            assertEquals(expected, CRC16.update(crc, data, split, length - split));
+
+            crc = CRC16.INITIAL;
+            for (byte b : data) {
+                crc = CRC16.update(crc, b);
+            }
+            assertEquals(expected, crc);
+        }
+    }
+}
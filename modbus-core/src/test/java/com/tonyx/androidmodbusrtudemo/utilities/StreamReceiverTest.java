@@ -0,0 +1,88 @@
+package com.tonyx.androidmodbusrtudemo.utilities;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link StreamReceiver}, running on the development machine (host).
+ */
+public class StreamReceiverTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void read_returnsReceivedBytes() throws Exception {
+        PipedOutputStream output = new PipedOutputStream();
+        StreamReceiver receiver = new StreamReceiver(new PipedInputStream(output));
+        output.write(new byte[]{1, 2, 3});
+        output.flush();
+        byte[] buffer = new byte[8];
+        int n = 0;
+        while (n < 3) {
+            n += receiver.read(buffer, n, buffer.length - n, SECOND);
+        }
+        assertArrayEquals(new byte[]{1, 2, 3}, Arrays.copyOf(buffer, 3));
+        assertEquals(0, receiver.read(buffer, 0, buffer.length, 1000000L));
+        receiver.close();
+    }
+
+    @Test
+    public void runtimeException_isRethrownToReaders() throws Exception {
+        StreamReceiver receiver = new StreamReceiver(new InputStream() {
+            @Override
+            public int read() {
+                throw new IllegalStateException("device gone");
+            }
+        });
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            try {
+                receiver.read(new byte[1], 0, 1, 5 * SECOND);
+                fail("failure expected");
+            } catch (IOException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertTrue(System.nanoTime() - start < SECOND);
+        }
+        receiver.close();
+    }
+
+    @Test
+    public void interruptedReader_stopsWaiting() throws Exception {
+        PipedOutputStream output = new PipedOutputStream();
+        StreamReceiver receiver = new StreamReceiver(new PipedInputStream(output));
+        Thread.currentThread().interrupt();
+        try {
+            receiver.read(new byte[1], 0, 1, 5 * SECOND);
+            fail("interruption expected");
+        } catch (InterruptedIOException expected) {
+        }
+        assertTrue(Thread.interrupted());
+        receiver.close();
+    }
+
+    @Test
+    public void close_closesTheStream() throws Exception {
+        PipedOutputStream output = new PipedOutputStream();
+        StreamReceiver receiver = new StreamReceiver(new PipedInputStream(output));
+        receiver.close();
+        try {
+            output.write(1);
+            fail("closed pipe expected");
+        } catch (IOException expected) {
+        }
+        try {
+            receiver.read(new byte[1], 0, 1, SECOND);
+            fail("closed receiver expected");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.tonyx.androidmodbusrtudemo.modbus.simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusFrameReader;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+import com.tonyx.androidmodbusrtudemo.utilities.CRC16;
+
+/*
+    In-process Modbus RTU slave for tests and benchmarks without devices. Serves FC 1-6,
+    15, 16, 22 and 23 from caller-supplied register and bit arrays, and can add a response
+    delay, pace its output at a baud rate, corrupt responses and inject exception
+    responses. Connect a ModbusMaster through getMasterInput()/getMasterOutput(), or pass
+    the streams of a pseudo terminal to the stream constructor.
+ */
+public class ModbusSlaveSimulator implements Runnable {
+    /**
+     * 非法功能码
+     */
+    public static final int ILLEGAL_FUNCTION = 1;
+    /**
+     * 非法数据地址
+     */
+    public static final int ILLEGAL_DATA_ADDRESS = 2;
+    /**
+     * 非法数据值
+     */
+    public static final int ILLEGAL_DATA_VALUE = 3;
+
+    private final int slave;
+    private final int[] holdingRegisters;
+    private final int[] inputRegisters;
+    private final boolean[] coils;
+    private final boolean[] discreteInputs;
+
+    private final InputStream input;
+    private final OutputStream output;
+    private final PipedInputStream masterInput;
+    private final PipedOutputStream masterOutput;
+    private Thread thread;
+
+    private volatile long responseDelayNanos;
+    private volatile long characterNanos;
+    private volatile int chunkBytes;
+    private volatile long chunkGapNanos;
+    private volatile boolean offline;
+    private volatile int replySlave = -1;
+    private volatile int corruptResponses;
+    private volatile double noise;
+    private volatile int injectedExceptions;
+    private volatile int injectedExceptionCode;
+    private volatile double exceptionProbability;
+    private volatile int exceptionCode;
+    private final Random random = new Random(1);
+
+    private volatile long requestCount;
+    private volatile long responseCount;
+
+    /**
+     * 完整地址空间的从站，四个数据区各 65536 个
+     */
+    public ModbusSlaveSimulator(int slave) throws IOException {
+        this(slave, new int[0x10000], new int[0x10000], new boolean[0x10000], new boolean[0x10000]);
+    }
+
+    /**
+     * 使用调用方提供的数据区，超出数组长度的地址返回 ILLEGAL_DATA_ADDRESS；
+     * 同一数组可用于多个数据区。通过 getMasterInput()、getMasterOutput() 与 ModbusMaster 连接
+     */
+    public ModbusSlaveSimulator(int slave, int[] holdingRegisters, int[] inputRegisters, boolean[] coils, boolean[] discreteInputs) throws IOException {
+        this.slave = slave;
+        this.holdingRegisters = holdingRegisters;
+        this.inputRegisters = inputRegisters;
+        this.coils = coils;
+        this.discreteInputs = discreteInputs;
+        this.masterInput = new PipedInputStream(1024);
+        PipedOutputStream toMaster = new PipedOutputStream();
+        toMaster.connect(masterInput);
+        this.masterOutput = new PipedOutputStream();
+        PipedInputStream fromMaster = new PipedInputStream(1024);
+        masterOutput.connect(fromMaster);
+        this.input = fromMaster;
+        this.output = toMaster;
+    }
+
+    /**
+     * 在给定的流上应答，如伪终端的从端
+     */
+    public ModbusSlaveSimulator(int slave, int[] holdingRegisters, int[] inputRegisters, boolean[] coils, boolean[] discreteInputs,
+                                InputStream input, OutputStream output) {
+        this.slave = slave;
+        this.holdingRegisters = holdingRegisters;
+        this.inputRegisters = inputRegisters;
+        this.coils = coils;
+        this.discreteInputs = discreteInputs;
+        this.masterInput = null;
+        this.masterOutput = null;
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * 启动应答线程
+     */
+    public synchronized ModbusSlaveSimulator start() {
+        if (thread == null) {
+            thread = new Thread(this, "ModbusSlaveSimulator-" + slave);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return this;
+    }
+
+    /**
+     * 关闭流，应答线程随之结束
+     */
+    public void close() throws IOException {
+        input.close();
+        output.close();
+    }
+
+    /**
+     * ModbusMaster 的输入流，只在使用管道时有效
+     */
+    public InputStream getMasterInput() {
+        return masterInput;
+    }
+
+    /**
+     * ModbusMaster 的输出流，只在使用管道时有效
+     */
+    public OutputStream getMasterOutput() {
+        return masterOutput;
+    }
+
+    public int getSlave() {
+        return slave;
+    }
+
+    public int[] getHoldingRegisters() {
+        return holdingRegisters;
+    }
+
+    public int[] getInputRegisters() {
+        return inputRegisters;
+    }
+
+    public boolean[] getCoils() {
+        return coils;
+    }
+
+    public boolean[] getDiscreteInputs() {
+        return discreteInputs;
+    }
+
+    /**
+     * 收到请求后到开始发送响应的时间，模拟设备处理时间
+     *
+     * @param micros 单位微秒
+     */
+    public void setResponseDelay(int micros) {
+        this.responseDelayNanos = Math.max(micros, 0) * 1000L;
+    }
+
+    /**
+     * 按波特率（11 位/字符）计算请求的传输时间，并按该速率逐字节发送响应，0 表示不限速
+     */
+    public void setBaudrate(int baudrate) {
+        this.characterNanos = baudrate > 0 ? 11000000000L / baudrate : 0;
+    }
+
+    /**
+     * 把响应分成若干块发送，块之间暂停，模拟 USB 转串口适配器按延迟定时器分批送达数据，
+     * 设置后不再按 setBaudrate 逐字节发送
+     *
+     * @param bytes 每块的字节数，0 表示不分块
+     * @param gap   块之间的间隔，单位微秒
+     */
+    public void setChunking(int bytes, int gap) {
+        this.chunkGapNanos = Math.max(gap, 0) * 1000L;
+        this.chunkBytes = Math.max(bytes, 0);
+    }
+
+    /**
+     * 不应答任何请求，主站将超时
+     */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    /**
+     * 使用另一个从站地址回复，-1 恢复正常
+     */
+    public void replyAs(int slave) {
+        this.replySlave = slave;
+    }
+
+    /**
+     * 接下来的 count 个响应中翻转一个数据位，使CRC校验失败
+     */
+    public void corruptResponses(int count) {
+        this.corruptResponses = count;
+    }
+
+    /**
+     * 每个响应以给定概率翻转一个随机位，模拟线路噪声
+     */
+    public void setNoise(double probability) {
+        this.noise = probability;
+    }
+
+    /**
+     * 接下来的 count 个请求返回异常响应
+     */
+    public void injectExceptions(int count, int code) {
+        this.injectedExceptionCode = code;
+        this.injectedExceptions = count;
+    }
+
+    /**
+     * 每个请求以给定概率返回异常响应
+     */
+    public void setExceptionProbability(double probability, int code) {
+        this.exceptionCode = code;
+        this.exceptionProbability = probability;
+    }
+
+    /**
+     * 设置噪声、异常注入使用的随机数种子，使结果可重复
+     */
+    public void setSeed(long seed) {
+        synchronized (random) {
+            random.setSeed(seed);
+        }
+    }
+
+    /**
+     * 收到的请求数，包括不是发给本从站的请求
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public long getResponseCount() {
+        return responseCount;
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    @Override
+    public void run() {
+        // 字节数字段最大 255，超出 256 字节的非法请求也要完整读入后再拒绝
+        byte[] request = new byte[13 + 0xff];
+        byte[] response = new byte[ModbusFrameReader.MAX_RESPONSE_LENGTH];
+        try {
+            while (true) {
+                if (!readFully(request, 0, 8)) {
+                    return;
+                }
+                long started = System.nanoTime();
+                int received = 8;
+                if (request[1] == ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS) {
+                    // 写入字节数在第 11 个字节
+                    if (!readFully(request, received, 3)) {
+                        return;
+                    }
+                    received += 3;
+                }
+                int length = requestLength(request);
+                if (!readFully(request, received, length - received)) {
+                    return;
+                }
+                requestCount++;
+                if ((request[0] & 0xff) != slave || CRC16.compute(request, 0, length) != 0 || offline) {
+                    continue;
+                }
+                int exception = 0;
+                if (injectedExceptions > 0) {
+                    injectedExceptions--;
+                    exception = injectedExceptionCode;
+                } else if (exceptionProbability > 0 && nextDouble() < exceptionProbability) {
+                    exception = exceptionCode;
+                }
+                int response_length = exception != 0 ? exception(request, response, exception) : respond(request, response);
+                if (corruptResponses > 0) {
+                    corruptResponses--;
+                    response[response_length - 3] ^= 0x10;
+                } else if (noise > 0 && nextDouble() < noise) {
+                    int bit = (int) (nextDouble() * response_length * 8);
+                    response[bit / 8] ^= 1 << (bit % 8);
+                }
+                // 请求在线路上的传输时间与设备处理时间
+                pause(started + length * characterNanos + responseDelayNanos);
+                responseCount++;
+                send(response, response_length);
+            }
+        } catch (IOException e) {
+            // master closed
+        }
+    }
+
+    /**
+     * 根据功能码和已读取的帧头计算请求帧长度
+     */
+    private static int requestLength(byte[] request) {
+        switch (request[1]) {
+            case ModbusFunction.WRITE_MULTIPLE_COILS:
+            case ModbusFunction.WRITE_MULTIPLE_REGISTERS:
+                // slave, function, address, quantity, byte count, data, crc
+                return 9 + (request[6] & 0xff);
+            case ModbusFunction.MASK_WRITE_REGISTER:
+                // slave, function, address, and mask, or mask, crc
+                return 10;
+            case ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS:
+                // slave, function, read address, read quantity, write address, write quantity, byte count, data, crc
+                return 13 + (request[10] & 0xff);
+            default:
+                return 8;
+        }
+    }
+
+    private boolean readFully(byte[] buffer, int off, int len) throws IOException {
+        for (int n = 0; n < len; ) {
+            int read = input.read(buffer, off + n, len - n);
+            if (read < 0) {
+                return false;
+            }
+            n += read;
+        }
+        return true;
+    }
+
+    private static void pause(long until) {
+        for (long wait = until - System.nanoTime(); wait > 0; wait = until - System.nanoTime()) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * 按字符时间发送响应，每次醒来时写出已传输完成的字节
+     */
+    private void send(byte[] response, int length) throws IOException {
+        int chunkBytes = this.chunkBytes;
+        if (chunkBytes > 0) {
+            for (int sent = 0; sent < length; sent += chunkBytes) {
+                if (sent > 0) {
+                    pause(System.nanoTime() + chunkGapNanos);
+                }
+                output.write(response, sent, Math.min(chunkBytes, length - sent));
+                output.flush();
+            }
+            return;
+        }
+        long characterNanos = this.characterNanos;
+        if (characterNanos == 0) {
+            output.write(response, 0, length);
+            output.flush();
+            return;
+        }
+        long started = System.nanoTime();
+        int sent = 0;
+        while (sent < length) {
+            int due = (int) Math.min(length, (System.nanoTime() - started) / characterNanos);
+            if (due > sent) {
+                output.write(response, sent, due - sent);
+                output.flush();
+                sent = due;
+            } else {
+                pause(started + (sent + 1) * characterNanos);
+            }
+        }
+    }
+
+    private int exception(byte[] request, byte[] response, int code) {
+        response[0] = (byte) (replySlave >= 0 ? replySlave : slave);
+        response[1] = (byte) (request[1] | 0x80);
+        response[2] = (byte) code;
+        return ByteUtil.putInt16Reversal(response, 3, CRC16.compute(response, 0, 3));
+    }
+
+    private int respond(byte[] request, byte[] response) {
+        int function_code = request[1];
+        int address = ByteUtil.getUInt16(request, 2);
+        int value = ByteUtil.getUInt16(request, 4);
+        int length = 0;
+        response[length++] = (byte) (replySlave >= 0 ? replySlave : slave);
+        response[length++] = (byte) function_code;
+        switch (function_code) {
+            case ModbusFunction.READ_COILS:
+            case ModbusFunction.READ_DISCRETE_INPUTS:
+                boolean[] bits = function_code == ModbusFunction.READ_COILS ? coils : discreteInputs;
+                if (value < 1 || value > ModbusFunction.maxReadQuantity(function_code)) {
+                    return exception(request, response, ILLEGAL_DATA_VALUE);
+                }
+                if (address + value > bits.length) {
+                    return exception(request, response, ILLEGAL_DATA_ADDRESS);
+                }
+                int bytes = (value + 7) / 8;
+                response[length++] = (byte) bytes;
+                for (int i = 0; i < bytes; i++) {
+                    response[length + i] = 0;
+                }
+                for (int i = 0; i < value; i++) {
+                    if (bits[address + i]) {
+                        response[length + i / 8] |= 1 << (i % 8);
+                    }
+                }
+                length += bytes;
+                break;
+            case ModbusFunction.READ_HOLDING_REGISTERS:
+            case ModbusFunction.READ_INPUT_REGISTERS:
+                int[] registers = function_code == ModbusFunction.READ_HOLDING_REGISTERS ? holdingRegisters : inputRegisters;
+                if (value < 1 || value > ModbusFunction.maxReadQuantity(function_code)) {
+                    return exception(request, response, ILLEGAL_DATA_VALUE);
+                }
+                if (address + value > registers.length) {
+                    return exception(request, response, ILLEGAL_DATA_ADDRESS);
+                }
+                response[length++] = (byte) (2 * value);
+                for (int i = 0; i < value; i++) {
+                    length = ByteUtil.putInt16(response, length, registers[address + i]);
+                }
+                break;
+            case ModbusFunction.WRITE_SINGLE_COIL:
+                if (address >= coils.length) {
+                    return exception(request, response, ILLEGAL_DATA_ADDRESS);
+                }
+                coils[address] = value != 0;
+                System.arraycopy(request, 2, response, length, 4);
+                length += 4;
+                break;
+            case ModbusFunction.WRITE_SINGLE_REGISTER:
+                if (address >= holdingRegisters.length) {
+                    return exception(request, response, ILLEGAL_DATA_ADDRESS);
+                }
+                holdingRegisters[address] = value;
+                System.arraycopy(request, 2, response, length, 4);
+                length += 4;
+                break;
+            case ModbusFunction.WRITE_MULTIPLE_COILS:
+                if (value < 1 || value > ModbusFunction.maxWriteQuantity(function_code)
+                        || (request[6] & 0xff) != (value + 7) / 8) {
+                    return exception(request, response, ILLEGAL_DATA_VALUE);
+                }
+                if (address + value > coils.length) {
+                    return exception(request, response, ILLEGAL_DATA_ADDRESS);
+                }
+                for (int i = 0; i < value; i++) {
+                    coils[address + i] = (request[7 + i / 8] & (1 << (i % 8))) != 0;
+                }
+                System.arraycopy(request, 2, response, length, 4);
+                length += 4;
+                break;
+            case ModbusFunction.WRITE_MULTIPLE_REGISTERS:
+                if (value < 1 || value > ModbusFunction.maxWriteQuantity(function_code)
+                        || (request[6] & 0xff) != 2 * value) {
+                    return exception(request, response, ILLEGAL_DATA_VALUE);
+                }
+                if (address + value > holdingRegisters.length) {
+                    return exception(request, response, ILLEGAL_DATA_ADDRESS);
+                }
+                for (int i = 0; i < value; i++) {
+                    holdingRegisters[address + i] = ByteUtil.getUInt16(request, 7 + 2 * i);
+                }
+                System.arraycopy(request, 2, response, length, 4);
+                length += 4;
+                break;
+            case ModbusFunction.MASK_WRITE_REGISTER:
+                if (address >= holdingRegisters.length) {
+                    return exception(request, response, ILLEGAL_DATA_ADDRESS);
+                }
+                int and_mask = value;
+                int or_mask = ByteUtil.getUInt16(request, 6);
+                holdingRegisters[address] = (holdingRegisters[address] & and_mask) | (or_mask & ~and_mask & 0xffff);
+                System.arraycopy(request, 2, response, length, 6);
+                length += 6;
+                break;
+            case ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS:
+                int write_address = ByteUtil.getUInt16(request, 6);
+                int write_quantity = ByteUtil.getUInt16(request, 8);
+                if (value < 1 || value > ModbusFunction.maxReadQuantity(function_code)
+                        || write_quantity < 1 || write_quantity > ModbusFunction.maxWriteQuantity(function_code)
+                        || (request[10] & 0xff) != 2 * write_quantity) {
+                    return exception(request, response, ILLEGAL_DATA_VALUE);
+                }
+                if (address + value > holdingRegisters.length || write_address + write_quantity > holdingRegisters.length) {
+                    return exception(request, response, ILLEGAL_DATA_ADDRESS);
+                }
+                // 先写后读
+                for (int i = 0; i < write_quantity; i++) {
+                    holdingRegisters[write_address + i] = ByteUtil.getUInt16(request, 11 + 2 * i);
+                }
+                response[length++] = (byte) (2 * value);
+                for (int i = 0; i < value; i++) {
+                    length = ByteUtil.putInt16(response, length, holdingRegisters[address + i]);
+                }
+                break;
+            default:
+                return exception(request, response, ILLEGAL_FUNCTION);
+        }
+        return ByteUtil.putInt16Reversal(response, length, CRC16.compute(response, 0, length));
+    }
+}
@@ -0,0 +1,101 @@
+package com.tonyx.androidmodbusrtudemo.modbus.simulator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/*
+    Pairs of pseudo terminals linked like a null-modem cable, for running a ModbusMaster
+    against a ModbusSlaveSimulator through the tty layer without serial hardware. A python3
+    process opens two ptys per pair, sets all ends to raw mode and copies bytes between the
+    two pty masters. The master opens getPortPath(), the simulator getDevicePath(), either
+    through SerialPort or with FileInputStream/FileOutputStream.
+ */
+public class PtyLink {
+    private static final String RELAY = "import os, pty, select, sys, tty\n"
+            + "pairs = int(sys.argv[1])\n"
+            + "peer = {}\n"
+            + "keep = []\n"
+            + "for _ in range(pairs):\n"
+            + "    a, sa = pty.openpty()\n"
+            + "    b, sb = pty.openpty()\n"
+            + "    for fd in (a, sa, b, sb):\n"
+            + "        tty.setraw(fd)\n"
+            + "    peer[a] = b\n"
+            + "    peer[b] = a\n"
+            + "    keep += [sa, sb]\n"
+            + "    print(os.ttyname(sa), os.ttyname(sb), flush=True)\n"
+            + "stdin = sys.stdin.fileno()\n"
+            + "while True:\n"
+            + "    ready = select.select(list(peer) + [stdin], [], [])[0]\n"
+            + "    if stdin in ready and not os.read(stdin, 1):\n"
+            + "        break\n"
+            + "    for fd in ready:\n"
+            + "        if fd != stdin:\n"
+            + "            os.write(peer[fd], os.read(fd, 4096))\n";
+
+    private final Process process;
+    private final String[] ports;
+    private final String[] devices;
+
+    private PtyLink(Process process, String[] ports, String[] devices) {
+        this.process = process;
+        this.ports = ports;
+        this.devices = devices;
+    }
+
+    /**
+     * 创建 pairs 对相连的伪终端
+     *
+     * @throws IOException 没有 python3 或无法创建伪终端时抛出，测试可据此跳过
+     */
+    public static PtyLink open(int pairs) throws IOException {
+        Process process = new ProcessBuilder("python3", "-c", RELAY, String.valueOf(pairs)).start();
+        String[] ports = new String[pairs];
+        String[] devices = new String[pairs];
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.forName("UTF-8")));
+            for (int i = 0; i < pairs; i++) {
+                String line = reader.readLine();
+                String[] paths = line == null ? new String[0] : line.split(" ");
+                if (paths.length != 2) {
+                    throw new IOException("Cannot create pseudo terminals");
+                }
+                ports[i] = paths[0];
+                devices[i] = paths[1];
+            }
+        } catch (IOException ex) {
+            process.destroy();
+            throw ex;
+        }
+        return new PtyLink(process, ports, devices);
+    }
+
+    /**
+     * @return 第 pair 对中主站一端的设备路径，如 /dev/pts/3
+     */
+    public String getPortPath(int pair) {
+        return ports[pair];
+    }
+
+    /**
+     * @return 第 pair 对中从站（仿真器）一端的设备路径
+     */
+    public String getDevicePath(int pair) {
+        return devices[pair];
+    }
+
+    /**
+     * 结束转发进程，伪终端随之关闭，两端阻塞的读取返回
+     */
+    public void close() throws IOException {
+        process.getOutputStream().close();
+        try {
+            process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+        }
+    }
+}
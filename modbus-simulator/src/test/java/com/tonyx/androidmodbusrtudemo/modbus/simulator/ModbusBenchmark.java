@@ -0,0 +1,431 @@
+package com.tonyx.androidmodbusrtudemo.modbus.simulator;
+
+import com.tonyx.androidmodbusrtudemo.modbus.LatencyHistogram;
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusMaster;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusRtuTransport;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+import com.tonyx.androidmodbusrtudemo.utilities.CRC16;
+import com.tonyx.androidmodbusrtudemo.utilities.TimeoutUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end throughput of {@link ModbusMaster} against a {@link ModbusSlaveSimulator}: transactions per
+ * second, p50/p99 latency and master-side CPU time per transaction for each function code.
+ * Run {@link #main} for a report, e.g. {@code ModbusBenchmark 9600 2000 10 1000} for baud rate,
+ * response delay in microseconds, quantity and transactions per function (baud rate 0 runs unpaced).
+ * {@code ModbusBenchmark compare 10 50} compares FC3 latency at 9600 and 115200 baud with the original
+ * receive loop, which slept 150 ms after each request and then polled available() every millisecond.
+ * {@code ModbusBenchmark receiver 10 5000} compares the per-port receiver thread with the original
+ * TimeoutUtil.execute, which created an executor thread per transaction: threads started, peak thread
+ * count, bytes allocated per transaction and p50/p99 latency.
+ */
+public class ModbusBenchmark {
+    public static final int[] FUNCTIONS = {
+            ModbusFunction.READ_COILS,
+            ModbusFunction.READ_DISCRETE_INPUTS,
+            ModbusFunction.READ_HOLDING_REGISTERS,
+            ModbusFunction.READ_INPUT_REGISTERS,
+            ModbusFunction.WRITE_SINGLE_COIL,
+            ModbusFunction.WRITE_SINGLE_REGISTER,
+            ModbusFunction.WRITE_MULTIPLE_COILS,
+            ModbusFunction.WRITE_MULTIPLE_REGISTERS,
+            ModbusFunction.MASK_WRITE_REGISTER,
+            ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS,
+    };
+
+    public static final class Result {
+        public int function_code;
+        public int transactions;
+        public double transactionsPerSecond;
+        public long p50Nanos;
+        public long p99Nanos;
+        public long cpuNanosPerTransaction;
+
+        @Override
+        public String toString() {
+            return String.format("FC%-2d %8d tx %10.0f tx/s  p50 %8.3f ms  p99 %8.3f ms  cpu %7.1f us/tx",
+                    function_code, transactions, transactionsPerSecond, p50Nanos / 1e6, p99Nanos / 1e6,
+                    cpuNanosPerTransaction / 1e3);
+        }
+    }
+
+    public static final class ReceiverResult {
+        public String receiver;
+        public int transactions;
+        public long p50Nanos;
+        public long p99Nanos;
+        public double threadsStartedPerTransaction;
+        public int peakThreads;
+        // 调用线程和接收线程分配的字节数，-1 表示 JVM 不支持统计
+        public long allocatedBytesPerTransaction;
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %8d tx  p50 %8.3f ms  p99 %8.3f ms  threads started %5.2f/tx  peak threads %3d  alloc %6d B/tx",
+                    receiver, transactions, p50Nanos / 1e6, p99Nanos / 1e6, threadsStartedPerTransaction, peakThreads,
+                    allocatedBytesPerTransaction);
+        }
+    }
+
+    private final ModbusSlaveSimulator simulator;
+    private final ModbusMaster master;
+    private final int quantity;
+    private final int[] registers = new int[ModbusFunction.maxWriteQuantity(ModbusFunction.WRITE_MULTIPLE_REGISTERS)];
+    private final boolean[] bits = new boolean[ModbusFunction.maxWriteQuantity(ModbusFunction.WRITE_MULTIPLE_COILS)];
+
+    /**
+     * @param baudrate      仿真的波特率，0 表示不限速
+     * @param responseDelay 从站处理时间，单位微秒
+     * @param quantity      每个事务读写的寄存器或线圈数量
+     */
+    public ModbusBenchmark(int baudrate, int responseDelay, int quantity) throws IOException {
+        this.simulator = new ModbusSlaveSimulator(1);
+        simulator.setBaudrate(baudrate);
+        simulator.setResponseDelay(responseDelay);
+        simulator.start();
+        this.master = new ModbusMaster(simulator.getMasterInput(), simulator.getMasterOutput(), baudrate > 0 ? baudrate : 115200);
+        if (baudrate > 0) {
+            // 仿真线程的调度抖动可能超过 3.5 个字符时间，整帧仍按长度判断结束
+            ((ModbusRtuTransport) master.getTransport()).setSilentInterval(20000);
+        }
+        this.quantity = quantity;
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = i * 31;
+            bits[i] = (i & 1) != 0;
+        }
+    }
+
+    public ModbusSlaveSimulator getSimulator() {
+        return simulator;
+    }
+
+    public ModbusMaster getMaster() {
+        return master;
+    }
+
+    private void transact(int function_code, int i) throws IOException, ModbusError {
+        int q = Math.min(quantity, function_code == ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS ? 121 : registers.length);
+        switch (function_code) {
+            case ModbusFunction.READ_COILS:
+                master.readCoils(1, 0, q, bits, 0);
+                break;
+            case ModbusFunction.READ_DISCRETE_INPUTS:
+                master.readInputs(1, 0, q, bits, 0);
+                break;
+            case ModbusFunction.READ_HOLDING_REGISTERS:
+                master.readHoldingRegisters(1, 0, q, registers, 0);
+                break;
+            case ModbusFunction.READ_INPUT_REGISTERS:
+                master.readInputRegisters(1, 0, q, registers, 0);
+                break;
+            case ModbusFunction.WRITE_SINGLE_COIL:
+                master.writeSingleCoil(1, i & 0xff, (i & 1) != 0);
+                break;
+            case ModbusFunction.WRITE_SINGLE_REGISTER:
+                master.writeSingleRegister(1, i & 0xff, i & 0xffff);
+                break;
+            case ModbusFunction.WRITE_MULTIPLE_COILS:
+                master.writeMultipleCoils(1, 0, bits, 0, q);
+                break;
+            case ModbusFunction.WRITE_MULTIPLE_REGISTERS:
+                master.writeMultipleRegisters(1, 0, registers, 0, q);
+                break;
+            case ModbusFunction.MASK_WRITE_REGISTER:
+                master.maskWriteRegister(1, i & 0xff, 0xff00, i & 0xff);
+                break;
+            case ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS:
+                master.readWriteMultipleRegisters(1, 0, q, registers, 0, 1000, registers, 0, q);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported function " + function_code);
+        }
+    }
+
+    /**
+     * 主站一侧所有线程（不含仿真从站）的 CPU 时间
+     */
+    private static long masterCpuNanos(ThreadMXBean threads, Map<Long, Long> start) {
+        long total = 0;
+        for (long id : threads.getAllThreadIds()) {
+            ThreadInfo info = threads.getThreadInfo(id);
+            long cpu = threads.getThreadCpuTime(id);
+            if (info == null || cpu < 0 || info.getThreadName().startsWith("ModbusSlaveSimulator")) {
+                continue;
+            }
+            Long before = start == null ? null : start.get(id);
+            if (start == null) {
+                total += cpu;
+            } else {
+                total += cpu - (before != null ? before : 0);
+            }
+        }
+        return total;
+    }
+
+    private static Map<Long, Long> snapshot(ThreadMXBean threads) {
+        Map<Long, Long> cpu = new HashMap<Long, Long>();
+        for (long id : threads.getAllThreadIds()) {
+            cpu.put(id, threads.getThreadCpuTime(id));
+        }
+        return cpu;
+    }
+
+    /**
+     * 预热后连续执行 transactions 个事务
+     */
+    public Result run(int function_code, int transactions) throws IOException, ModbusError {
+        for (int i = 0; i < Math.min(transactions, 200); i++) {
+            transact(function_code, i);
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        LatencyHistogram latency = new LatencyHistogram();
+        Map<Long, Long> cpu = snapshot(threads);
+        long started = System.nanoTime();
+        for (int i = 0; i < transactions; i++) {
+            long t = System.nanoTime();
+            transact(function_code, i);
+            latency.record(System.nanoTime() - t);
+        }
+        long elapsed = System.nanoTime() - started;
+        Result result = new Result();
+        result.function_code = function_code;
+        result.transactions = transactions;
+        result.transactionsPerSecond = transactions * 1e9 / elapsed;
+        result.p50Nanos = latency.getPercentileNanos(0.5);
+        result.p99Nanos = latency.getPercentileNanos(0.99);
+        result.cpuNanosPerTransaction = masterCpuNanos(threads, cpu) / transactions;
+        return result;
+    }
+
+    public void close() throws IOException {
+        master.close();
+        simulator.close();
+    }
+
+    /**
+     * 用最初的接收方式执行 FC3 读取：发送后固定等待 150 ms，再每毫秒检查 available() 直到收齐整帧
+     */
+    public static Result runLegacy(int baudrate, int responseDelay, int quantity, int transactions) throws IOException, InterruptedException {
+        ModbusSlaveSimulator simulator = new ModbusSlaveSimulator(1);
+        simulator.setBaudrate(baudrate);
+        simulator.setResponseDelay(responseDelay);
+        simulator.start();
+        InputStream input = simulator.getMasterInput();
+        OutputStream output = simulator.getMasterOutput();
+        byte[] request = new byte[8];
+        request[0] = 1;
+        request[1] = ModbusFunction.READ_HOLDING_REGISTERS;
+        ByteUtil.putInt16(request, 4, quantity);
+        ByteUtil.putInt16Reversal(request, 6, CRC16.compute(request, 0, 6));
+        int expected = 2 * quantity + 5;
+        byte[] response = new byte[expected];
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        LatencyHistogram latency = new LatencyHistogram();
+        Map<Long, Long> cpu = snapshot(threads);
+        long started = System.nanoTime();
+        for (int i = 0; i < transactions; i++) {
+            long t = System.nanoTime();
+            output.write(request);
+            output.flush();
+            Thread.sleep(150);
+            int received = 0;
+            while (received < expected) {
+                if (input.available() > 0) {
+                    received += input.read(response, received, expected - received);
+                } else {
+                    Thread.sleep(1);
+                }
+            }
+            latency.record(System.nanoTime() - t);
+        }
+        long elapsed = System.nanoTime() - started;
+        long cpuNanos = masterCpuNanos(threads, cpu);
+        simulator.close();
+        Result result = new Result();
+        result.function_code = ModbusFunction.READ_HOLDING_REGISTERS;
+        result.transactions = transactions;
+        result.transactionsPerSecond = transactions * 1e9 / elapsed;
+        result.p50Nanos = latency.getPercentileNanos(0.5);
+        result.p99Nanos = latency.getPercentileNanos(0.99);
+        result.cpuNanosPerTransaction = cpuNanos / transactions;
+        return result;
+    }
+
+    /**
+     * @return 线程已分配的字节数，不支持时返回 -1
+     */
+    private static long allocatedBytes(ThreadMXBean threads, long id) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(id);
+    }
+
+    private static long findThread(ThreadMXBean threads, String name) {
+        for (long id : threads.getAllThreadIds()) {
+            ThreadInfo info = threads.getThreadInfo(id);
+            if (info != null && info.getThreadName().equals(name)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 不限速的 FC3 读取，比较接收方式的线程数、内存分配和延迟
+     *
+     * @param executor true 表示最初的方式：每个事务用 TimeoutUtil.execute 新建线程读取响应；
+     *                 false 表示当前的 ModbusMaster，由常驻的接收线程读取
+     */
+    public static ReceiverResult runReceiver(boolean executor, int quantity, int transactions) throws IOException, ModbusError {
+        // 管道流在最后读取的线程结束后拒绝写入，每个事务新建线程时无法使用，改用本机 TCP 连接
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        Socket peer = server.accept();
+        server.close();
+        socket.setTcpNoDelay(true);
+        peer.setTcpNoDelay(true);
+        ModbusSlaveSimulator simulator = new ModbusSlaveSimulator(1, new int[0x10000], new int[0x10000], new boolean[0x10000],
+                new boolean[0x10000], peer.getInputStream(), peer.getOutputStream()).start();
+        final InputStream input = socket.getInputStream();
+        OutputStream output = socket.getOutputStream();
+        ModbusMaster master = executor ? null : new ModbusMaster(input, output, 115200);
+        final byte[] request = new byte[8];
+        request[0] = 1;
+        request[1] = ModbusFunction.READ_HOLDING_REGISTERS;
+        ByteUtil.putInt16(request, 4, quantity);
+        ByteUtil.putInt16Reversal(request, 6, CRC16.compute(request, 0, 6));
+        final int expected = 2 * quantity + 5;
+        final byte[] response = new byte[expected];
+        int[] registers = new int[quantity];
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final AtomicLong workerBytes = new AtomicLong();
+        Runnable receive = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int received = 0;
+                    while (received < expected) {
+                        int len = input.read(response, received, expected - received);
+                        if (len < 0) {
+                            return;
+                        }
+                        received += len;
+                    }
+                } catch (IOException e) {
+                    return;
+                }
+                // 每个事务的线程都是新建的，线程结束前记录其分配的全部字节
+                workerBytes.addAndGet(allocatedBytes(threads, Thread.currentThread().getId()));
+            }
+        };
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long started = 0;
+        long callerBytes = 0;
+        long receiverBytes = 0;
+        long receiverId = executor ? -1 : findThread(threads, "ModbusRtuTransport-rx");
+        int warmup = Math.min(transactions, 200);
+        for (int i = 0; i < warmup + transactions; i++) {
+            if (i == warmup) {
+                threads.resetPeakThreadCount();
+                started = threads.getTotalStartedThreadCount();
+                callerBytes = allocatedBytes(threads, Thread.currentThread().getId());
+                receiverBytes = receiverId < 0 ? 0 : allocatedBytes(threads, receiverId);
+                workerBytes.set(0);
+            }
+            long t = System.nanoTime();
+            if (executor) {
+                output.write(request);
+                output.flush();
+                if (!TimeoutUtil.execute(receive, 1000)) {
+                    throw new ModbusError(ModbusErrorType.ModbusTimeoutError, "Timeout of 1000 ms.");
+                }
+            } else {
+                master.readHoldingRegisters(1, 0, quantity, registers, 0);
+            }
+            if (i >= warmup) {
+                latency.record(System.nanoTime() - t);
+            }
+        }
+        ReceiverResult result = new ReceiverResult();
+        result.receiver = executor ? "executor" : "receiver";
+        result.transactions = transactions;
+        result.p50Nanos = latency.getPercentileNanos(0.5);
+        result.p99Nanos = latency.getPercentileNanos(0.99);
+        result.threadsStartedPerTransaction = (double) (threads.getTotalStartedThreadCount() - started) / transactions;
+        result.peakThreads = threads.getPeakThreadCount();
+        long caller = allocatedBytes(threads, Thread.currentThread().getId());
+        if (caller < 0) {
+            result.allocatedBytesPerTransaction = -1;
+        } else {
+            long allocated = caller - callerBytes + workerBytes.get();
+            if (receiverId >= 0) {
+                allocated += allocatedBytes(threads, receiverId) - receiverBytes;
+            }
+            result.allocatedBytesPerTransaction = allocated / transactions;
+        }
+        if (master != null) {
+            master.close();
+        }
+        simulator.close();
+        socket.close();
+        peer.close();
+        return result;
+    }
+
+    /**
+     * 比较当前实现与最初接收方式的 FC3 延迟
+     */
+    private static void compare(int quantity, int transactions) throws Exception {
+        for (int baudrate : new int[]{9600, 115200}) {
+            ModbusBenchmark benchmark = new ModbusBenchmark(baudrate, 0, quantity);
+            System.out.println(String.format("baud %d, quantity %d", baudrate, quantity));
+            System.out.println("current " + benchmark.run(ModbusFunction.READ_HOLDING_REGISTERS, transactions));
+            benchmark.close();
+            System.out.println("legacy  " + runLegacy(baudrate, 0, quantity, transactions));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("receiver")) {
+            int quantity = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+            int transactions = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+            System.out.println(String.format("FC3 unpaced, quantity %d", quantity));
+            System.out.println(runReceiver(true, quantity, transactions));
+            System.out.println(runReceiver(false, quantity, transactions));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("compare")) {
+            compare(args.length > 1 ? Integer.parseInt(args[1]) : 10, args.length > 2 ? Integer.parseInt(args[2]) : 50);
+            return;
+        }
+        int baudrate = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int responseDelay = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int quantity = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int transactions = args.length > 3 ? Integer.parseInt(args[3]) : 5000;
+        ModbusBenchmark benchmark = new ModbusBenchmark(baudrate, responseDelay, quantity);
+        System.out.println(String.format("baud %d, response delay %d us, quantity %d", baudrate, responseDelay, quantity));
+        for (int function_code : FUNCTIONS) {
+            System.out.println(benchmark.run(function_code, transactions));
+        }
+        benchmark.close();
+    }
+}
@@ -0,0 +1,152 @@
+package com.tonyx.androidmodbusrtudemo.modbus.simulator;
+
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusMaster;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusError;
+import com.tonyx.androidmodbusrtudemo.modbus.exception.ModbusErrorType;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusRtuTransport;
+import com.tonyx.androidmodbusrtudemo.utilities.ByteUtil;
+import com.tonyx.androidmodbusrtudemo.utilities.CRC16;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ModbusSlaveSimulator} and a short run of {@link ModbusBenchmark}.
+ */
+public class ModbusSlaveSimulatorTest {
+    @Test
+    public void registerMap_andExceptions() throws Exception {
+        int[] holding = new int[100];
+        holding[99] = 9;
+        ModbusSlaveSimulator simulator = new ModbusSlaveSimulator(3, holding, new int[10], new boolean[16], new boolean[16]).start();
+        ModbusMaster master = new ModbusMaster(simulator.getMasterInput(), simulator.getMasterOutput(), 115200);
+
+        assertEquals(9, master.readHoldingRegister(3, 99));
+        try {
+            master.readHoldingRegisters(3, 95, 10);
+            fail("exception response expected");
+        } catch (ModbusError e) {
+            assertEquals(ModbusSlaveSimulator.ILLEGAL_DATA_ADDRESS, e.getCode());
+        }
+        simulator.injectExceptions(2, 6);
+        for (int i = 0; i < 2; i++) {
+            try {
+                master.writeSingleRegister(3, 0, 1);
+                fail("exception response expected");
+            } catch (ModbusError e) {
+                assertEquals(6, e.getCode());
+            }
+        }
+        master.writeSingleRegister(3, 0, 1);
+        assertEquals(1, holding[0]);
+        assertEquals(5, simulator.getResponseCount());
+        master.close();
+        simulator.close();
+    }
+
+    /**
+     * 直接发送主站不会生成的请求帧，返回异常码
+     */
+    private static int sendRaw(ModbusSlaveSimulator simulator, byte[] frame, int length) throws Exception {
+        ByteUtil.putInt16Reversal(frame, length, CRC16.compute(frame, 0, length));
+        OutputStream output = simulator.getMasterOutput();
+        output.write(frame, 0, length + 2);
+        output.flush();
+        InputStream input = simulator.getMasterInput();
+        byte[] response = new byte[5];
+        for (int n = 0; n < response.length; ) {
+            n += input.read(response, n, response.length - n);
+        }
+        assertEquals(0, CRC16.compute(response, 0, response.length));
+        assertEquals(frame[1] | 0x80, response[1] & 0xff);
+        return response[2];
+    }
+
+    @Test
+    public void oversizedRequests_areRejected() throws Exception {
+        ModbusSlaveSimulator simulator = new ModbusSlaveSimulator(1).start();
+        byte[] frame = new byte[300];
+        frame[0] = 1;
+        // FC16：数量 200 超出限制
+        frame[1] = ModbusFunction.WRITE_MULTIPLE_REGISTERS;
+        ByteUtil.putInt16(frame, 4, 200);
+        frame[6] = (byte) 240;
+        assertEquals(ModbusSlaveSimulator.ILLEGAL_DATA_VALUE, sendRaw(simulator, frame, 7 + 240));
+        // FC16：数量与字节数不符
+        ByteUtil.putInt16(frame, 4, 100);
+        frame[6] = 20;
+        assertEquals(ModbusSlaveSimulator.ILLEGAL_DATA_VALUE, sendRaw(simulator, frame, 7 + 20));
+        // FC15：数量 2000 超出限制
+        frame[1] = ModbusFunction.WRITE_MULTIPLE_COILS;
+        ByteUtil.putInt16(frame, 4, 2000);
+        frame[6] = (byte) 250;
+        assertEquals(ModbusSlaveSimulator.ILLEGAL_DATA_VALUE, sendRaw(simulator, frame, 7 + 250));
+        // FC23：读取数量 200 超出响应帧
+        frame[1] = ModbusFunction.READ_WRITE_MULTIPLE_REGISTERS;
+        ByteUtil.putInt16(frame, 4, 200);
+        ByteUtil.putInt16(frame, 8, 1);
+        frame[10] = 2;
+        assertEquals(ModbusSlaveSimulator.ILLEGAL_DATA_VALUE, sendRaw(simulator, frame, 11 + 2));
+
+        // 从站线程仍在运行
+        ModbusMaster master = new ModbusMaster(simulator.getMasterInput(), simulator.getMasterOutput(), 115200);
+        master.writeMultipleRegisters(1, 0, new int[]{7});
+        assertEquals(7, master.readHoldingRegister(1, 0));
+        master.close();
+        simulator.close();
+    }
+
+    @Test
+    public void pacing_andResponseDelay() throws Exception {
+        ModbusSlaveSimulator simulator = new ModbusSlaveSimulator(1).start();
+        simulator.setBaudrate(9600);
+        simulator.setResponseDelay(5000);
+        ModbusMaster master = new ModbusMaster(simulator.getMasterInput(), simulator.getMasterOutput(), 9600);
+        // 仿真线程的调度抖动可能超过 3.5 个字符时间
+        ((ModbusRtuTransport) master.getTransport()).setSilentInterval(20000);
+        long started = System.nanoTime();
+        master.readHoldingRegisters(1, 0, 10);
+        long elapsed = System.nanoTime() - started;
+        // (8 + 25) 字节 * 11 位 / 9600 = 37.8 ms，加 5 ms 处理时间
+        assertTrue("elapsed " + elapsed, elapsed >= 42000000L);
+        master.close();
+        simulator.close();
+    }
+
+    @Test
+    public void noise_corruptsResponses() throws Exception {
+        ModbusSlaveSimulator simulator = new ModbusSlaveSimulator(1).start();
+        simulator.setNoise(1.0);
+        ModbusMaster master = new ModbusMaster(simulator.getMasterInput(), simulator.getMasterOutput(), 115200);
+        for (int i = 0; i < 5; i++) {
+            try {
+                master.readHoldingRegisters(1, 0, 10);
+                fail("corrupted response accepted");
+            } catch (ModbusError e) {
+                assertTrue(e.getType() == ModbusErrorType.ModbusCrcError || e.getType() == ModbusErrorType.ModbusInvalidResponseError
+                        || e.getType() == ModbusErrorType.ModbusTimeoutError);
+            }
+        }
+        simulator.setNoise(0);
+        master.readHoldingRegisters(1, 0, 10);
+        master.close();
+        simulator.close();
+    }
+
+    @Test
+    public void benchmark_runsEveryFunction() throws Exception {
+        ModbusBenchmark benchmark = new ModbusBenchmark(0, 0, 10);
+        for (int function_code : ModbusBenchmark.FUNCTIONS) {
+            ModbusBenchmark.Result result = benchmark.run(function_code, 20);
+            assertEquals(function_code, result.function_code);
+            assertTrue(result.transactionsPerSecond > 0);
+            assertTrue(result.p99Nanos >= result.p50Nanos);
+        }
+        benchmark.close();
+    }
+}
@@ -0,0 +1,242 @@
+package com.tonyx.androidmodbusrtudemo.modbus.simulator;
+
+import com.tonyx.androidmodbusrtudemo.modbus.AsyncModbusMaster;
+import com.tonyx.androidmodbusrtudemo.modbus.LatencyHistogram;
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusBusManager;
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusCallback;
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFunction;
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusFuture;
+import com.tonyx.androidmodbusrtudemo.modbus.ModbusMaster;
+import com.tonyx.androidmodbusrtudemo.modbus.ReadPlan;
+import com.tonyx.androidmodbusrtudemo.modbus.ReadPlanner;
+import com.tonyx.androidmodbusrtudemo.modbus.SlaveHealth;
+import com.tonyx.androidmodbusrtudemo.modbus.WriteBatcher;
+import com.tonyx.androidmodbusrtudemo.modbus.transport.ModbusRtuTransport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Before/after timings of the scheduling features against {@link ModbusSlaveSimulator}s: request
+ * throughput of {@link AsyncModbusMaster}, {@link ReadPlanner} versus tag-by-tag reads, {@link WriteBatcher}
+ * versus single writes, {@link ModbusBusManager} with one and four ports, and scan cycles with an offline
+ * slave with and without {@link SlaveHealth}. The unit tests only check behaviour; run {@link #main},
+ * e.g. {@code ScenarioBenchmark 115200}, for the numbers (baud rate 0 runs unpaced).
+ */
+public class ScenarioBenchmark {
+    private static ModbusMaster connect(ModbusSlaveSimulator simulator, int baudrate) {
+        ModbusMaster master = new ModbusMaster(simulator.getMasterInput(), simulator.getMasterOutput(), baudrate > 0 ? baudrate : 115200);
+        if (baudrate > 0) {
+            // 仿真线程的调度抖动可能超过 3.5 个字符时间，整帧仍按长度判断结束
+            ((ModbusRtuTransport) master.getTransport()).setSilentInterval(20000);
+        }
+        return master;
+    }
+
+    private static ModbusSlaveSimulator simulator(int slave, int baudrate) throws IOException {
+        ModbusSlaveSimulator simulator = new ModbusSlaveSimulator(slave);
+        simulator.setBaudrate(baudrate);
+        return simulator.start();
+    }
+
+    /**
+     * 多个线程同时提交 FC3 读取
+     */
+    static void async(int baudrate) throws Exception {
+        ModbusSlaveSimulator simulator = simulator(1, baudrate);
+        ModbusMaster master = connect(simulator, baudrate);
+        final AsyncModbusMaster async = new AsyncModbusMaster(32, master);
+        final int submitters = 16;
+        final int perSubmitter = baudrate > 0 ? 10 : 100;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final CountDownLatch done = new CountDownLatch(submitters * perSubmitter);
+        long start = System.nanoTime();
+        for (int s = 0; s < submitters; s++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < perSubmitter; n++) {
+                        final long submitted = System.nanoTime();
+                        async.readHoldingRegisters(1, n, 10, 60000).addCallback(new ModbusCallback<int[]>() {
+                            @Override
+                            public void onSuccess(int[] result) {
+                                latency.record(System.nanoTime() - submitted);
+                                done.countDown();
+                            }
+
+                            @Override
+                            public void onFailure(Exception error) {
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            }).start();
+        }
+        done.await(120, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        async.close();
+        master.close();
+        simulator.close();
+        System.out.println(String.format("AsyncModbusMaster: %d submitters, %d requests, %.0f req/s, latency p50 %.2f ms, p99 %.2f ms",
+                submitters, latency.getCount(), latency.getCount() * 1e9 / elapsed,
+                latency.getPercentileNanos(0.5) / 1e6, latency.getPercentileNanos(0.99) / 1e6));
+    }
+
+    /**
+     * 60 个相隔一个寄存器的标签，逐个读取与按计划合并读取
+     */
+    static void planner(int baudrate) throws Exception {
+        ModbusSlaveSimulator simulator = simulator(1, baudrate);
+        ModbusMaster master = connect(simulator, baudrate);
+        ReadPlanner planner = new ReadPlanner();
+        for (int address = 0; address < 120; address += 2) {
+            planner.addTag(1, ModbusFunction.READ_HOLDING_REGISTERS, address);
+        }
+        ReadPlan plan = planner.plan();
+        int[] values = new int[planner.getTagCount()];
+        int cycles = 5;
+        long start = System.nanoTime();
+        for (int c = 0; c < cycles; c++) {
+            for (int address = 0; address < 120; address += 2) {
+                values[address / 2] = master.readHoldingRegister(1, address);
+            }
+        }
+        long tagByTag = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int c = 0; c < cycles; c++) {
+            plan.execute(master, values);
+        }
+        long planned = System.nanoTime() - start;
+        master.close();
+        simulator.close();
+        System.out.println(String.format("ReadPlanner: %d tags, %.2f ms per cycle tag by tag, %.2f ms planned (%d transactions)",
+                planner.getTagCount(), tagByTag / 1e6 / cycles, planned / 1e6 / cycles, plan.getTransactionCount()));
+    }
+
+    /**
+     * 下载 500 个设定值的配方，三段连续地址
+     */
+    static void batcher(int baudrate) throws Exception {
+        ModbusSlaveSimulator simulator = simulator(1, baudrate);
+        ModbusMaster master = connect(simulator, baudrate);
+        int[] addresses = new int[500];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = i < 200 ? 1000 + i : i < 450 ? 3000 + i : 6000 + i;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < addresses.length; i++) {
+            master.writeSingleRegister(1, addresses[i], i);
+        }
+        long single = System.nanoTime() - start;
+        long singleRequests = simulator.getRequestCount();
+
+        WriteBatcher batcher = new WriteBatcher(master);
+        batcher.setLimits(1000, 10000);
+        start = System.nanoTime();
+        for (int i = 0; i < addresses.length; i++) {
+            batcher.writeRegister(1, addresses[i], i + 1);
+        }
+        batcher.flush();
+        long batched = System.nanoTime() - start;
+        long batchedRequests = simulator.getRequestCount() - singleRequests;
+        batcher.close();
+        master.close();
+        simulator.close();
+        System.out.println(String.format("WriteBatcher: recipe of %d setpoints, %d transactions in %.1f ms single, %d transactions in %.1f ms batched",
+                addresses.length, singleRequests, single / 1e6, batchedRequests, batched / 1e6));
+    }
+
+    private static long ports(int ports, int baudrate, int requests) throws Exception {
+        ModbusBusManager manager = new ModbusBusManager(requests);
+        List<ModbusSlaveSimulator> simulators = new ArrayList<ModbusSlaveSimulator>();
+        for (int i = 0; i < ports; i++) {
+            ModbusSlaveSimulator simulator = simulator(i + 1, baudrate);
+            simulators.add(simulator);
+            manager.addBus("port" + i, connect(simulator, baudrate));
+            manager.route(i + 1, "port" + i);
+        }
+        List<ModbusFuture<int[]>> futures = new ArrayList<ModbusFuture<int[]>>();
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            futures.add(manager.readHoldingRegisters(1 + i % ports, 0, 4, 60000));
+        }
+        for (ModbusFuture<int[]> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        manager.close();
+        for (ModbusSlaveSimulator simulator : simulators) {
+            simulator.close();
+        }
+        return elapsed;
+    }
+
+    /**
+     * 同样的请求分布到 1 个和 4 个串口
+     */
+    static void ports(int baudrate) throws Exception {
+        int requests = baudrate > 0 ? 100 : 1000;
+        long single = ports(1, baudrate, requests);
+        long quad = ports(4, baudrate, requests);
+        System.out.println(String.format("ModbusBusManager: %d requests, 1 port %.0f ms, 4 ports %.0f ms",
+                requests, single / 1e6, quad / 1e6));
+    }
+
+    private static long scanCycles(ModbusMaster master, ReadPlan plan, int cycles) {
+        int[] values = new int[plan.getTagCount()];
+        long started = System.nanoTime();
+        for (int c = 0; c < cycles; c++) {
+            for (int b = 0; b < plan.getTransactionCount(); b++) {
+                try {
+                    plan.execute(master, b, values);
+                } catch (Exception e) {
+                    // 离线从站的块失败，继续下一个块
+                }
+            }
+        }
+        return System.nanoTime() - started;
+    }
+
+    /**
+     * 从站 1 在线、从站 2 离线，比较不使用和使用 SlaveHealth 的扫描时间
+     */
+    static void health(int baudrate) throws Exception {
+        ReadPlanner planner = new ReadPlanner();
+        for (int slave = 1; slave <= 2; slave++) {
+            planner.addTag(slave, ModbusFunction.READ_HOLDING_REGISTERS, 0);
+            planner.addTag(slave, ModbusFunction.READ_HOLDING_REGISTERS, 100);
+        }
+        ReadPlan plan = planner.plan();
+        ModbusSlaveSimulator simulator = simulator(1, baudrate);
+
+        ModbusMaster plain = connect(simulator, baudrate);
+        plain.setTimeout(50);
+        long without = scanCycles(plain, plan, 10);
+        plain.close();
+
+        simulator.close();
+        simulator = simulator(1, baudrate);
+        ModbusMaster tracked = connect(simulator, baudrate);
+        tracked.setTimeout(50);
+        tracked.setHealth(new SlaveHealth(baudrate));
+        long with = scanCycles(tracked, plan, 10);
+        tracked.close();
+        simulator.close();
+        System.out.println(String.format("SlaveHealth: 10 scan cycles with an offline slave, %.0f ms without, %.0f ms with",
+                without / 1e6, with / 1e6));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int baudrate = args.length > 0 ? Integer.parseInt(args[0]) : 115200;
+        System.out.println(String.format("baud %d", baudrate));
+        async(baudrate);
+        planner(baudrate);
+        batcher(baudrate);
+        ports(baudrate);
+        health(baudrate);
+    }
+}